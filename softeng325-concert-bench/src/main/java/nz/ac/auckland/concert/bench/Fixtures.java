@@ -0,0 +1,60 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.Genre;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.domain.Concert;
+import nz.ac.auckland.concert.service.domain.Performer;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Domain objects shaped like the service's own data, shared by the benchmarks. Nothing here touches the database.
+ */
+class Fixtures {
+
+    static final LocalDateTime DATE = LocalDateTime.of(2017, 2, 24, 17, 0);
+
+    /**
+     * Returns a concert with the given number of dates and performers, at the usual three prices.
+     */
+    static Concert concert(int dates, int performers) {
+        Set<LocalDateTime> concertDates = new HashSet<>();
+        for (int i = 0; i < dates; i++) {
+            concertDates.add(DATE.plusDays(i));
+        }
+
+        Map<PriceBand, BigDecimal> prices = new EnumMap<>(PriceBand.class);
+        prices.put(PriceBand.PriceBandA, new BigDecimal("150.00"));
+        prices.put(PriceBand.PriceBandB, new BigDecimal("110.00"));
+        prices.put(PriceBand.PriceBandC, new BigDecimal("80.00"));
+
+        Set<Performer> concertPerformers = new HashSet<>();
+        for (long id = 1; id <= performers; id++) {
+            concertPerformers.add(new Performer(id, "Performer " + id, "performer" + id + ".jpg", Genre.Pop, new HashSet<>()));
+        }
+
+        return new Concert(1L, "Concert", concertDates, prices, concertPerformers);
+    }
+
+    /**
+     * Returns the first numberOfSeats seats of a price band, row by row.
+     */
+    static Set<SeatDTO> seats(PriceBand priceBand, int numberOfSeats) {
+        Set<SeatDTO> seats = new HashSet<>();
+        for (SeatRow row : TheatreLayout.getRowsForPriceBand(priceBand)) {
+            for (int i = 1; i <= TheatreLayout.getNumberOfSeatsForRow(row) && seats.size() < numberOfSeats; i++) {
+                seats.add(new SeatDTO(row, new SeatNumber(i)));
+            }
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,144 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.bench.data.BatchLoader;
+import nz.ac.auckland.concert.bench.data.BenchmarkDatabase;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.service.domain.Token;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the lookups indexed by schema migration V1 (db/migration/V1__hot_path_indexes.sql), with and without
+ * the indexes: an authorization token by its value, as on every authenticated request, and a show's active
+ * reservations by concert, date and expiry. The database holds a million of each, loaded before the benchmark
+ * starts, which takes a minute or so per fork. Without the indexes, the token lookup scans its table and the
+ * reservation lookup scans the reservations of the concert, through the index H2 keeps for the CONCERT_ID foreign
+ * key. Each lookup runs in an EntityManager of its own, as a request's would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexedLookupBenchmark {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2018, 1, 1, 0, 0); // Shows and expiries count from here
+    private static final int SHOWS = 10_000; // Reservations are spread evenly over the shows
+    private static final int ACTIVE_EVERY = 10; // One in so many reservations is yet to expire
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"1000000"})
+    public int tokens;
+
+    @Param({"1000000"})
+    public int reservations;
+
+    private BenchmarkDatabase _database;
+    private long _concerts;
+
+    @Setup
+    public void loadDatabase() throws SQLException {
+        _database = new BenchmarkDatabase("lookup-" + indexed);
+        _concerts = _database.queryForLong("SELECT COUNT(*) FROM CONCERTS"); // Numbered from 1 by db-init.sql
+        _database.load(this::insertFixtures);
+
+        if (!indexed) { // Hibernate makes the token index a unique constraint, and V1 an index of the same name
+            _database.execute("ALTER TABLE AUTHORIZATION_TOKENS DROP CONSTRAINT IF EXISTS IDX_AUTHORIZATION_TOKENS_TOKEN",
+                    "DROP INDEX IF EXISTS IDX_AUTHORIZATION_TOKENS_TOKEN",
+                    "DROP INDEX IF EXISTS IDX_RESERVATIONS_CONCERT_DATE_EXPIRY");
+        }
+    }
+
+    @TearDown
+    public void closeDatabase() {
+        _database.close();
+    }
+
+    @Benchmark
+    public Token findToken() {
+        EntityManager em = _database.getEntityManagerFactory().createEntityManager();
+
+        try {
+            return em.createNamedQuery("Token.findByToken", Token.class)
+                    .setParameter("token", tokenOf(ThreadLocalRandom.current().nextInt(tokens)))
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<Reservation> findActiveReservations() {
+        int show = ThreadLocalRandom.current().nextInt(SHOWS);
+        EntityManager em = _database.getEntityManagerFactory().createEntityManager();
+
+        try {
+            return em.createQuery("SELECT r FROM Reservation r " +
+                    "WHERE r.concert.id = :concertId AND r.date = :date AND r.expiry > :currentTime", Reservation.class)
+                    .setParameter("concertId", concertOf(show))
+                    .setParameter("date", dateOf(show))
+                    .setParameter("currentTime", NOW)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+
+    // Private methods
+
+
+    private void insertFixtures(BatchLoader loader) throws SQLException {
+        BatchLoader.Table users = loader.table("USERS", "USERNAME", "PASSWORD", "FIRST_NAME", "LAST_NAME");
+        BatchLoader.Table tokenRows = loader.table("AUTHORIZATION_TOKENS", "USER_USERNAME", "TOKEN", "EXPIRY");
+        Timestamp tokenExpiry = Timestamp.valueOf(NOW.plusYears(100));
+        for (int i = 0; i < tokens; i++) {
+            users.insert("bench" + i, "password", "Bench", "User" + i);
+            tokenRows.insert("bench" + i, tokenOf(i), tokenExpiry);
+        }
+
+        BatchLoader.Table shows = loader.table("SHOWS", "ID", "CONCERT_ID", "CONCERT_DATE");
+        for (int show = 0; show < SHOWS; show++) {
+            shows.insert(show + 1L, concertOf(show), Timestamp.valueOf(dateOf(show)));
+        }
+
+        BatchLoader.Table reservationRows = loader.table("RESERVATIONS",
+                "ID", "SHOW_ID", "CONCERT_ID", "CONCERT_DATE", "EXPIRY", "PRICE_BAND", "SEATS_BITMAP", "VERSION");
+        byte[] seats = SeatBitmap.encode(Fixtures.seats(PriceBand.PriceBandA, 2));
+        Timestamp active = Timestamp.valueOf(NOW.plusYears(100));
+        Timestamp expired = Timestamp.valueOf(NOW.minusDays(1));
+        for (int i = 0; i < reservations; i++) {
+            int show = i % SHOWS;
+            reservationRows.insert(i + 1L, show + 1L, concertOf(show), Timestamp.valueOf(dateOf(show)),
+                    (i / SHOWS) % ACTIVE_EVERY == 0 ? active : expired, PriceBand.PriceBandA.name(), seats, 0L);
+        }
+    }
+
+    private long concertOf(int show) {
+        return 1 + show % _concerts;
+    }
+
+    private LocalDateTime dateOf(int show) {
+        return NOW.plusDays(show / _concerts).withHour(20);
+    }
+
+    // Tokens look random, as issued ones do, but can be worked out again from their user's number
+    private static String tokenOf(int user) {
+        SplittableRandom random = new SplittableRandom(user);
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+}
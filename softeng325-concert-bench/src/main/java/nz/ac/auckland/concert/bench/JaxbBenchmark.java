@@ -0,0 +1,77 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.common.dto.BookingDTO;
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.domain.Mappers.ConcertMapper;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.ByteArrayOutputStream;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JAXB marshalling of the DTOs sent most often: concerts, reservations and bookings. One JAXBContext is
+ * shared, as in the service, but each marshal gets a new Marshaller since Marshallers aren't thread safe and
+ * RESTEasy's provider creates one per response too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JaxbBenchmark {
+
+    @Param({"2", "10"})
+    public int numberOfSeats;
+
+    private JAXBContext _context;
+    private ConcertDTO _concert;
+    private ReservationDTO _reservation;
+    private BookingDTO _booking;
+
+    @Setup
+    public void createDtos() throws JAXBException {
+        _context = JAXBContext.newInstance(ConcertDTO.class, ReservationDTO.class, BookingDTO.class);
+
+        _concert = ConcertMapper.toDto(Fixtures.concert(5, 3));
+
+        Set<SeatDTO> seats = Fixtures.seats(PriceBand.PriceBandA, numberOfSeats);
+        ReservationRequestDTO request = new ReservationRequestDTO(numberOfSeats, PriceBand.PriceBandA, 1L, Fixtures.DATE);
+        _reservation = new ReservationDTO(1L, request, seats);
+        _booking = new BookingDTO(1L, 1L, "Concert", Fixtures.DATE, seats, PriceBand.PriceBandA);
+    }
+
+    @Benchmark
+    public byte[] marshalConcert() throws JAXBException {
+        return marshal(_concert);
+    }
+
+    @Benchmark
+    public byte[] marshalReservation() throws JAXBException {
+        return marshal(_reservation);
+    }
+
+    @Benchmark
+    public byte[] marshalBooking() throws JAXBException {
+        return marshal(_booking);
+    }
+
+
+    // Private methods
+
+
+    private byte[] marshal(Object dto) throws JAXBException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        Marshaller marshaller = _context.createMarshaller();
+        marshaller.marshal(dto, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.logging.RingBufferAppender;
+import org.apache.log4j.Appender;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a denial logged by ReserveResource, built by concatenation as it used to be and with parameters as it is
+ * now, both at a level that's disabled (as DEBUG is in production) and at one that's enabled. Enabled events are
+ * written synchronously, as by a ConsoleAppender, or through the RingBufferAppender; either way to a writer that
+ * throws the text away, so that only logging itself is measured.
+ *
+ * Run with -prof gc to see the allocation each way of logging costs, and with -t to see logging threads contend.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final String PATTERN = "%d [%t] %-5p %c %x - %m%n"; // As in log4j.properties
+
+    @Param({"Synchronous", "RingBuffer"})
+    public String appender;
+
+    private Logger _logger;
+    private Appender _appender;
+
+    private String _userAgent;
+    private ReservationRequestDTO _request;
+    private int _availableSeats;
+
+    @Setup(Level.Trial)
+    public void configureLogging() {
+        if (appender.equals("RingBuffer")) {
+            RingBufferAppender ringBuffer = new RingBufferAppender();
+            ringBuffer.setOverflowPolicy(RingBufferAppender.OverflowPolicy.Block.name()); // Every event is written
+            ringBuffer.setLayout(new PatternLayout(PATTERN));
+            ringBuffer.activateOptions(new DiscardingWriter());
+            _appender = ringBuffer;
+        } else {
+            _appender = new WriterAppender(new PatternLayout(PATTERN), new DiscardingWriter());
+        }
+        _appender.setName(appender);
+
+        org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(LoggingBenchmark.class);
+        logger.removeAllAppenders();
+        logger.addAppender(_appender);
+        logger.setAdditivity(false);
+        logger.setLevel(org.apache.log4j.Level.INFO);
+        _logger = LoggerFactory.getLogger(LoggingBenchmark.class);
+
+        _userAgent = "Apache-HttpClient/4.5.2 (Java/1.8.0_131)";
+        _request = new ReservationRequestDTO(4, PriceBand.PriceBandA, 1L, Fixtures.DATE);
+        _availableSeats = 3;
+    }
+
+    @TearDown(Level.Trial)
+    public void closeAppender() {
+        _appender.close();
+    }
+
+    @Benchmark
+    public void concatenatedDisabled() {
+        _logger.debug("Denied user agent: " + _userAgent + "; Requested (" + _request.getNumberOfSeats() + ") seats; Only (" + _availableSeats + ") available for concert id: " + _request.getConcertId() + " on date: " + _request.getDate());
+    }
+
+    @Benchmark
+    public void parameterisedDisabled() {
+        _logger.debug("Denied user agent: {}; Requested ({}) seats; Only ({}) available for concert id: {} on date: {}",
+                _userAgent, _request.getNumberOfSeats(), _availableSeats, _request.getConcertId(), _request.getDate());
+    }
+
+    @Benchmark
+    public void concatenatedEnabled() {
+        _logger.info("Denied user agent: " + _userAgent + "; Requested (" + _request.getNumberOfSeats() + ") seats; Only (" + _availableSeats + ") available for concert id: " + _request.getConcertId() + " on date: " + _request.getDate());
+    }
+
+    @Benchmark
+    public void parameterisedEnabled() {
+        _logger.info("Denied user agent: {}; Requested ({}) seats; Only ({}) available for concert id: {} on date: {}",
+                _userAgent, _request.getNumberOfSeats(), _availableSeats, _request.getConcertId(), _request.getDate());
+    }
+
+    /**
+     * Throws away everything written to it.
+     */
+    private static class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
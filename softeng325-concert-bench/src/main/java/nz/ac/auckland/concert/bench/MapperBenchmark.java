@@ -0,0 +1,78 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.common.dto.BookingDTO;
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.PerformerDTO;
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.domain.Booking;
+import nz.ac.auckland.concert.service.domain.Concert;
+import nz.ac.auckland.concert.service.domain.Mappers.BookingMapper;
+import nz.ac.auckland.concert.service.domain.Mappers.ConcertMapper;
+import nz.ac.auckland.concert.service.domain.Mappers.PerformerMapper;
+import nz.ac.auckland.concert.service.domain.Mappers.SeatMapper;
+import nz.ac.auckland.concert.service.domain.Performer;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.service.domain.SeatReservation;
+import nz.ac.auckland.concert.service.domain.Show;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks the mappers from domain objects to the DTOs the service sends. Bookings are mapped both from a
+ * reservation whose seats are a SeatBitmap and from one whose seats are SeatReservation rows, as both are found in
+ * the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    @Param({"2", "10"})
+    public int numberOfSeats;
+
+    private Concert _concert;
+    private Performer _performer;
+    private Booking _bitmapBooking;
+    private Booking _seatRowBooking;
+
+    @Setup
+    public void createDomainObjects() {
+        _concert = Fixtures.concert(5, 3);
+        _performer = _concert.getPerformers().iterator().next();
+
+        Show show = new Show(_concert, Fixtures.DATE);
+        Set<SeatDTO> seats = Fixtures.seats(PriceBand.PriceBandA, numberOfSeats);
+        Set<SeatReservation> seatRows = seats.stream().map(SeatMapper::toReservation).collect(Collectors.toSet());
+
+        _bitmapBooking = new Booking(new Reservation(SeatBitmap.encode(seats), show, Fixtures.DATE, PriceBand.PriceBandA), null);
+        _seatRowBooking = new Booking(new Reservation(seatRows, show, Fixtures.DATE, PriceBand.PriceBandA), null);
+    }
+
+    @Benchmark
+    public ConcertDTO concertToDto() {
+        return ConcertMapper.toDto(_concert);
+    }
+
+    @Benchmark
+    public PerformerDTO performerToDto() {
+        return PerformerMapper.toDto(_performer);
+    }
+
+    @Benchmark
+    public BookingDTO bitmapBookingToDto() {
+        return BookingMapper.toDto(_bitmapBooking);
+    }
+
+    @Benchmark
+    public BookingDTO seatRowBookingToDto() {
+        return BookingMapper.toDto(_seatRowBooking);
+    }
+}
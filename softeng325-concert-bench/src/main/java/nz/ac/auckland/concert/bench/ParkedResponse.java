@@ -0,0 +1,92 @@
+package nz.ac.auckland.concert.bench;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncResponse standing in for a client's parked request, without a servlet container behind it. Resuming it only
+ * records the entity, so benchmarks measure the service's own work.
+ */
+class ParkedResponse implements AsyncResponse {
+
+    private Object _entity;
+
+    Object getEntity() {
+        return _entity;
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        _entity = response;
+        return true;
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        _entity = response;
+        return true;
+    }
+
+    @Override
+    public boolean cancel() {
+        return true;
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return true;
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return true;
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return _entity == null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return _entity != null;
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {}
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,136 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.bench.data.BatchLoader;
+import nz.ac.auckland.concert.bench.data.BenchmarkDatabase;
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.domain.Mappers.SeatMapper;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.service.domain.SeatClaim;
+import nz.ac.auckland.concert.service.domain.Show;
+import nz.ac.auckland.concert.service.domain.User;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks storing a reservation the way ReserveResource.claimSeats does - the reservation, then a HELD claim per
+ * seat, then the user pointed at it, all in one transaction - for 1, 10 and 50 seats, with seats stored as a bitmap
+ * and as SEAT_RESERVATIONS rows (see Config.BITMAP_SEAT_STORAGE). The score is reservations per second. After each
+ * iteration the number of JDBC statements Hibernate prepared per reservation is printed, which JDBC batching keeps
+ * from growing with the number of seats.
+ *
+ * Each reservation is for a show of its own, so that no claims collide; the reservations and claims are deleted
+ * between iterations, so that every iteration starts from the same tables.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationWriteBenchmark {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2018, 1, 1, 0, 0);
+    private static final int SHOWS = 20_000; // Most reservations made in an iteration
+    private static final String USERNAME = "bench";
+
+    @Param({"1", "10", "50"})
+    public int numberOfSeats;
+
+    @Param({"true", "false"})
+    public boolean bitmapSeatStorage;
+
+    private BenchmarkDatabase _database;
+    private Statistics _statistics;
+    private long _concerts;
+    private Set<SeatDTO> _seats;
+    private int _reservations; // Made in this iteration, each for the next show
+
+    @Setup
+    public void loadDatabase() throws SQLException {
+        _database = new BenchmarkDatabase("write-" + numberOfSeats + "-" + bitmapSeatStorage);
+        _concerts = _database.queryForLong("SELECT COUNT(*) FROM CONCERTS"); // Numbered from 1 by db-init.sql
+        _database.load(this::insertFixtures);
+
+        _statistics = _database.getStatistics();
+        _statistics.setStatisticsEnabled(true);
+        _seats = Fixtures.seats(PriceBand.PriceBandC, numberOfSeats);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearReservations() throws SQLException {
+        _database.execute("UPDATE USERS SET RESERVATION = NULL", "DELETE FROM SEAT_CLAIMS", "DELETE FROM SEAT_RESERVATIONS",
+                "DELETE FROM RESERVATIONS");
+        _reservations = 0;
+        _statistics.clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        System.out.println(String.format("%n%.1f statements per reservation",
+                _statistics.getPrepareStatementCount() / (double) Math.max(1, _reservations)));
+    }
+
+    @TearDown
+    public void closeDatabase() {
+        _database.close();
+    }
+
+    @Benchmark
+    public Reservation reserve() {
+        if (_reservations == SHOWS) {
+            throw new IllegalStateException("Every show has a reservation; raise SHOWS");
+        }
+        long showId = ++_reservations;
+        EntityManager em = _database.getEntityManagerFactory().createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+
+            LocalDateTime expiry = LocalDateTime.now().plusSeconds(1);
+            Show show = em.find(Show.class, showId);
+            Reservation reservation = bitmapSeatStorage
+                    ? new Reservation(SeatBitmap.encode(_seats), show, expiry, PriceBand.PriceBandC)
+                    : new Reservation(_seats.stream().map(SeatMapper::toReservation).collect(Collectors.toSet()),
+                            show, expiry, PriceBand.PriceBandC);
+            em.persist(reservation);
+            em.flush();
+
+            for (SeatDTO seat : _seats) {
+                em.persist(new SeatClaim(show.getConcert(), show.getDate(), seat.getRow(), seat.getNumber(),
+                        reservation.getId(), expiry));
+            }
+
+            em.find(User.class, USERNAME).setReservation(reservation);
+            em.getTransaction().commit();
+            return reservation;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+
+    // Private methods
+
+
+    private void insertFixtures(BatchLoader loader) throws SQLException {
+        loader.table("USERS", "USERNAME", "PASSWORD", "FIRST_NAME", "LAST_NAME").insert(USERNAME, "password", "Bench", "User");
+
+        BatchLoader.Table shows = loader.table("SHOWS", "ID", "CONCERT_ID", "CONCERT_DATE");
+        for (int show = 0; show < SHOWS; show++) {
+            shows.insert(show + 1L, 1 + show % _concerts, Timestamp.valueOf(NOW.plusDays(show / _concerts).withHour(20)));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.util.TheatreUtility;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks TheatreUtility.findAvailableSeats, the search behind every reservation of any seats in a price band,
+ * for each band with the venue empty, half full and nearly full. Seats are booked throughout the venue at the given
+ * occupancy, chosen with a fixed seed so every run searches the same venue. Parameters are public fields, as JMH
+ * sets them by name (e.g. -p occupancy=0.99).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SeatSearchBenchmark {
+
+    @Param({"PriceBandA", "PriceBandB", "PriceBandC"})
+    public PriceBand priceBand;
+
+    @Param({"0.0", "0.5", "0.95"})
+    public double occupancy;
+
+    @Param({"2"})
+    public int numberOfSeats;
+
+    private Set<SeatDTO> _bookedSeats;
+
+    @Setup
+    public void bookSeats() {
+        List<SeatDTO> seats = new ArrayList<>();
+        for (SeatRow row : SeatRow.values()) {
+            for (int i = 1; i <= TheatreLayout.getNumberOfSeatsForRow(row); i++) {
+                seats.add(new SeatDTO(row, new SeatNumber(i)));
+            }
+        }
+        Collections.shuffle(seats, new Random(325));
+
+        _bookedSeats = new HashSet<>(seats.subList(0, (int) (seats.size() * occupancy)));
+    }
+
+    @Benchmark
+    public Set<SeatDTO> findAvailableSeats() {
+        return TheatreUtility.findAvailableSeats(numberOfSeats, priceBand, _bookedSeats);
+    }
+}
@@ -0,0 +1,47 @@
+package nz.ac.auckland.concert.bench;
+
+import nz.ac.auckland.concert.service.domain.Concert;
+import nz.ac.auckland.concert.service.domain.Types.SubscriptionType;
+import nz.ac.auckland.concert.service.services.SubscriptionManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks SubscriptionManager.notifySubscribers announcing a new concert to many parked subscribers. Every
+ * notification resumes and forgets all of them, so each is timed on its own (single-shot mode, one notification per
+ * iteration) with freshly parked responses, and parking them isn't counted.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200)
+@Measurement(iterations = 200)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubscriptionFanOutBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int subscribers;
+
+    private SubscriptionManager _subscriptions;
+    private Concert _concert;
+
+    @Setup(Level.Trial)
+    public void createConcert() {
+        _concert = Fixtures.concert(5, 3);
+    }
+
+    @Setup(Level.Iteration)
+    public void parkSubscribers() {
+        _subscriptions = new SubscriptionManager() {}; // Not the shared instance, so trials can't see each other's subscribers
+        for (int i = 0; i < subscribers; i++) {
+            _subscriptions.addSubscription(SubscriptionType.CONCERT, new ParkedResponse(), null);
+        }
+    }
+
+    @Benchmark
+    public SubscriptionManager notifySubscribers() {
+        _subscriptions.notifySubscribers(SubscriptionType.CONCERT, _concert, "http://localhost:10000/services/concerts/1");
+        return _subscriptions;
+    }
+}
@@ -0,0 +1,113 @@
+package nz.ac.auckland.concert.bench.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts rows over one JDBC connection in batches. Each table gets a prepared INSERT, whose rows are sent to the
+ * database BATCH_SIZE at a time; the connection is committed every COMMIT_ROWS rows, across all tables, so that no
+ * transaction grows without bound.
+ */
+public class BatchLoader implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int COMMIT_ROWS = 100_000;
+
+    private final Connection _connection;
+    private final List<Table> _tables = new ArrayList<>();
+    private long _uncommitted;
+
+    public BatchLoader(Connection connection) throws SQLException {
+        _connection = connection;
+        _connection.setAutoCommit(false);
+    }
+
+    /**
+     * Returns a table to insert rows into, giving values for the named columns.
+     */
+    public Table table(String name, String... columns) throws SQLException {
+        Table table = new Table(name, columns);
+        _tables.add(table);
+        return table;
+    }
+
+    List<Table> getTables() {
+        return _tables;
+    }
+
+    /**
+     * Sends every pending batch and commits.
+     */
+    public void commit() throws SQLException {
+        for (Table table : _tables) {
+            table.execute();
+        }
+        _connection.commit();
+        _uncommitted = 0;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            commit();
+        } finally {
+            for (Table table : _tables) {
+                table._statement.close();
+            }
+        }
+    }
+
+    public class Table {
+
+        private final String _name;
+        private final PreparedStatement _statement;
+        private int _pending; // Rows added since the last batch was sent
+        private long _rows;
+
+        private Table(String name, String[] columns) throws SQLException {
+            _name = name;
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(name).append(" (").append(String.join(", ", columns))
+                    .append(") VALUES (?");
+            for (int i = 1; i < columns.length; i++) {
+                sql.append(", ?");
+            }
+            _statement = _connection.prepareStatement(sql.append(')').toString());
+        }
+
+        /**
+         * Adds a row, given its values in the order of the table's columns.
+         */
+        public void insert(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                _statement.setObject(i + 1, values[i]);
+            }
+            _statement.addBatch();
+            _rows++;
+            if (++_pending == BATCH_SIZE) {
+                execute();
+            }
+
+            if (++_uncommitted == COMMIT_ROWS) {
+                commit();
+            }
+        }
+
+        String getName() {
+            return _name;
+        }
+
+        long getRows() {
+            return _rows;
+        }
+
+        private void execute() throws SQLException {
+            if (_pending > 0) {
+                _statement.executeBatch();
+                _pending = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package nz.ac.auckland.concert.bench.data;
+
+import nz.ac.auckland.concert.service.services.SchemaMigrator;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A database with the service's schema, for benchmarks that need more data than the service starts with. The
+ * persistence unit is opened against an H2 file of the benchmark's own under java.io.tmpdir, replacing any left by an
+ * earlier run, and every schema migration is applied, so the tables and indexes are those the service runs with.
+ * Fixtures are inserted over JDBC with a BatchLoader (see load()). The files are deleted again on close().
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    private static final String PERSISTENCE_UNIT = "nz.ac.auckland.concert";
+    private static final String JDBC_URL = "javax.persistence.jdbc.url";
+    private static final String[] FILE_EXTENSIONS = {".h2.db", ".lock.db", ".trace.db"};
+
+    private final Path _path; // Database file, less H2's extension
+    private final EntityManagerFactory _entityManagerFactory;
+    private final ConnectionProvider _connections;
+
+    /**
+     * Creates the database, named so that benchmarks running side by side don't share one.
+     */
+    public BenchmarkDatabase(String name) {
+        _path = Paths.get(System.getProperty("java.io.tmpdir"), "concert-bench-" + name);
+        deleteFiles();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(JDBC_URL, "jdbc:h2:" + _path + ";mv_store=false");
+        _entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, properties);
+        SchemaMigrator.migrate(_entityManagerFactory);
+
+        _connections = _entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return _entityManagerFactory;
+    }
+
+    /**
+     * Returns Hibernate's statistics for the database, which are only gathered once enabled.
+     */
+    public Statistics getStatistics() {
+        return _entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Inserts fixtures over one connection, with H2's transaction log and referential integrity checks turned off
+     * as in CatalogueGenerator, then updates the statistics the query planner works from.
+     */
+    public void load(Inserts inserts) throws SQLException {
+        Connection connection = _connections.getConnection();
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOG 0");
+                statement.execute("SET UNDO_LOG 0");
+                statement.execute("SET REFERENTIAL_INTEGRITY FALSE"); // Rows refer to ones in later batches
+            }
+            try (BatchLoader loader = new BatchLoader(connection)) {
+                inserts.insert(loader);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                statement.execute("SET UNDO_LOG 1");
+                statement.execute("SET LOG 2");
+                statement.execute("ANALYZE");
+            }
+            connection.commit();
+        } finally {
+            _connections.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Runs SQL statements, e.g. to drop an index, committing after the last.
+     */
+    public void execute(String... sql) throws SQLException {
+        Connection connection = _connections.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String each : sql) {
+                statement.execute(each);
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } finally {
+            _connections.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Runs a query whose first column of the first row is a number, e.g. a count, and returns it.
+     */
+    public long queryForLong(String sql) throws SQLException {
+        Connection connection = _connections.getConnection();
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        } finally {
+            _connections.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the bytes of disk that a table and its indexes take up.
+     */
+    public long getDiskSpaceUsed(String table) throws SQLException {
+        return queryForLong("CALL DISK_SPACE_USED('" + table + "')");
+    }
+
+    @Override
+    public void close() {
+        _entityManagerFactory.close();
+        deleteFiles();
+    }
+
+
+    // Private methods
+
+
+    private void deleteFiles() {
+        try {
+            for (String extension : FILE_EXTENSIONS) {
+                Files.deleteIfExists(Paths.get(_path + extension));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rows to insert into a BenchmarkDatabase.
+     */
+    @FunctionalInterface
+    public interface Inserts {
+
+        void insert(BatchLoader loader) throws SQLException;
+    }
+}
@@ -0,0 +1,463 @@
+package nz.ac.auckland.concert.bench.data;
+
+import nz.ac.auckland.concert.common.dto.CreditCardDTO;
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.Genre;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.domain.Types.SeatClaimState;
+import nz.ac.auckland.concert.service.services.Config;
+import nz.ac.auckland.concert.service.services.SchemaMigrator;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Fills the service's database with a large synthetic catalogue - performers, concerts and their shows - together
+ * with users, their credit cards and authorization tokens, and reservations and bookings for every show, for
+ * performance work that needs realistic volumes. Run from the bench module as
+ *
+ *     java -cp target/benchmarks.jar nz.ac.auckland.concert.bench.data.CatalogueGenerator --concerts 100000
+ *
+ * Options, each given as --name value:
+ *  - seed: seed of all random choices (325)
+ *  - performers, concerts, users: how many of each to create (50000, 100000, 100000)
+ *  - dates: most dates, and so shows, per concert (3)
+ *  - occupancy: average share of each price band's seats that is taken (0.15)
+ *  - lapsed: share of reservations that lapsed rather than being booked (0.05)
+ *  - url: JDBC URL of the database, instead of the one in persistence.xml
+ *
+ * The defaults make about 10 million SEAT_CLAIMS rows. The same options always generate the same data: every
+ * entity's random choices are drawn from a generator seeded with the seed and the entity's own id, so changing how
+ * many of one kind there are leaves the others alone. Dates count from 2018-01-01, so every reservation has expired
+ * and tokens never do.
+ *
+ * The schema is created, and migrated, by opening the persistence unit as the service does; whatever it holds is
+ * then replaced. Rows are inserted with JDBC batches (see BatchLoader), with H2's transaction log and referential
+ * integrity checks turned off while loading. Seats follow TheatreLayout: each show's booked seats are taken in groups
+ * of neighbouring seats of one price band, each group a reservation with a claim per seat, and its inventory counts
+ * the seats left in each band. Ids continue from the generated ones when the service creates more.
+ *
+ * The service only keeps the generated data when started with -Dconcert.persistence=production; its default profile
+ * re-creates the database on start-up.
+ */
+public class CatalogueGenerator {
+
+    private static final String PERSISTENCE_UNIT = "nz.ac.auckland.concert";
+    private static final String JDBC_URL = "javax.persistence.jdbc.url";
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(2018, 1, 1, 0, 0);
+    private static final int SCHEDULE_DAYS = 730; // Shows are spread over two years from ORIGIN
+    private static final Timestamp TOKEN_EXPIRY = Timestamp.valueOf(ORIGIN.plusYears(100));
+    private static final int MAX_PERFORMERS_PER_CONCERT = 3;
+    private static final int MAX_SEATS_PER_RESERVATION = 6;
+    private static final double CREDIT_CARD_SHARE = 0.8; // Share of users who registered a credit card
+    private static final double TOKEN_SHARE = 0.5; // Share of users with an authorization token
+
+    // Kinds of entity, each drawing from its own random numbers
+    private static final int PERFORMER = 1;
+    private static final int CONCERT = 2;
+    private static final int USER = 3;
+    private static final int SHOW = 4;
+
+    private static final String[] ADJECTIVES = {"Velvet", "Electric", "Midnight", "Golden", "Silent", "Neon", "Crimson",
+            "Wild", "Hollow", "Paper", "Broken", "Lunar", "Savage", "Northern", "Gentle", "Glass", "Burning", "Lost"};
+    private static final String[] NOUNS = {"Foxes", "Tides", "Echoes", "Wolves", "Harbours", "Saints", "Rivers", "Lights",
+            "Kings", "Shadows", "Engines", "Orchards", "Ghosts", "Mountains", "Sparrows", "Circuits", "Hearts", "Dunes"};
+    private static final String[] TOURS = {"World Tour", "Live", "Tour", "Arena Tour", "Unplugged", "Farewell Tour", "Sessions"};
+    private static final String[] FIRST_NAMES = {"Aroha", "Ben", "Chloe", "Daniel", "Emma", "Finn", "Grace", "Hemi", "Isla",
+            "Jack", "Kiri", "Liam", "Mia", "Noah", "Olivia", "Priya", "Quinn", "Ruby", "Sam", "Tane", "Wei", "Zoe"};
+    private static final String[] LAST_NAMES = {"Smith", "Williams", "Brown", "Wilson", "Taylor", "Ngata", "Singh", "Chen",
+            "Walker", "Patel", "Thompson", "Anderson", "Kumar", "Li", "Martin", "Parata", "Young", "Wright"};
+
+    private final Options _options;
+    private final BatchLoader _loader;
+    private final Map<PriceBand, SeatDTO[]> _seats = new HashMap<>(); // Seats of each band, in row then number order
+
+    private BatchLoader.Table _performers;
+    private BatchLoader.Table _concerts;
+    private BatchLoader.Table _concertDates;
+    private BatchLoader.Table _concertTariffs;
+    private BatchLoader.Table _concertPerformers;
+    private BatchLoader.Table _shows;
+    private BatchLoader.Table _showInventories;
+    private BatchLoader.Table _creditCards;
+    private BatchLoader.Table _users;
+    private BatchLoader.Table _tokens;
+    private BatchLoader.Table _reservations;
+    private BatchLoader.Table _seatReservations;
+    private BatchLoader.Table _seatClaims;
+    private BatchLoader.Table _bookings;
+
+    private String[] _cardHolders; // Usernames of users with a credit card, who alone can book
+    private long _lastShowId;
+    private long _lastReservationId;
+    private long _lastSeatReservationId;
+    private long _lastSeatClaimId;
+    private long _lastBookingId;
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+
+        Map<String, Object> properties = new HashMap<>();
+        if (options._url != null) {
+            properties.put(JDBC_URL, options._url);
+        }
+        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, properties);
+        try {
+            SchemaMigrator.migrate(entityManagerFactory);
+
+            ConnectionProvider connections = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry().getService(ConnectionProvider.class);
+            Connection connection = connections.getConnection();
+            try {
+                long start = System.nanoTime();
+                try (BatchLoader loader = new BatchLoader(connection)) {
+                    new CatalogueGenerator(options, loader).load(connection);
+                }
+                finishLoading(connection);
+                report(System.nanoTime() - start, connection);
+            } finally {
+                connections.closeConnection(connection);
+            }
+        } finally {
+            entityManagerFactory.close();
+        }
+    }
+
+    CatalogueGenerator(Options options, BatchLoader loader) {
+        _options = options;
+        _loader = loader;
+
+        for (PriceBand band : PriceBand.values()) {
+            List<SeatDTO> seats = new ArrayList<>();
+            for (SeatRow row : new TreeSet<>(TheatreLayout.getRowsForPriceBand(band))) {
+                for (int number = 1; number <= TheatreLayout.getNumberOfSeatsForRow(row); number++) {
+                    seats.add(new SeatDTO(row, new SeatNumber(number)));
+                }
+            }
+            _seats.put(band, seats.toArray(new SeatDTO[0]));
+        }
+    }
+
+    /**
+     * Empties the database's tables and inserts the generated data.
+     */
+    void load(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LOG 0"); // No transaction log; a failed load is simply run again
+            statement.execute("SET UNDO_LOG 0");
+            statement.execute("SET REFERENTIAL_INTEGRITY FALSE"); // Rows refer to ones in later batches
+            for (String table : new String[]{"BOOKINGS", "SEAT_CLAIMS", "SEAT_RESERVATIONS", "AUTHORIZATION_TOKENS", "USERS",
+                    "CREDIT_CARDS", "RESERVATIONS", "SHOW_INVENTORIES", "SHOWS", "CONCERT_PERFORMER", "CONCERT_TARIFS",
+                    "CONCERT_DATES", "CONCERTS", "PERFORMERS"}) {
+                statement.execute("TRUNCATE TABLE " + table);
+            }
+        }
+        connection.commit();
+
+        _performers = _loader.table("PERFORMERS", "ID", "NAME", "IMAGE_NAME", "GENRE");
+        _concerts = _loader.table("CONCERTS", "ID", "TITLE");
+        _concertDates = _loader.table("CONCERT_DATES", "CONCERT_ID", "DATES");
+        _concertTariffs = _loader.table("CONCERT_TARIFS", "CONCERT_ID", "PRICE_BAND", "PRICE");
+        _concertPerformers = _loader.table("CONCERT_PERFORMER", "CONCERT_ID", "PERFORMER_ID");
+        _creditCards = _loader.table("CREDIT_CARDS", "ID", "TYPE", "NAME", "NUMBER", "EXPIRY_DATE");
+        _users = _loader.table("USERS", "USERNAME", "PASSWORD", "FIRST_NAME", "LAST_NAME", "CREDIT_CARD");
+        _tokens = _loader.table("AUTHORIZATION_TOKENS", "USER_USERNAME", "TOKEN", "EXPIRY");
+        _shows = _loader.table("SHOWS", "ID", "CONCERT_ID", "CONCERT_DATE");
+        _reservations = _loader.table("RESERVATIONS",
+                "ID", "SHOW_ID", "CONCERT_ID", "CONCERT_DATE", "EXPIRY", "PRICE_BAND", "SEATS_BITMAP", "VERSION");
+        _seatReservations = _loader.table("SEAT_RESERVATIONS", "ID", "SEAT_RESERVATION_ID", "SEAT_ROW", "SEAT_NUMBER");
+        _seatClaims = _loader.table("SEAT_CLAIMS",
+                "ID", "CONCERT_ID", "CONCERT_DATE", "SEAT_ROW", "SEAT_NUMBER", "STATE", "EXPIRY", "RESERVATION_ID");
+        _bookings = _loader.table("BOOKINGS", "ID", "RESERVATION_ID", "SHOW_ID", "USER_ID", "VERSION");
+        _showInventories = _loader.table("SHOW_INVENTORIES", "SHOW_ID", "REMAINING_A", "REMAINING_B", "REMAINING_C", "VERSION");
+
+        for (long id = 1; id <= _options._performers; id++) {
+            createPerformer(id);
+        }
+        createUsers();
+        for (long id = 1; id <= _options._concerts; id++) {
+            createConcert(id);
+            if (id % (_options._concerts / 10 + 1) == 0) {
+                System.out.println(String.format("Created %d of %d concerts, with %d shows and %d reservations",
+                        id, _options._concerts, _lastShowId, _lastReservationId));
+            }
+        }
+    }
+
+
+    // Private methods
+
+
+    private void createPerformer(long id) throws SQLException {
+        SplittableRandom random = random(PERFORMER, id);
+        Genre[] genres = Genre.values();
+        _performers.insert(id, "The " + pick(ADJECTIVES, random) + " " + pick(NOUNS, random), "performer" + id + ".jpg",
+                genres[random.nextInt(genres.length)].name());
+    }
+
+    private void createUsers() throws SQLException {
+        List<String> cardHolders = new ArrayList<>();
+        long cardId = 0;
+        for (long id = 1; id <= _options._users; id++) {
+            SplittableRandom random = random(USER, id);
+            String username = "user" + id;
+            String firstName = pick(FIRST_NAMES, random);
+            String lastName = pick(LAST_NAMES, random);
+
+            Long creditCard = null;
+            if (random.nextDouble() < CREDIT_CARD_SHARE) {
+                creditCard = ++cardId;
+                CreditCardDTO.Type type = random.nextBoolean() ? CreditCardDTO.Type.Visa : CreditCardDTO.Type.Master;
+                StringBuilder number = new StringBuilder(type == CreditCardDTO.Type.Visa ? "4" : "5");
+                while (number.length() < 16) {
+                    number.append(random.nextInt(10));
+                }
+                _creditCards.insert(creditCard, type.name(), firstName + " " + lastName, number.toString(),
+                        Date.valueOf(ORIGIN.toLocalDate().plusMonths(12 + random.nextInt(48))));
+                cardHolders.add(username);
+            }
+            _users.insert(username, "password" + id, firstName, lastName, creditCard);
+
+            if (random.nextDouble() < TOKEN_SHARE) {
+                _tokens.insert(username, new UUID(random.nextLong(), random.nextLong()).toString(), TOKEN_EXPIRY);
+            }
+        }
+        _cardHolders = cardHolders.toArray(new String[0]);
+    }
+
+    private void createConcert(long id) throws SQLException {
+        SplittableRandom random = random(CONCERT, id);
+
+        long headliner = 1 + random.nextLong(_options._performers);
+        Set<Long> performers = new HashSet<>();
+        performers.add(headliner);
+        int supportActs = random.nextInt(MAX_PERFORMERS_PER_CONCERT);
+        for (int i = 0; i < supportActs; i++) {
+            performers.add(1 + random.nextLong(_options._performers));
+        }
+
+        _concerts.insert(id, pick(ADJECTIVES, random) + " " + pick(NOUNS, random) + " " + pick(TOURS, random));
+        for (long performer : performers) {
+            _concertPerformers.insert(id, performer);
+        }
+
+        BigDecimal price = BigDecimal.valueOf(60 + random.nextInt(141)); // Front seats cost $60 to $200
+        _concertTariffs.insert(id, PriceBand.PriceBandA.name(), price.setScale(2, RoundingMode.HALF_UP));
+        _concertTariffs.insert(id, PriceBand.PriceBandB.name(), price.multiply(new BigDecimal("0.75")).setScale(2, RoundingMode.HALF_UP));
+        _concertTariffs.insert(id, PriceBand.PriceBandC.name(), price.multiply(new BigDecimal("0.5")).setScale(2, RoundingMode.HALF_UP));
+
+        TreeSet<LocalDateTime> dates = new TreeSet<>();
+        int numberOfDates = 1 + random.nextInt(_options._dates);
+        while (dates.size() < numberOfDates) {
+            dates.add(ORIGIN.plusDays(random.nextInt(SCHEDULE_DAYS)).withHour(random.nextBoolean() ? 17 : 20));
+        }
+        for (LocalDateTime date : dates) {
+            _concertDates.insert(id, Timestamp.valueOf(date));
+            createShow(id, date);
+        }
+    }
+
+    private void createShow(long concertId, LocalDateTime date) throws SQLException {
+        long showId = ++_lastShowId;
+        SplittableRandom random = random(SHOW, showId);
+        Timestamp showDate = Timestamp.valueOf(date);
+        _shows.insert(showId, concertId, showDate);
+
+        Map<PriceBand, Integer> remaining = new HashMap<>();
+        for (PriceBand band : PriceBand.values()) {
+            SeatDTO[] seats = _seats.get(band);
+
+            // Take a random selection of the band's seats, varying around the average occupancy from show to show
+            int taken = (int) Math.min(seats.length, Math.round(seats.length * _options._occupancy * (0.5 + random.nextDouble())));
+            int[] order = new int[seats.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            for (int i = 0; i < taken; i++) {
+                int j = i + random.nextInt(order.length - i);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            Arrays.sort(order, 0, taken); // Back in layout order, so that each reservation's seats are near each other
+
+            int booked = 0;
+            for (int first = 0; first < taken; ) {
+                int size = Math.min(1 + random.nextInt(MAX_SEATS_PER_RESERVATION), taken - first);
+                Set<SeatDTO> reservation = new HashSet<>();
+                for (int i = first; i < first + size; i++) {
+                    reservation.add(seats[order[i]]);
+                }
+                if (createReservation(concertId, showId, showDate, band, reservation, random)) {
+                    booked += size;
+                }
+                first += size;
+            }
+            remaining.put(band, seats.length - booked);
+        }
+
+        _showInventories.insert(showId, remaining.get(PriceBand.PriceBandA), remaining.get(PriceBand.PriceBandB),
+                remaining.get(PriceBand.PriceBandC), 0L);
+    }
+
+    // Returns whether the reservation was booked, rather than left to lapse with its seats still held
+    private boolean createReservation(long concertId, long showId, Timestamp showDate, PriceBand band, Set<SeatDTO> seats,
+                                      SplittableRandom random) throws SQLException {
+        long reservationId = ++_lastReservationId;
+        boolean lapsed = random.nextDouble() < _options._lapsed;
+        Timestamp expiry = Timestamp.valueOf(showDate.toLocalDateTime().minusDays(1 + random.nextInt(60)));
+
+        _reservations.insert(reservationId, showId, concertId, showDate, expiry, band.name(),
+                Config.BITMAP_SEAT_STORAGE ? SeatBitmap.encode(seats) : null, 0L);
+        for (SeatDTO seat : seats) {
+            if (!Config.BITMAP_SEAT_STORAGE) {
+                _seatReservations.insert(++_lastSeatReservationId, reservationId, seat.getRow().ordinal(),
+                        seat.getNumber().intValue());
+            }
+            _seatClaims.insert(++_lastSeatClaimId, concertId, showDate, seat.getRow().ordinal(), seat.getNumber().intValue(),
+                    (lapsed ? SeatClaimState.HELD : SeatClaimState.BOOKED).name(), expiry, reservationId);
+        }
+        if (lapsed) {
+            return false;
+        }
+
+        String user = _cardHolders.length == 0 ? null : _cardHolders[random.nextInt(_cardHolders.length)];
+        _bookings.insert(++_lastBookingId, reservationId, showId, user, 0L);
+        return true;
+    }
+
+    private SplittableRandom random(int kind, long id) {
+        long seed = _options._seed * 0x9E3779B97F4A7C15L + ((long) kind << 48) + id;
+        seed = (seed ^ (seed >>> 33)) * 0xFF51AFD7ED558CCDL; // Spread neighbouring seeds apart, as in MurmurHash3
+        seed = (seed ^ (seed >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return new SplittableRandom(seed ^ (seed >>> 33));
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // Restores checking and logging, and moves the database's id sequences past the generated ids
+    private static void finishLoading(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"SHOWS", "RESERVATIONS", "SEAT_RESERVATIONS", "SEAT_CLAIMS", "BOOKINGS"}) {
+                statement.execute("ALTER SEQUENCE " + table + "_ID_SEQUENCE RESTART WITH " + (maxId(statement, table) + 1));
+            }
+            for (String table : new String[]{"PERFORMERS", "CONCERTS", "CREDIT_CARDS"}) { // Identity columns
+                statement.execute("ALTER TABLE " + table + " ALTER COLUMN ID RESTART WITH " + (maxId(statement, table) + 1));
+            }
+            statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+            statement.execute("SET UNDO_LOG 1");
+            statement.execute("SET LOG 2");
+            statement.execute("ANALYZE"); // Statistics for the query planner, now that the tables have grown
+        }
+        connection.commit();
+    }
+
+    private static long maxId(Statement statement, String table) throws SQLException {
+        try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(ID), 0) FROM " + table)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private static void report(long elapsedNanos, Connection connection) throws SQLException {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        try (Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"PERFORMERS", "CONCERTS", "CONCERT_DATES", "CONCERT_TARIFS", "CONCERT_PERFORMER",
+                    "SHOWS", "SHOW_INVENTORIES", "CREDIT_CARDS", "USERS", "AUTHORIZATION_TOKENS", "RESERVATIONS",
+                    "SEAT_RESERVATIONS", "SEAT_CLAIMS", "BOOKINGS"}) {
+                try (ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    result.next();
+                    total += result.getLong(1);
+                    System.out.println(String.format("%-22s %,12d rows", table, result.getLong(1)));
+                }
+            }
+        }
+        System.out.println(String.format("Loaded %,d rows in %.1f s (%,.0f rows/s)", total, seconds, total / seconds));
+    }
+
+    /**
+     * Sizes and shape of the data to generate, as given on the command line.
+     */
+    static class Options {
+
+        private long _seed = 325;
+        private long _performers = 50_000;
+        private long _concerts = 100_000;
+        private long _users = 100_000;
+        private int _dates = 3;
+        private double _occupancy = 0.15;
+        private double _lapsed = 0.05;
+        private String _url;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i += 2) {
+                if (!args[i].startsWith("--") || i + 1 == args.length) {
+                    throw new IllegalArgumentException("Expected --name value, but got: " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i].substring(2)) {
+                    case "seed":
+                        options._seed = Long.parseLong(value);
+                        break;
+                    case "performers":
+                        options._performers = Long.parseLong(value);
+                        break;
+                    case "concerts":
+                        options._concerts = Long.parseLong(value);
+                        break;
+                    case "users":
+                        options._users = Long.parseLong(value);
+                        break;
+                    case "dates":
+                        options._dates = Integer.parseInt(value);
+                        break;
+                    case "occupancy":
+                        options._occupancy = Double.parseDouble(value);
+                        break;
+                    case "lapsed":
+                        options._lapsed = Double.parseDouble(value);
+                        break;
+                    case "url":
+                        options._url = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (options._performers < 1 || options._dates < 1) {
+                throw new IllegalArgumentException("Every concert needs a performer and a date");
+            }
+            return options;
+        }
+    }
+}
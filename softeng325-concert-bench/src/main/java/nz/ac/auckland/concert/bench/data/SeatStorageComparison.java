@@ -0,0 +1,181 @@
+package nz.ac.auckland.concert.bench.data;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.domain.Mappers.SeatMapper;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the two ways a reservation's seats can be stored (see Config.BITMAP_SEAT_STORAGE): a SEAT_RESERVATIONS
+ * row per seat, and a SeatBitmap in the reservation's SEATS_BITMAP column. For each, the same reservations are loaded
+ * into a database of their own (see BenchmarkDatabase), and the harness reports the time taken to load them, the
+ * disk space the RESERVATIONS and SEAT_RESERVATIONS tables take up, and the latency of reading a reservation and
+ * decoding its seats into SeatDTOs, as building a ReservationDTO or BookingDTO does. Run from the bench module as
+ *
+ *     java -cp target/benchmarks.jar nz.ac.auckland.concert.bench.data.SeatStorageComparison --seats 10000000
+ *
+ * Options, each given as --name value:
+ *  - seats: seats reserved in all (10000000)
+ *  - seats-per-reservation: seats in each reservation, chosen at random from the venue (10)
+ *  - reads: reservations read, at random, to measure the latency (10000)
+ *
+ * Reservations are spread over the concerts of db-init.sql, a show a day. The seats of a show's reservations may
+ * overlap, as nothing here claims them.
+ */
+public class SeatStorageComparison {
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(2018, 1, 1, 20, 0);
+    private static final int SHOWS = 10_000;
+    private static final int WARM_UP_READS = 1000;
+
+    private final long _seats;
+    private final int _seatsPerReservation;
+    private final int _reads;
+    private final SeatDTO[] _venue;
+
+    public static void main(String[] args) throws SQLException {
+        long seats = 10_000_000;
+        int seatsPerReservation = 10;
+        int reads = 10_000;
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value, but got: " + args[i]);
+            }
+            switch (args[i].substring(2)) {
+                case "seats":
+                    seats = Long.parseLong(args[i + 1]);
+                    break;
+                case "seats-per-reservation":
+                    seatsPerReservation = Integer.parseInt(args[i + 1]);
+                    break;
+                case "reads":
+                    reads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SeatStorageComparison comparison = new SeatStorageComparison(seats, seatsPerReservation, reads);
+        comparison.compare(false);
+        comparison.compare(true);
+    }
+
+    SeatStorageComparison(long seats, int seatsPerReservation, int reads) {
+        _seats = seats;
+        _seatsPerReservation = seatsPerReservation;
+        _reads = reads;
+
+        List<SeatDTO> venue = new ArrayList<>();
+        for (PriceBand band : PriceBand.values()) {
+            for (SeatRow row : TheatreLayout.getRowsForPriceBand(band)) {
+                for (int number = 1; number <= TheatreLayout.getNumberOfSeatsForRow(row); number++) {
+                    venue.add(new SeatDTO(row, new SeatNumber(number)));
+                }
+            }
+        }
+        _venue = venue.toArray(new SeatDTO[0]);
+        if (seatsPerReservation < 1 || seatsPerReservation > _venue.length) {
+            throw new IllegalArgumentException("A reservation holds from 1 to " + _venue.length + " seats");
+        }
+    }
+
+    /**
+     * Loads the reservations with their seats stored one way, and reports on them.
+     */
+    void compare(boolean bitmap) throws SQLException {
+        String storage = bitmap ? "bitmap" : "rows";
+        long reservations = _seats / _seatsPerReservation;
+
+        try (BenchmarkDatabase database = new BenchmarkDatabase("seat-storage-" + storage)) {
+            long concerts = database.queryForLong("SELECT COUNT(*) FROM CONCERTS"); // Numbered from 1 by db-init.sql
+
+            long start = System.nanoTime();
+            database.load(loader -> insertReservations(loader, reservations, concerts, bitmap));
+            double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+            long bytes = database.getDiskSpaceUsed("RESERVATIONS") + database.getDiskSpaceUsed("SEAT_RESERVATIONS");
+
+            SplittableRandom random = new SplittableRandom(325);
+            for (int i = 0; i < WARM_UP_READS; i++) {
+                readSeats(database, 1 + random.nextLong(reservations));
+            }
+            long[] latencies = new long[_reads];
+            for (int i = 0; i < _reads; i++) {
+                long readStart = System.nanoTime();
+                readSeats(database, 1 + random.nextLong(reservations));
+                latencies[i] = System.nanoTime() - readStart;
+            }
+            Arrays.sort(latencies);
+
+            long seats = reservations * _seatsPerReservation;
+            System.out.println(String.format("%-6s %,d seats in %,d reservations: loaded in %.1f s; %,d bytes on disk " +
+                            "(%.1f bytes/seat); read and decode mean %.0f us, p99 %.0f us", storage, seats, reservations,
+                    loadSeconds, bytes, bytes / (double) seats, Arrays.stream(latencies).average().orElse(0) / 1e3,
+                    latencies[(int) (latencies.length * 0.99)] / 1e3));
+        }
+    }
+
+
+    // Private methods
+
+
+    private void insertReservations(BatchLoader loader, long reservations, long concerts, boolean bitmap) throws SQLException {
+        BatchLoader.Table shows = loader.table("SHOWS", "ID", "CONCERT_ID", "CONCERT_DATE");
+        for (int show = 0; show < SHOWS; show++) {
+            shows.insert(show + 1L, 1 + show % concerts, Timestamp.valueOf(ORIGIN.plusDays(show / concerts)));
+        }
+
+        BatchLoader.Table reservationRows = loader.table("RESERVATIONS",
+                "ID", "SHOW_ID", "CONCERT_ID", "CONCERT_DATE", "EXPIRY", "PRICE_BAND", "SEATS_BITMAP", "VERSION");
+        BatchLoader.Table seatRows = loader.table("SEAT_RESERVATIONS", "ID", "SEAT_RESERVATION_ID", "SEAT_ROW", "SEAT_NUMBER");
+        Timestamp expiry = Timestamp.valueOf(ORIGIN.minusDays(1));
+        long seatId = 0;
+        for (long id = 1; id <= reservations; id++) {
+            int show = (int) (id % SHOWS);
+            Set<SeatDTO> seats = seatsOf(id);
+            reservationRows.insert(id, show + 1L, 1 + show % concerts, Timestamp.valueOf(ORIGIN.plusDays(show / concerts)),
+                    expiry, PriceBand.PriceBandA.name(), bitmap ? SeatBitmap.encode(seats) : null, 0L);
+            if (!bitmap) {
+                for (SeatDTO seat : seats) {
+                    seatRows.insert(++seatId, id, seat.getRow().ordinal(), seat.getNumber().intValue());
+                }
+            }
+        }
+    }
+
+    // A reservation's seats, the same whichever way they are stored
+    private Set<SeatDTO> seatsOf(long reservationId) {
+        SplittableRandom random = new SplittableRandom(reservationId);
+        Set<SeatDTO> seats = new HashSet<>();
+        while (seats.size() < _seatsPerReservation) {
+            seats.add(_venue[random.nextInt(_venue.length)]);
+        }
+        return seats;
+    }
+
+    private static Set<SeatDTO> readSeats(BenchmarkDatabase database, long reservationId) {
+        EntityManager em = database.getEntityManagerFactory().createEntityManager();
+
+        try {
+            return SeatMapper.toDtos(em.find(Reservation.class, reservationId));
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package nz.ac.auckland.concert.client.load;
+
+import nz.ac.auckland.concert.client.clientApp.Subscription;
+import nz.ac.auckland.concert.client.service.ExtendedService;
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.CreditCardDTO;
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.UserDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The journeys virtual users take through the service, each a sequence of ConcertService calls timed by
+ * LoadStatistics. A journey stops at the first call that fails.
+ *
+ * Buyers and subscribers act as registered users. Accounts are reused between journeys, as returning customers,
+ * but never by two journeys at once; a new account is registered whenever none is free.
+ */
+class Journeys {
+
+    private static final int MOST_SEATS_PER_RESERVATION = 4;
+
+    private final LoadStatistics _statistics;
+    private final int _maxSubscriptions;
+
+    private final Queue<UserDTO> _idleAccounts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _accountsCreated = new AtomicInteger();
+    private final AtomicInteger _subscriptions = new AtomicInteger();
+
+    /**
+     * @param statistics where calls are timed
+     * @param maxSubscriptions most concert subscriptions to hold open. Each holds a pooled connection until the
+     *                         process exits, so too many would leave none for the other journeys.
+     */
+    Journeys(LoadStatistics statistics, int maxSubscriptions) {
+        _statistics = statistics;
+        _maxSubscriptions = maxSubscriptions;
+    }
+
+    /**
+     * Looks through the concerts and performers on offer, without logging in.
+     */
+    void browse() {
+        ExtendedService service = new ExtendedService();
+
+        _statistics.time("getConcerts", service::getConcerts);
+        _statistics.time("getPerformers", service::getPerformers);
+    }
+
+    /**
+     * Logs in, reserves a few seats of a random price band for a random concert date, books them and checks the
+     * bookings made.
+     */
+    void buy() {
+        UserDTO account = takeAccount();
+        try {
+            ExtendedService service = logIn(account);
+
+            ConcertDTO concert = pick(_statistics.time("getConcerts", service::getConcerts));
+            LocalDateTime date = pick(concert.getDates());
+            PriceBand priceBand = pick(PriceBand.values());
+            int numberOfSeats = ThreadLocalRandom.current().nextInt(MOST_SEATS_PER_RESERVATION) + 1;
+
+            ReservationDTO reservation = _statistics.time("reserveSeats", () ->
+                    service.reserveSeats(new ReservationRequestDTO(numberOfSeats, priceBand, concert.getId(), date)));
+            _statistics.time("confirmReservation", () -> service.confirmReservation(reservation));
+            _statistics.time("getBookings", service::getBookings);
+        } finally {
+            _idleAccounts.add(account);
+        }
+    }
+
+    /**
+     * Logs in, looks through the concerts on offer and subscribes to hear about new ones, while there is room for
+     * more subscriptions.
+     */
+    void subscribe() {
+        UserDTO account = takeAccount();
+        try {
+            ExtendedService service = logIn(account);
+
+            _statistics.time("getConcerts", service::getConcerts);
+            if (_subscriptions.incrementAndGet() <= _maxSubscriptions) {
+                _statistics.time("subscribeToNewConcerts", () -> service.subscribeToNewConcerts(new Subscription()));
+            }
+        } finally {
+            _idleAccounts.add(account);
+        }
+    }
+
+
+    // Private methods
+
+
+    private UserDTO takeAccount() {
+        UserDTO account = _idleAccounts.poll();
+        if (account != null) {
+            return account;
+        }
+
+        int number = _accountsCreated.incrementAndGet();
+        UserDTO newAccount = new UserDTO("load-user-" + number, "password", "User", "Load");
+
+        ExtendedService service = new ExtendedService();
+        _statistics.time("createUser", () -> service.createUser(newAccount));
+        _statistics.time("registerCreditCard", () -> service.registerCreditCard(
+                new CreditCardDTO(CreditCardDTO.Type.Visa, "Load User", "4444-3333-2222-1111", LocalDate.now().plusYears(2))));
+        return newAccount;
+    }
+
+    private ExtendedService logIn(UserDTO account) {
+        ExtendedService service = new ExtendedService();
+        _statistics.time("authenticateUser", () -> service.authenticateUser(account));
+        return service;
+    }
+
+    private static <T> T pick(Set<T> choices) {
+        return pick(new ArrayList<>(choices));
+    }
+
+    private static <T> T pick(List<T> choices) {
+        return choices.get(ThreadLocalRandom.current().nextInt(choices.size()));
+    }
+
+    private static <T> T pick(T[] choices) {
+        return choices[ThreadLocalRandom.current().nextInt(choices.length)];
+    }
+}
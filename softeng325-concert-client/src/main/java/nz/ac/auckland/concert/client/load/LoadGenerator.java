@@ -0,0 +1,158 @@
+package nz.ac.auckland.concert.client.load;
+
+import nz.ac.auckland.concert.service.services.ConcertApplication;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator that drives the service through ExtendedService clients, the way on-sale traffic would. The
+ * service is started in embedded Jetty with its H2 database, as in the tests, and three populations of virtual users
+ * arrive at it: browsers looking through concerts and performers, buyers reserving and booking seats, and
+ * subscribers waiting to hear of new concerts (see Journeys).
+ *
+ * Arrivals follow an open model: each population's users arrive as a Poisson process at a set rate, whether or not
+ * earlier users have been served, so a slow service builds a backlog rather than slowing the load down. Journeys run
+ * on a pool of at most maxJourneys threads; arrivals beyond that are dropped and counted. At the end, throughput,
+ * errors by Messages constant and latency percentiles are printed per operation, and the full latency distributions
+ * written as .hgrm files.
+ *
+ * Run from the client module with e.g.
+ * mvn compile exec:java -Dexec.mainClass=nz.ac.auckland.concert.client.load.LoadGenerator -Dexec.args="buyers=50"
+ *
+ * Options are given as key=value arguments:
+ * duration         seconds to generate load for (60).
+ * browsers         browser arrivals per second (20).
+ * buyers           buyer arrivals per second (5).
+ * subscribers      subscriber arrivals per second (1).
+ * maxJourneys      most journeys running at once (500).
+ * maxSubscriptions most concert subscriptions to hold open (50).
+ * histograms       directory to write .hgrm files to (target/load).
+ */
+public class LoadGenerator {
+
+    private static final int SERVER_PORT = 10000;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30; // Time allowed for journeys under way to finish
+
+    private final Map<String, String> _options = new HashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(args).run();
+        System.exit(0); // Open subscriptions would otherwise keep the client running
+    }
+
+    LoadGenerator(String[] args) {
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            _options.put(option[0], option[1]);
+        }
+    }
+
+    void run() throws Exception {
+        long durationNanos = TimeUnit.SECONDS.toNanos((long) option("duration", 60));
+        int maxJourneys = (int) option("maxJourneys", 500);
+
+        Server server = startService();
+        try {
+            LoadStatistics statistics = new LoadStatistics();
+            Journeys journeys = new Journeys(statistics, (int) option("maxSubscriptions", 50));
+            ThreadPoolExecutor workers = new ThreadPoolExecutor(0, maxJourneys, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+
+            long start = System.nanoTime();
+            long end = start + durationNanos;
+
+            List<Thread> arrivals = new ArrayList<>();
+            arrivals.add(arrive("browser", option("browsers", 20), journeys::browse, end, workers, statistics));
+            arrivals.add(arrive("buyer", option("buyers", 5), journeys::buy, end, workers, statistics));
+            arrivals.add(arrive("subscriber", option("subscribers", 1), journeys::subscribe, end, workers, statistics));
+            for (Thread thread : arrivals) {
+                thread.join();
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            statistics.report(System.out, elapsedSeconds);
+            statistics.writeHistograms(new File(_options.getOrDefault("histograms", "target/load")));
+        } finally {
+            server.stop();
+        }
+    }
+
+
+    // Private methods
+
+
+    private double option(String key, double defaultValue) {
+        String value = _options.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static Server startService() throws Exception {
+        ServletHolder servletHolder = new ServletHolder(new HttpServletDispatcher());
+        servletHolder.setInitParameter("javax.ws.rs.Application", ConcertApplication.class.getName());
+        ServletContextHandler servletCtxHandler = new ServletContextHandler();
+        servletCtxHandler.setContextPath("/services");
+        servletCtxHandler.addServlet(servletHolder, "/");
+
+        Server server = new Server(SERVER_PORT);
+        server.setHandler(servletCtxHandler);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Starts a thread that sets off journeys for one population until end, with exponentially distributed gaps
+     * between arrivals averaging 1 / ratePerSecond.
+     */
+    private static Thread arrive(String population, double ratePerSecond, Runnable journey, long end,
+                                 ThreadPoolExecutor workers, LoadStatistics statistics) {
+        Thread thread = new Thread(() -> {
+            if (ratePerSecond <= 0) {
+                return;
+            }
+            long next = System.nanoTime();
+            while (true) {
+                double gapSeconds = -Math.log(1 - ThreadLocalRandom.current().nextDouble()) / ratePerSecond;
+                next += (long) (gapSeconds * 1e9);
+                if (next >= end) {
+                    return;
+                }
+                LockSupport.parkNanos(next - System.nanoTime());
+
+                long intendedStart = next;
+                try {
+                    workers.execute(() -> {
+                        try {
+                            journey.run();
+                        } catch (RuntimeException e) { // Already counted against the call that failed
+                        } finally {
+                            statistics.recordJourney(population, intendedStart);
+                        }
+                    });
+                } catch (RejectedExecutionException e) { // Every worker is busy
+                    statistics.recordDropped(population);
+                }
+            }
+        }, "arrivals-" + population);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,164 @@
+package nz.ac.auckland.concert.client.load;
+
+import nz.ac.auckland.concert.client.service.ServiceException;
+import nz.ac.auckland.concert.common.message.Messages;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency and error counts gathered during a load run, per operation. Latencies are kept in HdrHistograms, in
+ * microseconds. Errors are counted by the name of the Messages constant the service failed with, so they can be
+ * told apart at a glance (e.g. INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION against SERVICE_COMMUNICATION_ERROR).
+ */
+class LoadStatistics {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final Map<String, String> MESSAGE_NAMES = messageNames(); // Message -> name of its Messages constant
+
+    private final Map<String, Histogram> _latencies = new ConcurrentHashMap<>(); // Operation -> latency histogram
+    private final Map<String, LongAdder> _errors = new ConcurrentHashMap<>(); // Operation and error -> count
+
+    /**
+     * Runs an operation against the service, recording how long it took and, should it fail, why. Failures are
+     * rethrown so that the journey making the call stops there.
+     */
+    <T> T time(String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            recordError(operation, e);
+            throw e;
+        } finally {
+            record(operation, start);
+        }
+    }
+
+    void time(String operation, Runnable call) {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records the time from when a journey should have started to now. Measuring from the intended start, rather
+     * than from when a thread got round to it, keeps delays in starting journeys in the figures (coordinated
+     * omission).
+     */
+    void recordJourney(String population, long intendedStartNanos) {
+        record("journey:" + population, intendedStartNanos);
+    }
+
+    /**
+     * Records a journey that wasn't started because too many were already running.
+     */
+    void recordDropped(String population) {
+        _errors.computeIfAbsent("journey:" + population + " DROPPED", key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Prints throughput, error counts and latency percentiles for every operation, followed by the errors seen.
+     */
+    void report(PrintStream out, double elapsedSeconds) {
+        out.println(String.format("%-28s %9s %8s %9s %9s %9s %9s %9s %9s",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(_latencies).entrySet()) {
+            String operation = entry.getKey();
+            Histogram histogram = entry.getValue();
+            long errors = _errors.entrySet().stream()
+                    .filter(error -> error.getKey().startsWith(operation + " "))
+                    .mapToLong(error -> error.getValue().sum())
+                    .sum();
+
+            out.println(String.format("%-28s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                    operation,
+                    histogram.getTotalCount(),
+                    errors,
+                    histogram.getTotalCount() / elapsedSeconds,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue())));
+        }
+
+        if (!_errors.isEmpty()) {
+            out.println();
+            out.println(String.format("%-28s %-60s %9s", "operation", "error", "count"));
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(_errors).entrySet()) {
+                String[] operationAndError = entry.getKey().split(" ", 2);
+                out.println(String.format("%-28s %-60s %9d", operationAndError[0], operationAndError[1], entry.getValue().sum()));
+            }
+        }
+    }
+
+    /**
+     * Writes each operation's full percentile distribution to directory, one <operation>.hgrm file each, in the
+     * format HdrHistogram's plotter reads.
+     */
+    void writeHistograms(File directory) throws FileNotFoundException {
+        directory.mkdirs();
+        for (Map.Entry<String, Histogram> entry : _latencies.entrySet()) {
+            File file = new File(directory, entry.getKey().replace(':', '-') + ".hgrm");
+            try (PrintStream out = new PrintStream(file)) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0); // In milliseconds
+            }
+        }
+    }
+
+
+    // Private methods
+
+
+    private void record(String operation, long startNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        _latencies
+                .computeIfAbsent(operation, key -> new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, SIGNIFICANT_DIGITS))
+                .recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+    }
+
+    private void recordError(String operation, RuntimeException e) {
+        String error;
+        if (e instanceof ServiceException) {
+            error = MESSAGE_NAMES.getOrDefault(e.getMessage(), "UNRECOGNISED (" + e.getMessage() + ")");
+        } else {
+            error = e.getClass().getSimpleName();
+        }
+        _errors.computeIfAbsent(operation + " " + error, key -> new LongAdder()).increment();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static Map<String, String> messageNames() {
+        Map<String, String> names = new HashMap<>();
+        for (Field field : Messages.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    names.put((String) field.get(null), field.getName());
+                } catch (IllegalAccessException e) { // Fields are public
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,76 @@
+package nz.ac.auckland.concert.client.service;
+
+import java.awt.Image;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import nz.ac.auckland.concert.common.dto.BookingDTO;
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.CreditCardDTO;
+import nz.ac.auckland.concert.common.dto.PerformerDTO;
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.UserDTO;
+
+
+/**
+ * Non-blocking variant of the ConcertService interface.
+ *
+ * Each method sends its request and returns immediately with a
+ * CompletableFuture that is completed once the service has replied. No
+ * calling thread is held for the duration of the request, so a single client
+ * can keep many requests in flight at once.
+ *
+ * Each method has the same semantics as its counterpart in ConcertService.
+ * Where ConcertService would throw a ServiceException, the returned future is
+ * instead completed exceptionally with a ServiceException carrying the same
+ * message (as defined in class nz.ac.auckland.concert.common.Messages).
+ *
+ */
+public interface AsyncConcertService {
+
+	/**
+	 * @see ConcertService#getConcerts()
+	 */
+	CompletableFuture<Set<ConcertDTO>> getConcerts();
+
+	/**
+	 * @see ConcertService#getPerformers()
+	 */
+	CompletableFuture<Set<PerformerDTO>> getPerformers();
+
+	/**
+	 * @see ConcertService#createUser(UserDTO)
+	 */
+	CompletableFuture<UserDTO> createUser(UserDTO newUser);
+
+	/**
+	 * @see ConcertService#authenticateUser(UserDTO)
+	 */
+	CompletableFuture<UserDTO> authenticateUser(UserDTO user);
+
+	/**
+	 * @see ConcertService#getImageForPerformer(PerformerDTO)
+	 */
+	CompletableFuture<Image> getImageForPerformer(PerformerDTO performer);
+
+	/**
+	 * @see ConcertService#reserveSeats(ReservationRequestDTO)
+	 */
+	CompletableFuture<ReservationDTO> reserveSeats(ReservationRequestDTO reservationRequest);
+
+	/**
+	 * @see ConcertService#confirmReservation(ReservationDTO)
+	 */
+	CompletableFuture<Void> confirmReservation(ReservationDTO reservation);
+
+	/**
+	 * @see ConcertService#registerCreditCard(CreditCardDTO)
+	 */
+	CompletableFuture<Void> registerCreditCard(CreditCardDTO creditCard);
+
+	/**
+	 * @see ConcertService#getBookings()
+	 */
+	CompletableFuture<Set<BookingDTO>> getBookings();
+}
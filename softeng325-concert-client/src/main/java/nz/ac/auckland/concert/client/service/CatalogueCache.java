@@ -0,0 +1,185 @@
+package nz.ac.auckland.concert.client.service;
+
+import nz.ac.auckland.concert.client.clientApp.Subscription;
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.PerformerDTO;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Client side copy of the concert and performer catalogue, keyed by id. The catalogue is filled from the service
+ * once, after which reads are local map lookups. Changes are applied incrementally as they arrive on the concert,
+ * performer and image notification feeds of an ExtendedService, and the whole catalogue is re-read from the service
+ * whenever it is older than its time-to-live - a safety net for any notification that was missed.
+ */
+public class CatalogueCache {
+
+    // Notifications end with the URL of the new resource, e.g. "... Check it out at: http://host/services/concerts/3"
+    private static final String URL_MARKER = "at: ";
+
+    // Image notifications name the performer: "A new image x.jpg has been added for <name>, check it out at: <url>"
+    private static final String PERFORMER_NAME_START = " has been added for ";
+    private static final String PERFORMER_NAME_END = ", check it out at: ";
+
+    private final ExtendedService _service; // Notification feeds and single resource lookups
+    private final DefaultService _loader; // Paged retrieval of the full catalogue
+    private final long _ttlMillis;
+
+    private volatile Map<Long, ConcertDTO> _concerts = new ConcurrentHashMap<>();
+    private volatile Map<Long, PerformerDTO> _performers = new ConcurrentHashMap<>();
+    private volatile long _lastRefreshMillis; // 0 until first filled
+
+    public CatalogueCache(ExtendedService service, long ttlMillis) {
+        _service = service;
+        _loader = new DefaultService();
+        _ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Starts listening to the concert, performer and image notification feeds.
+     */
+    public void subscribe() {
+        _service.subscribeToNewConcerts(new CatalogueSubscription(this::applyConcertNotification));
+        _service.subscribeToNewPerformers(new CatalogueSubscription(this::applyPerformerNotification));
+        _service.subscribeToNewImages(new CatalogueSubscription(this::applyImageNotification));
+    }
+
+    public Set<ConcertDTO> getConcerts() {
+        refreshIfStale();
+        return new HashSet<>(_concerts.values());
+    }
+
+    public Set<PerformerDTO> getPerformers() {
+        refreshIfStale();
+        return new HashSet<>(_performers.values());
+    }
+
+    public ConcertDTO getConcert(long id) {
+        refreshIfStale();
+        return _concerts.get(id);
+    }
+
+    public PerformerDTO getPerformer(long id) {
+        refreshIfStale();
+        return _performers.get(id);
+    }
+
+    /**
+     * Re-reads the whole catalogue from the service and replaces the local copy with it.
+     */
+    public synchronized void refresh() {
+        Map<Long, ConcertDTO> concerts = _loader.getConcerts().stream()
+                .collect(Collectors.toConcurrentMap(ConcertDTO::getId, Function.identity()));
+        Map<Long, PerformerDTO> performers = _loader.getPerformers().stream()
+                .collect(Collectors.toConcurrentMap(PerformerDTO::getId, Function.identity()));
+
+        _concerts = concerts;
+        _performers = performers;
+        _lastRefreshMillis = System.currentTimeMillis();
+    }
+
+
+    // Private methods
+
+
+    private void refreshIfStale() {
+        if (System.currentTimeMillis() - _lastRefreshMillis > _ttlMillis) {
+            synchronized (this) {
+                if (System.currentTimeMillis() - _lastRefreshMillis > _ttlMillis) { // Not already refreshed by another reader
+                    refresh();
+                }
+            }
+        }
+    }
+
+    private void applyConcertNotification(String notification) {
+        Long id = idFromUrl(notification);
+        if (id == null) {
+            return;
+        }
+
+        ConcertDTO concert = _service.getConcert(id);
+        _concerts.put(concert.getId(), concert);
+
+        // Performers list the concerts they play in, so those entries are now out of date too
+        for (Long performerId : concert.getPerformerIds()) {
+            PerformerDTO performer = _service.getPerformer(performerId);
+            _performers.put(performer.getId(), performer);
+        }
+    }
+
+    private void applyPerformerNotification(String notification) {
+        Long id = idFromUrl(notification);
+        if (id == null) {
+            return;
+        }
+
+        PerformerDTO performer = _service.getPerformer(id);
+        _performers.put(performer.getId(), performer);
+    }
+
+    private void applyImageNotification(String notification) {
+        int nameStart = notification.indexOf(PERFORMER_NAME_START);
+        int nameEnd = notification.lastIndexOf(PERFORMER_NAME_END);
+        if (nameStart < 0 || nameEnd < nameStart) {
+            return;
+        }
+        String name = notification.substring(nameStart + PERFORMER_NAME_START.length(), nameEnd);
+
+        // The image URL doesn't carry the performer's id, so reload whichever performer has that name
+        for (PerformerDTO cached : _performers.values()) {
+            if (name.equals(cached.getName())) {
+                PerformerDTO performer = _service.getPerformer(cached.getId());
+                _performers.put(performer.getId(), performer);
+            }
+        }
+    }
+
+    private static Long idFromUrl(String notification) {
+        int urlStart = notification.lastIndexOf(URL_MARKER);
+        if (urlStart < 0) {
+            return null;
+        }
+        String url = notification.substring(urlStart + URL_MARKER.length()).trim();
+
+        try {
+            return Long.parseLong(url.substring(url.lastIndexOf('/') + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Subscription that hands each notification received to the catalogue as it arrives, rather than holding it
+     * for a later poll.
+     */
+    private class CatalogueSubscription extends Subscription {
+
+        private final Consumer<String> _handler;
+
+        CatalogueSubscription(Consumer<String> handler) {
+            _handler = handler;
+        }
+
+        @Override
+        public void updateSubscription(List<String> message) {
+            super.updateSubscription(message);
+
+            if (_lastRefreshMillis == 0) { // Nothing cached yet, the first fill will pick the change up
+                return;
+            }
+            try {
+                message.forEach(_handler);
+            } catch (ServiceException e) {
+                _lastRefreshMillis = 0; // Couldn't apply the change; fall back to a full refresh on the next read
+            }
+        }
+    }
+}
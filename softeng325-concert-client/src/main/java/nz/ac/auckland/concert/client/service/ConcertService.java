@@ -131,7 +131,8 @@ public interface ConcertService {
 	 * 
 	 * @param reservationRequest a description of the reservation, including 
 	 * number of seats, price band, concert identifier, and concert date. All 
-	 * fields are expected to be filled.
+	 * fields are expected to be filled, except for the seats, which are only
+	 * given to reserve particular seats of the price band.
 	 * 
 	 * @return a ReservationDTO object that describes the reservation. This 
 	 * includes the original ReservationDTO parameter plus the seats (a Set of
@@ -159,6 +160,13 @@ public interface ConcertService {
 	 * seats within the required price band are unavailable.
 	 * Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION
 	 * 
+	 * Condition: the requested seats aren't all seats of the price band.
+	 * Messages.INVALID_SEATS_FOR_RESERVATION
+	 * 
+	 * Condition: some of the requested seats are already taken. The exception
+	 * is a SeatConflictException, which lists the seats that are taken.
+	 * Messages.REQUESTED_SEATS_UNAVAILABLE_FOR_RESERVATION
+	 * 
 	 * Condition: there is a communication error.
 	 * Messages.SERVICE_COMMUNICATION_ERROR
 	 * 
@@ -11,8 +11,17 @@ import javax.ws.rs.client.ClientBuilder;
 
 public class Config {
 
+    // Upper bounds on pooled connections. HttpClient's defaults (20 in total, 2 per route) would otherwise
+    // cap every client talking to the one service at two requests in flight.
+    private static final int MAX_POOLED_CONNECTIONS = 200;
+    private static final int MAX_POOLED_CONNECTIONS_PER_ROUTE = 100;
+
     // The following macros are for a thread safe pooled client.
     private static final PoolingHttpClientConnectionManager CM = new PoolingHttpClientConnectionManager();
+    static {
+        CM.setMaxTotal(MAX_POOLED_CONNECTIONS);
+        CM.setDefaultMaxPerRoute(MAX_POOLED_CONNECTIONS_PER_ROUTE);
+    }
     private static final CloseableHttpClient CLOSEABLE_HTTP_CLIENT = HttpClientBuilder.create().setConnectionManager(CM).build();
     private static final ApacheHttpClient4Engine ENGINE = new ApacheHttpClient4Engine(CLOSEABLE_HTTP_CLIENT);
     public final static Client POOLED_CLIENT = new ResteasyClientBuilder().httpEngine(ENGINE).build();
@@ -22,4 +31,13 @@ public class Config {
 
     public static final String LOCAL_SERVER_ADDRESS = "http://localhost:10000/services";
 
+    // Client side performer image cache: size bound, how long a copy is trusted before it is revalidated against the
+    // service's ETag, and whether decoded images are kept alongside the downloaded bytes.
+    public static final long IMAGE_CACHE_MAX_BYTES = 32 * 1024 * 1024;
+    public static final long IMAGE_CACHE_REVALIDATE_AFTER_MILLIS = 60 * 1000;
+    public static final boolean IMAGE_CACHE_RETAIN_DECODED = true;
+
+    // Longest a reservation request waits in the service's waiting room, over all its retries, before giving up.
+    public static final long ADMISSION_MAX_WAIT_SECONDS = 120;
+
 }
@@ -0,0 +1,221 @@
+package nz.ac.auckland.concert.client.service;
+
+import nz.ac.auckland.concert.common.dto.*;
+import nz.ac.auckland.concert.common.message.Messages;
+
+import javax.imageio.ImageIO;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Class implementing functionality outlined by the AsyncConcertService interface. Requests are sent through
+ * the JAX-RS async invoker of the pooled client, so no calling thread waits on the network. All methods here
+ * follow the same general steps as DefaultService, with each step chained onto the pending response:
+ *  1)  Send message to service and receive response
+ *  2)  Diagnose any errors and complete exceptionally with the appropriate ServiceException
+ *  3)  Read any embedded entities and complete the returned future with them
+ */
+public class DefaultAsyncService implements AsyncConcertService {
+
+    // Constants:
+    protected static final int RETRIEVE_WINDOW_SIZE = DefaultService.RETRIEVE_WINDOW_SIZE;
+
+    // Fields
+    protected Client _client;
+    protected volatile String _authorizationToken; // Written by whichever pool thread completes authentication
+
+
+    public DefaultAsyncService() {
+
+        _client = Config.POOLED_CLIENT;
+
+    }
+
+
+    @Override
+    public CompletableFuture<Set<ConcertDTO>> getConcerts() {
+
+        String url = Config.LOCAL_SERVER_ADDRESS + String.format("/concerts?start=%d&size=%d", 0, RETRIEVE_WINDOW_SIZE);
+        return retrieveAll(url, new GenericType<Set<ConcertDTO>>() {}, false, new HashSet<>());
+    }
+
+    @Override
+    public CompletableFuture<Set<PerformerDTO>> getPerformers() {
+
+        String url = Config.LOCAL_SERVER_ADDRESS + String.format("/performers?start=%d&size=%d", 0, RETRIEVE_WINDOW_SIZE);
+        return retrieveAll(url, new GenericType<Set<PerformerDTO>>() {}, false, new HashSet<>());
+    }
+
+    @Override
+    public CompletableFuture<UserDTO> createUser(UserDTO newUser) {
+
+        Invocation.Builder request = _client.target(Config.LOCAL_SERVER_ADDRESS + "/users").request()
+                .accept(MediaType.APPLICATION_XML);
+
+        return invoke(request, "POST", Entity.xml(newUser), res -> {
+            checkStatus(res, 400, 409); // Incomplete fields, username conflict
+
+            // Store auth. details
+            _authorizationToken = res.getHeaderString("Authorization");
+            return res.getLocation();
+        }).thenCompose(location -> invoke(
+                _client.target(location).request().header("Authorization", _authorizationToken), // Insert authorisation token
+                "GET", null, res -> res.readEntity(UserDTO.class)));
+    }
+
+    @Override
+    public CompletableFuture<UserDTO> authenticateUser(UserDTO user) {
+
+        Invocation.Builder request = _client.target(Config.LOCAL_SERVER_ADDRESS + "/users/login").request()
+                .accept(MediaType.APPLICATION_XML);
+
+        return invoke(request, "POST", Entity.xml(user), res -> {
+            checkStatus(res, 400, 401, 404); // Missing fields, wrong password, no such user
+
+            // Store auth. details
+            _authorizationToken = res.getHeaderString("Authorization");
+            return res.readEntity(UserDTO.class);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Image> getImageForPerformer(PerformerDTO performer) {
+
+        Invocation.Builder request = _client.target(Config.LOCAL_SERVER_ADDRESS + "/images/" + performer.getImageName()).request()
+                .accept("image/png");
+
+        return invoke(request, "GET", null, res -> {
+            checkStatus(res, 404, 503);
+
+            byte[] byteArray = res.readEntity(byte[].class);
+            try {
+                return ImageIO.read(new ByteArrayInputStream(byteArray));
+            } catch (IOException e) { // Couldn't read file
+                throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<ReservationDTO> reserveSeats(ReservationRequestDTO reservationRequest) {
+
+        return invoke(authorizedRequest(Config.LOCAL_SERVER_ADDRESS + "/reserve"), "POST", Entity.xml(reservationRequest), res -> {
+            checkStatus(res, 400, 401, 403, 404, 409, 503);
+            return res.readEntity(ReservationDTO.class);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> confirmReservation(ReservationDTO reservation) {
+
+        return invoke(authorizedRequest(Config.LOCAL_SERVER_ADDRESS + "/reserve/book"), "POST", Entity.xml(reservation), res -> {
+            checkStatus(res, 401, 402, 403, 408);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> registerCreditCard(CreditCardDTO creditCard) {
+
+        return invoke(authorizedRequest(Config.LOCAL_SERVER_ADDRESS + "/users/payment"), "POST", Entity.xml(creditCard), res -> {
+            checkStatus(res, 401, 403);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Set<BookingDTO>> getBookings() {
+
+        String url = Config.LOCAL_SERVER_ADDRESS + String.format("/users/book?start=%d&size=%d", 0, RETRIEVE_WINDOW_SIZE);
+        return retrieveAll(url, new GenericType<Set<BookingDTO>>() {}, true, new HashSet<>());
+    }
+
+
+    // Private methods
+
+
+    private Invocation.Builder authorizedRequest(String url) {
+        return _client
+                .target(url)
+                .request()
+                .header("Authorization", _authorizationToken) // Insert authorisation token
+                .accept(MediaType.APPLICATION_XML);
+    }
+
+    /**
+     * Sends a request through the async invoker and applies reader to the response on completion. The response is
+     * always closed afterwards so that its pooled connection is released. A transport failure completes the
+     * returned future with SERVICE_COMMUNICATION_ERROR, exactly as DefaultService would throw it.
+     */
+    private <T> CompletableFuture<T> invoke(Invocation.Builder request, String method, Entity<?> entity, Function<Response, T> reader) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                try {
+                    future.complete(reader.apply(response));
+                } catch (ServiceException e) {
+                    future.completeExceptionally(e);
+                } catch (RuntimeException e) { // Entity could not be read
+                    future.completeExceptionally(new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR));
+                } finally {
+                    response.close();
+                }
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                future.completeExceptionally(new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR));
+            }
+        };
+
+        if (entity == null) {
+            request.async().method(method, callback);
+        } else {
+            request.async().method(method, entity, callback);
+        }
+        return future;
+    }
+
+    /**
+     * Walks the paged collection starting at url, chaining the request for each next page onto the previous one
+     * until a page smaller than the retrieve window is returned.
+     */
+    private <T> CompletableFuture<Set<T>> retrieveAll(String url, GenericType<Set<T>> type, boolean authorized, Set<T> results) {
+        Invocation.Builder request = authorized ? authorizedRequest(url) : _client.target(url).request();
+
+        return invoke(request, "GET", null, res -> {
+            if (authorized) {
+                checkStatus(res, 401, 403);
+            }
+
+            Set<T> resultList = res.readEntity(type);
+            results.addAll(resultList);
+            // Next page location, or null when this was the last full window
+            return resultList.size() == RETRIEVE_WINDOW_SIZE ? res.getLocation().toString() : null;
+        }).thenCompose(next -> next == null
+                ? CompletableFuture.completedFuture(results)
+                : retrieveAll(next, type, authorized, results));
+    }
+
+    private static void checkStatus(Response res, int... errorStatuses) {
+        for (int status : errorStatuses) {
+            if (res.getStatus() == status) {
+                throw new ServiceException(res.readEntity(String.class));
+            }
+        }
+    }
+}
@@ -3,19 +3,20 @@ package nz.ac.auckland.concert.client.service;
 import nz.ac.auckland.concert.common.dto.*;
 import nz.ac.auckland.concert.common.message.Messages;
 
-import javax.imageio.ImageIO;
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.awt.*;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class implementing functionality outlined by the ConcertService interface. All methods
@@ -28,6 +29,11 @@ public class DefaultService implements ConcertService {
 
     // Constants:
     protected static final int RETRIEVE_WINDOW_SIZE = 10;
+    protected static final String ADMISSION_TICKET_HEADER = "Admission-Ticket";
+
+    // Images are the same for every user, so all service instances share one cache
+    protected static final ImageCache IMAGE_CACHE = new ImageCache(
+            Config.IMAGE_CACHE_MAX_BYTES, Config.IMAGE_CACHE_REVALIDATE_AFTER_MILLIS, Config.IMAGE_CACHE_RETAIN_DECODED);
 
     // Fields
     protected Client _client;
@@ -149,21 +155,34 @@ public class DefaultService implements ConcertService {
     @Override
     public Image getImageForPerformer(PerformerDTO performer) throws ServiceException {
 
+        return IMAGE_CACHE.getImage(performer.getImageName(), this::fetchImage);
+    }
+
+    /**
+     * Downloads an image for the image cache. When the cache already holds a copy its ETag is sent along, and null is
+     * returned if the service replies that the copy is still current.
+     */
+    protected ImageCache.Entry fetchImage(String imageName, String etag) throws ServiceException {
+
         try {
-            Response res = _client.target(Config.LOCAL_SERVER_ADDRESS + "/images/" + performer.getImageName()).request()
-                    .accept("image/png").get();
+            Invocation.Builder request = _client.target(Config.LOCAL_SERVER_ADDRESS + "/images/" + imageName).request()
+                    .accept("image/png");
+            if (etag != null) {
+                request.header(HttpHeaders.IF_NONE_MATCH, new EntityTag(etag));
+            }
+            Response res = request.get();
 
             switch(res.getStatus()) {
+                case 304: res.close(); return null; // Cached copy is still current
                 case 404: throw new ServiceException(res.readEntity(String.class));
                 case 503: throw new ServiceException(res.readEntity(String.class));
             }
 
+            EntityTag tag = res.getEntityTag();
             byte[] byteArray = res.readEntity(byte[].class);
-            return ImageIO.read(new ByteArrayInputStream(byteArray));
-        } catch (IOException e) { // Couldn't read file
+            return new ImageCache.Entry(byteArray, tag == null ? null : tag.getValue());
+        } catch (ServiceUnavailableException | ProcessingException e) {
             throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
-        } finally {
-
         }
     }
 
@@ -171,19 +190,35 @@ public class DefaultService implements ConcertService {
     public ReservationDTO reserveSeats(ReservationRequestDTO reservationRequest) throws ServiceException {
 
         try {
-            Response res = _client
-                    .target(Config.LOCAL_SERVER_ADDRESS + "/reserve")
-                    .request()
-                    .header("Authorization", _authorizationToken) // Insert authorisation token
-                    .accept(MediaType.APPLICATION_XML)
-                    .post(Entity.xml(reservationRequest));
+            String ticket = null; // Turn in the service's waiting room, once given one
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Config.ADMISSION_MAX_WAIT_SECONDS);
+            Response res;
+            while (true) {
+                res = _client
+                        .target(Config.LOCAL_SERVER_ADDRESS + "/reserve")
+                        .request()
+                        .header("Authorization", _authorizationToken) // Insert authorisation token
+                        .header(ADMISSION_TICKET_HEADER, ticket)
+                        .accept(MediaType.APPLICATION_XML)
+                        .post(Entity.xml(reservationRequest));
+
+                if (res.getStatus() != 503) {
+                    break;
+                }
+                ticket = waitForTurn(res, deadline); // Too many requests for the concert, wait our turn and retry with the ticket
+            }
 
             switch(res.getStatus()) {
                 case 400: throw new ServiceException(res.readEntity(String.class));
                 case 401: throw new ServiceException(res.readEntity(String.class));
                 case 403: throw new ServiceException(res.readEntity(String.class));
                 case 404: throw new ServiceException(res.readEntity(String.class));
-                case 409: throw new ServiceException(res.readEntity(String.class));
+                case 409:
+                    if (reservationRequest.getSeats() != null) { // Lists which of the requested seats are taken
+                        SeatConflictDTO conflict = res.readEntity(SeatConflictDTO.class);
+                        throw new SeatConflictException(conflict.getMessage(), conflict.getSeats());
+                    }
+                    throw new ServiceException(res.readEntity(String.class));
 
             }
 
@@ -269,4 +304,36 @@ public class DefaultService implements ConcertService {
 
         return bookings;
     }
+
+
+    // Private methods
+
+
+    /**
+     * Waits out a 503 (Service Unavailable) response from the service's waiting room, for the number of seconds
+     * given by its Retry-After header, and returns the ticket to retry with. Throws the response's message if the
+     * waiting room is full, as no ticket is given then, and gives up if the wait would run past the deadline (as
+     * given by System.nanoTime()).
+     */
+    private String waitForTurn(Response res, long deadline) throws ServiceException {
+        String message = res.readEntity(String.class);
+        String ticket = res.getHeaderString(ADMISSION_TICKET_HEADER);
+        String retryAfter = res.getHeaderString(HttpHeaders.RETRY_AFTER);
+        if (ticket == null || retryAfter == null || Messages.RESERVATION_ADMISSION_REFUSED.equals(message)) { // Refused, not queued
+            throw new ServiceException(message);
+        }
+
+        long waitMillis = Long.parseLong(retryAfter) * 1000;
+        if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis) > deadline) { // Waited long enough
+            throw new ServiceException(Messages.RESERVATION_ADMISSION_REFUSED);
+        }
+
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(message);
+        }
+        return ticket;
+    }
 }
@@ -1,9 +1,15 @@
 package nz.ac.auckland.concert.client.service;
 
 import nz.ac.auckland.concert.client.clientApp.Subscription;
+import nz.ac.auckland.concert.common.dto.AdmissionDTO;
+import nz.ac.auckland.concert.common.dto.AvailabilityDTO;
+import nz.ac.auckland.concert.common.dto.BookingDTO;
 import nz.ac.auckland.concert.common.dto.ConcertDTO;
 import nz.ac.auckland.concert.common.dto.NewsItemDTO;
 import nz.ac.auckland.concert.common.dto.PerformerDTO;
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.SeatMapDTO;
 import nz.ac.auckland.concert.common.message.Messages;
 
 import javax.ws.rs.ProcessingException;
@@ -12,6 +18,9 @@ import javax.ws.rs.client.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 /**
  * This class contains all additional / optional functionality described by the assignment brief. It
@@ -24,6 +33,135 @@ public class ExtendedService extends DefaultService {
         _client = Config.POOLED_CLIENT;
     }
 
+    // Opt-in local catalogue, null until enableCatalogueCache() is called
+    private CatalogueCache _catalogueCache;
+
+    /**
+     * Serves getConcerts() and getPerformers() from a local catalogue from now on. The catalogue is filled once,
+     * then kept up to date from the concert, performer and image notification feeds, with a full refresh whenever
+     * it is older than ttlMillis. Notifications require an authorization token, so this should be called after
+     * the user has been created or authenticated.
+     */
+    public CatalogueCache enableCatalogueCache(long ttlMillis) {
+        _catalogueCache = new CatalogueCache(this, ttlMillis);
+        _catalogueCache.subscribe();
+        return _catalogueCache;
+    }
+
+    @Override
+    public Set<ConcertDTO> getConcerts() throws ServiceException {
+        return _catalogueCache == null ? super.getConcerts() : _catalogueCache.getConcerts();
+    }
+
+    @Override
+    public Set<PerformerDTO> getPerformers() throws ServiceException {
+        return _catalogueCache == null ? super.getPerformers() : _catalogueCache.getPerformers();
+    }
+
+    /**
+     * Retrieves a single concert given its id.
+     */
+    public ConcertDTO getConcert(long id) {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/concerts/" + id)
+                    .request()
+                    .accept(MediaType.APPLICATION_XML)
+                    .get();
+
+            return res.readEntity(ConcertDTO.class);
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
+    /**
+     * Retrieves a single performer given its id.
+     */
+    public PerformerDTO getPerformer(long id) {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/performers/" + id)
+                    .request()
+                    .accept(MediaType.APPLICATION_XML)
+                    .get();
+
+            return res.readEntity(PerformerDTO.class);
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
+    /**
+     * Retrieves the number of seats still available in each price band for a concert on one of its dates.
+     */
+    public AvailabilityDTO getAvailability(long concertId, LocalDateTime date) throws ServiceException {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/concerts/" + concertId + "/availability")
+                    .queryParam("date", date.toString())
+                    .request()
+                    .accept(MediaType.APPLICATION_XML)
+                    .get();
+
+            switch (res.getStatus()) {
+                case 400: throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+                case 404: throw new ServiceException(res.readEntity(String.class));
+            }
+
+            return res.readEntity(AvailabilityDTO.class);
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
+    /**
+     * Retrieves the availability of every seat for a concert on one of its dates.
+     */
+    public SeatMapDTO getSeatMap(long concertId, LocalDateTime date) throws ServiceException {
+        return fetchSeatMap(_client
+                .target(Config.LOCAL_SERVER_ADDRESS + "/concerts/" + concertId + "/seats")
+                .queryParam("date", date.toString()));
+    }
+
+    /**
+     * Waits for the seats of a concert on one of its dates to change after the given version of its seat map, and
+     * retrieves the changed seats. Returns a SeatMapDTO without changes if none were made before the service timed
+     * out, or a complete one if the version is too old to send changes from.
+     */
+    public SeatMapDTO getSeatMapChanges(long concertId, LocalDateTime date, long since) throws ServiceException {
+        return fetchSeatMap(_client
+                .target(Config.LOCAL_SERVER_ADDRESS + "/concerts/" + concertId + "/seats/changes")
+                .queryParam("date", date.toString())
+                .queryParam("since", since));
+    }
+
+    /**
+     * Retrieves the state of the waiting room that reservation requests for a concert on one of its dates pass
+     * through: how many requests are queued, and how fast they are admitted.
+     */
+    public AdmissionDTO getAdmission(long concertId, LocalDateTime date) throws ServiceException {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/concerts/" + concertId + "/admission")
+                    .queryParam("date", date.toString())
+                    .request()
+                    .accept(MediaType.APPLICATION_XML)
+                    .get();
+
+            if (res.getStatus() == 400) {
+                throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+            }
+            if (res.getStatus() == 404) { // Concert isn't scheduled on the date
+                throw new ServiceException(res.readEntity(String.class));
+            }
+
+            return res.readEntity(AdmissionDTO.class);
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
     public PerformerDTO createPerformer(PerformerDTO performerDTO) {
         try {
             Response res = _client
@@ -102,6 +240,87 @@ public class ExtendedService extends DefaultService {
         }
     }
 
+    /**
+     * Joins the waitlist for a sold out price band. The returned Future completes with the reservation the service
+     * makes on the user's behalf once enough seats come back, which must then be confirmed as usual.
+     */
+    public Future<ReservationDTO> joinWaitlist(ReservationRequestDTO reservationRequest) {
+        return _client
+                .target(Config.LOCAL_SERVER_ADDRESS + "/reserve/waitlist")
+                .request()
+                .header("Authorization", _authorizationToken) // Insert authorisation token
+                .accept(MediaType.APPLICATION_XML)
+                .async()
+                .post(Entity.xml(reservationRequest), ReservationDTO.class);
+    }
+
+    /**
+     * Releases the current user's pending reservation, so that its seats are available to others straight away.
+     */
+    public void releaseReservation() throws ServiceException {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/reserve")
+                    .request()
+                    .header("Authorization", _authorizationToken) // Insert authorisation token
+                    .accept(MediaType.APPLICATION_XML)
+                    .delete();
+
+            switch (res.getStatus()) {
+                case 401: throw new ServiceException(res.readEntity(String.class));
+                case 403: throw new ServiceException(res.readEntity(String.class));
+                case 404: throw new ServiceException(res.readEntity(String.class));
+            }
+            res.close();
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
+    /**
+     * Cancels one of the current user's bookings, as returned by getBookings(). Its seats become available again.
+     */
+    public void cancelBooking(BookingDTO booking) throws ServiceException {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/reserve/book/" + booking.getId())
+                    .request()
+                    .header("Authorization", _authorizationToken) // Insert authorisation token
+                    .accept(MediaType.APPLICATION_XML)
+                    .delete();
+
+            switch (res.getStatus()) {
+                case 401: throw new ServiceException(res.readEntity(String.class));
+                case 403: throw new ServiceException(res.readEntity(String.class));
+                case 404: throw new ServiceException(res.readEntity(String.class));
+            }
+            res.close();
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
+    /**
+     * Logs the current user out. The service revokes the authorization token, so any further authenticated request
+     * fails until the user authenticates again.
+     */
+    public void logout() {
+        try {
+            Response res = _client
+                    .target(Config.LOCAL_SERVER_ADDRESS + "/users/logout")
+                    .request()
+                    .header("Authorization", _authorizationToken) // Insert authorisation token
+                    .post(null);
+
+            switch (res.getStatus()) {
+                case 401: throw new ServiceException(res.readEntity(String.class));
+                case 403: throw new ServiceException(res.readEntity(String.class));
+            }
+            res.close();
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
 
     public void subscribeToNewPerformers(Subscription subscription) {
         WebTarget target = _client.target(Config.LOCAL_SERVER_ADDRESS + "/performers/getNotifications");
@@ -208,4 +427,25 @@ public class ExtendedService extends DefaultService {
         });
     }
 
+
+    // Private methods
+
+
+    private SeatMapDTO fetchSeatMap(WebTarget target) {
+        try {
+            Response res = target
+                    .request()
+                    .accept(MediaType.APPLICATION_XML)
+                    .get();
+
+            switch (res.getStatus()) {
+                case 400: throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+                case 404: throw new ServiceException(res.readEntity(String.class));
+            }
+
+            return res.readEntity(SeatMapDTO.class);
+        } catch (ServiceUnavailableException | ProcessingException e) {
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package nz.ac.auckland.concert.client.service;
+
+import nz.ac.auckland.concert.common.message.Messages;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Least-recently-used cache of performer images, bounded by the number of bytes it holds. Each entry keeps the
+ * encoded image as downloaded together with its ETag, and optionally the decoded Image so it is decoded only once.
+ *
+ * Concurrent requests for the same image name share a single in-flight fetch. Entries older than the revalidation
+ * interval are revalidated with a conditional fetch, which only downloads the image again if its ETag has changed.
+ */
+public class ImageCache {
+
+    /**
+     * Retrieves an image from the service. Given the ETag of the copy already held (or null when there is none), it
+     * returns a new Entry, or null when the service reports the held copy is still current.
+     */
+    public interface Fetcher {
+        Entry fetch(String imageName, String etag) throws ServiceException;
+    }
+
+    /**
+     * A cached image: its encoded bytes, the ETag they were served with and, once decoded, the Image itself.
+     */
+    public static class Entry {
+        private final byte[] _bytes;
+        private final String _etag;
+        private long _validatedAtMillis; // Guarded by the cache's _entries
+        private volatile Image _decoded;
+
+        public Entry(byte[] bytes, String etag) {
+            _bytes = bytes;
+            _etag = etag;
+            _validatedAtMillis = System.currentTimeMillis();
+        }
+
+        public byte[] getBytes() {
+            return _bytes;
+        }
+
+        public String getEtag() {
+            return _etag;
+        }
+    }
+
+    private final long _maxBytes;
+    private final long _revalidateAfterMillis;
+    private final boolean _retainDecoded;
+
+    private final Map<String, Entry> _entries = new LinkedHashMap<>(16, 0.75f, true); // Access order, eldest first
+    private final Map<String, Long> _weights = new ConcurrentHashMap<>(); // Bytes charged to each entry
+    private long _totalBytes; // Guarded by _entries
+
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> _inFlight = new ConcurrentHashMap<>();
+
+    public ImageCache(long maxBytes, long revalidateAfterMillis, boolean retainDecoded) {
+        _maxBytes = maxBytes;
+        _revalidateAfterMillis = revalidateAfterMillis;
+        _retainDecoded = retainDecoded;
+    }
+
+    /**
+     * Returns the decoded image for imageName, fetching it through fetcher only if it isn't cached or its cached
+     * copy is due for revalidation.
+     */
+    public Image getImage(String imageName, Fetcher fetcher) throws ServiceException {
+        Entry entry = getEntry(imageName, fetcher);
+
+        Image image = entry._decoded;
+        if (image != null) {
+            return image;
+        }
+
+        synchronized (entry) { // Decode each entry at most once, however many callers are waiting on it
+            if (entry._decoded == null) {
+                image = decode(entry._bytes);
+                if (!_retainDecoded) {
+                    return image;
+                }
+                entry._decoded = image;
+                charge(imageName, entry, decodedSize(image));
+            }
+            return entry._decoded;
+        }
+    }
+
+    /**
+     * Returns the cached entry for imageName, fetching or revalidating it first if needed. Callers arriving while a
+     * fetch for the same name is under way wait for that fetch instead of starting their own.
+     */
+    public Entry getEntry(String imageName, Fetcher fetcher) throws ServiceException {
+        Entry cached;
+        synchronized (_entries) {
+            cached = _entries.get(imageName);
+            if (cached != null && System.currentTimeMillis() - cached._validatedAtMillis < _revalidateAfterMillis) {
+                return cached;
+            }
+        }
+
+        CompletableFuture<Entry> fetch = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = _inFlight.putIfAbsent(imageName, fetch);
+        if (existing != null) { // Someone else is already fetching this image
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        try {
+            Entry fetched = fetcher.fetch(imageName, cached == null ? null : cached._etag);
+            if (fetched == null) { // Not modified, the held copy is still current
+                if (cached == null) { // Nothing was held, so there was nothing to be current
+                    throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+                }
+                synchronized (_entries) {
+                    cached._validatedAtMillis = System.currentTimeMillis();
+                }
+                fetched = cached;
+            } else {
+                put(imageName, fetched);
+            }
+            fetch.complete(fetched);
+            return fetched;
+        } catch (Throwable e) { // Waiting callers must be released however the fetch fails
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            _inFlight.remove(imageName, fetch);
+        }
+    }
+
+    public long getTotalBytes() {
+        synchronized (_entries) {
+            return _totalBytes;
+        }
+    }
+
+
+    // Private methods
+
+
+    private void put(String imageName, Entry entry) {
+        synchronized (_entries) {
+            Entry previous = _entries.put(imageName, entry);
+            if (previous != null) {
+                _totalBytes -= _weights.remove(imageName);
+            }
+            _weights.put(imageName, 0L);
+        }
+        charge(imageName, entry, entry._bytes.length);
+    }
+
+    // Adds bytes to the size charged for an entry, then evicts least recently used entries until within budget
+    private void charge(String imageName, Entry entry, long bytes) {
+        synchronized (_entries) {
+            if (_entries.get(imageName) != entry) { // Entry was evicted or replaced meanwhile
+                return;
+            }
+            _weights.merge(imageName, bytes, Long::sum);
+            _totalBytes += bytes;
+
+            Iterator<Map.Entry<String, Entry>> eldest = _entries.entrySet().iterator();
+            while (_totalBytes > _maxBytes && eldest.hasNext()) {
+                String name = eldest.next().getKey();
+                if (name.equals(imageName) && _entries.size() == 1) { // Never evict the entry being returned
+                    break;
+                }
+                eldest.remove();
+                _totalBytes -= _weights.remove(name);
+            }
+        }
+    }
+
+    // Rethrows the failure of a fetch shared with another caller
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+    }
+
+    private static Image decode(byte[] bytes) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) { // Couldn't read file
+            throw new ServiceException(Messages.SERVICE_COMMUNICATION_ERROR);
+        }
+    }
+
+    private static long decodedSize(Image image) {
+        if (image instanceof BufferedImage) {
+            BufferedImage buffered = (BufferedImage) image;
+            return (long) buffered.getWidth() * buffered.getHeight() * 4; // Assume 4 bytes per pixel
+        }
+        return 0;
+    }
+}
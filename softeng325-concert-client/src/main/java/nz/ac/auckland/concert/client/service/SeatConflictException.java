@@ -0,0 +1,27 @@
+package nz.ac.auckland.concert.client.service;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+
+import java.util.Set;
+
+/**
+ * ServiceException thrown when a reservation for particular seats is refused
+ * because some of them are already taken.
+ *
+ * A SeatConflictException lists the requested seats that are taken, so that
+ * a client can offer other seats instead of retrying blindly.
+ *
+ */
+public class SeatConflictException extends ServiceException {
+
+	private final Set<SeatDTO> _conflictingSeats;
+
+	public SeatConflictException(String message, Set<SeatDTO> conflictingSeats) {
+		super(message);
+		_conflictingSeats = conflictingSeats;
+	}
+
+	public Set<SeatDTO> getConflictingSeats() {
+		return _conflictingSeats;
+	}
+}
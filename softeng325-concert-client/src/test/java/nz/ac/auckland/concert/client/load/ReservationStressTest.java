@@ -0,0 +1,314 @@
+package nz.ac.auckland.concert.client.load;
+
+import nz.ac.auckland.concert.client.service.ExtendedService;
+import nz.ac.auckland.concert.client.service.ServiceException;
+import nz.ac.auckland.concert.common.dto.AvailabilityDTO;
+import nz.ac.auckland.concert.common.dto.BookingDTO;
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.CreditCardDTO;
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.dto.UserDTO;
+import nz.ac.auckland.concert.common.message.Messages;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.services.ConcertApplication;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
+import org.junit.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stress test of reserving and booking seats: many users at once reserve seats at a few shows, and then confirm,
+ * release or let their reservations expire, now and then cancelling one of their bookings. Some users ask for
+ * particular seats, so requests for the same seats collide as well as those for the same price band. Once every user
+ * is done, the test checks that:
+ *  - no seat of a show is in two bookings,
+ *  - for each show and price band, the seats still available plus those booked add up to the seats in the band,
+ *  - every reservation the service made was stored, and each user's bookings are exactly those they confirmed and
+ *    didn't cancel.
+ *
+ * Throughput, latency percentiles and errors of each operation are printed at the end (see LoadStatistics), so
+ * that runs can be compared after changes to the reservation path. Reservation requests are let through the
+ * service's waiting room at its admission rate per show, which bounds the throughput reached.
+ */
+public class ReservationStressTest {
+
+    private static final int SERVER_PORT = 10000;
+    private static final String WEB_SERVICE_CLASS_NAME = ConcertApplication.class.getName();
+
+    private static final int USERS = 24;
+    private static final int ROUNDS_PER_USER = 50; // Reservations each user makes
+    private static final int SHOWS = 3;
+    private static final int MAX_SEATS_PER_RESERVATION = 4;
+    private static final long EXPIRY_WAIT_MILLIS = 1500; // Longer than the service's reservation timeout of 1 second
+
+    // Ways a request may legitimately fail when others are after the same seats
+    private static final Set<String> EXPECTED_FAILURES = new HashSet<>(Arrays.asList(
+            Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION,
+            Messages.REQUESTED_SEATS_UNAVAILABLE_FOR_RESERVATION,
+            Messages.EXPIRED_RESERVATION,
+            Messages.NO_RESERVATION_TO_RELEASE));
+
+    private static Server _server;
+
+    @BeforeClass
+    public static void createServer() throws Exception {
+        // Start the embedded servlet container and host the Web service.
+        ServletHolder servletHolder = new ServletHolder(new HttpServletDispatcher());
+        servletHolder.setInitParameter("javax.ws.rs.Application", WEB_SERVICE_CLASS_NAME);
+        ServletContextHandler servletCtxHandler = new ServletContextHandler();
+        servletCtxHandler.setContextPath("/services");
+        servletCtxHandler.addServlet(servletHolder, "/");
+        _server = new Server(SERVER_PORT);
+        _server.setHandler(servletCtxHandler);
+    }
+
+    @Before
+    public void startServer() throws Exception {
+        _server.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        _server.stop();
+    }
+
+    @Test
+    public void testNoDoubleBookingUnderConcurrentReservations() throws Exception {
+        List<ReservationRequestDTO> shows = pickShows();
+        LoadStatistics statistics = new LoadStatistics();
+        Set<Long> reservationIds = ConcurrentHashMap.newKeySet();
+        Queue<String> failures = new ConcurrentLinkedQueue<>(); // No user should see these, whatever the others do
+
+        List<Buyer> buyers = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            buyers.add(new Buyer("Stress" + i, shows, statistics, reservationIds, failures));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (Buyer buyer : buyers) {
+                runs.add(executor.submit(buyer::run));
+            }
+            for (Future<?> run : runs) {
+                run.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("%d users made %d reservations in %.1f s (%.1f reservations/s)",
+                USERS, reservationIds.size(), elapsedSeconds, reservationIds.size() / elapsedSeconds));
+        statistics.report(System.out, elapsedSeconds);
+
+        assertTrue("Unexpected failures: " + failures, failures.isEmpty());
+
+        Thread.sleep(EXPIRY_WAIT_MILLIS); // Unconfirmed reservations lapse, so only booked seats are unavailable
+
+        ExtendedService service = new ExtendedService();
+        Map<String, Set<SeatDTO>> bookedSeats = new HashMap<>(); // Show -> seats booked by anyone
+        Map<String, Integer> bookedInBand = new HashMap<>(); // Show and price band -> seats booked
+        for (Buyer buyer : buyers) {
+            Set<String> bookings = new HashSet<>();
+            for (BookingDTO booking : buyer._service.getBookings()) {
+                String show = show(booking.getConcertId(), booking.getDateTime());
+                for (SeatDTO seat : booking.getSeats()) {
+                    assertTrue("Seat " + seat + " of " + show + " is booked twice",
+                            bookedSeats.computeIfAbsent(show, key -> new HashSet<>()).add(seat));
+                    assertTrue(TheatreLayout.getRowsForPriceBand(booking.getPriceBand()).contains(seat.getRow()));
+                }
+                bookedInBand.merge(show + " " + booking.getPriceBand(), booking.getSeats().size(), Integer::sum);
+                bookings.add(booking(booking.getConcertId(), booking.getDateTime(), booking.getSeats()));
+            }
+            assertEquals("Bookings of " + buyer._username, buyer._bookings, bookings);
+        }
+
+        for (ReservationRequestDTO show : shows) {
+            AvailabilityDTO availability = service.getAvailability(show.getConcertId(), show.getDate());
+            for (PriceBand band : PriceBand.values()) {
+                int booked = bookedInBand.getOrDefault(show(show.getConcertId(), show.getDate()) + " " + band, 0);
+                assertEquals("Seats of " + band + " at " + show(show.getConcertId(), show.getDate()),
+                        seatsIn(band).size(), availability.getRemainingSeats(band) + booked);
+            }
+        }
+    }
+
+
+    // Private methods
+
+
+    /**
+     * Returns a request, without seats, for the first date of each of the first SHOWS concerts.
+     */
+    private static List<ReservationRequestDTO> pickShows() {
+        List<ConcertDTO> concerts = new ArrayList<>(new ExtendedService().getConcerts());
+        concerts.sort((first, second) -> Long.compare(first.getId(), second.getId()));
+
+        List<ReservationRequestDTO> shows = new ArrayList<>();
+        for (ConcertDTO concert : concerts.subList(0, SHOWS)) {
+            shows.add(new ReservationRequestDTO(0, null, concert.getId(), Collections.min(concert.getDates())));
+        }
+        return shows;
+    }
+
+    private static List<SeatDTO> seatsIn(PriceBand band) {
+        List<SeatDTO> seats = new ArrayList<>();
+        for (SeatRow row : TheatreLayout.getRowsForPriceBand(band)) {
+            for (int number = 1; number <= TheatreLayout.getNumberOfSeatsForRow(row); number++) {
+                seats.add(new SeatDTO(row, new SeatNumber(number)));
+            }
+        }
+        return seats;
+    }
+
+    private static String show(long concertId, LocalDateTime date) {
+        return "concert " + concertId + " on " + date;
+    }
+
+    private static String booking(long concertId, LocalDateTime date, Set<SeatDTO> seats) {
+        Set<String> sortedSeats = new TreeSet<>();
+        for (SeatDTO seat : seats) {
+            sortedSeats.add(seat.toString());
+        }
+        return show(concertId, date) + " " + sortedSeats;
+    }
+
+    /**
+     * One user, reserving ROUNDS_PER_USER times and keeping track of the bookings they should have.
+     */
+    private static class Buyer {
+
+        private final String _username;
+        private final ExtendedService _service = new ExtendedService();
+        private final List<ReservationRequestDTO> _shows;
+        private final LoadStatistics _statistics;
+        private final Set<Long> _reservationIds;
+        private final Queue<String> _failures;
+
+        private final Set<String> _bookings = new HashSet<>(); // Confirmed and not cancelled
+
+        Buyer(String username, List<ReservationRequestDTO> shows, LoadStatistics statistics, Set<Long> reservationIds, Queue<String> failures) {
+            _username = username;
+            _shows = shows;
+            _statistics = statistics;
+            _reservationIds = reservationIds;
+            _failures = failures;
+
+            _service.createUser(new UserDTO(username, "123", "Stress", "Tester"));
+            _service.registerCreditCard(new CreditCardDTO(CreditCardDTO.Type.Visa, username, "4929-1500-0055-9544", LocalDate.of(2030, 7, 31)));
+        }
+
+        void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int round = 0; round < ROUNDS_PER_USER; round++) {
+                try {
+                    ReservationRequestDTO show = _shows.get(random.nextInt(_shows.size()));
+                    PriceBand band = PriceBand.values()[random.nextInt(PriceBand.values().length)];
+                    int numberOfSeats = 1 + random.nextInt(MAX_SEATS_PER_RESERVATION);
+
+                    ReservationRequestDTO request;
+                    if (random.nextInt(4) == 0) { // Particular seats, which others may be after too
+                        List<SeatDTO> seats = seatsIn(band);
+                        Collections.shuffle(seats, random);
+                        request = new ReservationRequestDTO(new HashSet<>(seats.subList(0, numberOfSeats)), band, show.getConcertId(), show.getDate());
+                    } else {
+                        request = new ReservationRequestDTO(numberOfSeats, band, show.getConcertId(), show.getDate());
+                    }
+
+                    ReservationDTO reservation = _statistics.time("reserve", () -> _service.reserveSeats(request));
+                    check(reservation, request);
+
+                    int outcome = random.nextInt(20);
+                    if (outcome < 14) {
+                        confirm(reservation);
+                    } else if (outcome < 17) {
+                        _statistics.time("release", _service::releaseReservation);
+                    } else {
+                        Thread.sleep(EXPIRY_WAIT_MILLIS);
+                        try {
+                            confirm(reservation);
+                            _failures.add(_username + " confirmed reservation " + reservation.getId() + " after it expired");
+                        } catch (ServiceException e) {
+                            if (!e.getMessage().equals(Messages.EXPIRED_RESERVATION)) {
+                                throw e;
+                            }
+                        }
+                    }
+
+                    if (!_bookings.isEmpty() && random.nextInt(10) == 0) {
+                        cancelBooking();
+                    }
+                } catch (ServiceException e) {
+                    if (!EXPECTED_FAILURES.contains(e.getMessage())) {
+                        _failures.add(_username + ": " + e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    _failures.add(_username + ": " + e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void check(ReservationDTO reservation, ReservationRequestDTO request) {
+            if (reservation.getId() == null || !_reservationIds.add(reservation.getId())) {
+                _failures.add(_username + " was given reservation id " + reservation.getId() + " more than once");
+            }
+            if (reservation.getSeats().size() != request.getNumberOfSeats()) {
+                _failures.add(_username + " asked for " + request.getNumberOfSeats() + " seats but reserved " + reservation.getSeats());
+            }
+            if (request.getSeats() != null && !request.getSeats().equals(reservation.getSeats())) {
+                _failures.add(_username + " asked for seats " + request.getSeats() + " but reserved " + reservation.getSeats());
+            }
+            for (SeatDTO seat : reservation.getSeats()) {
+                if (!TheatreLayout.getRowsForPriceBand(request.getSeatType()).contains(seat.getRow())) {
+                    _failures.add(_username + " reserved seat " + seat + " outside " + request.getSeatType());
+                }
+            }
+        }
+
+        private void confirm(ReservationDTO reservation) {
+            _statistics.time("confirm", () -> _service.confirmReservation(reservation));
+            ReservationRequestDTO request = reservation.getReservationRequest();
+            _bookings.add(booking(request.getConcertId(), request.getDate(), reservation.getSeats()));
+        }
+
+        private void cancelBooking() {
+            List<BookingDTO> bookings = new ArrayList<>(_statistics.time("bookings", _service::getBookings));
+            BookingDTO booking = bookings.get(ThreadLocalRandom.current().nextInt(bookings.size()));
+            _statistics.time("cancel", () -> _service.cancelBooking(booking));
+            _bookings.remove(booking(booking.getConcertId(), booking.getDateTime(), booking.getSeats()));
+        }
+    }
+}
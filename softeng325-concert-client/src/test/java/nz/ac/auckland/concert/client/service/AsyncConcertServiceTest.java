@@ -0,0 +1,123 @@
+package nz.ac.auckland.concert.client.service;
+
+import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.PerformerDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.UserDTO;
+import nz.ac.auckland.concert.common.message.Messages;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.services.ConcertApplication;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
+import org.junit.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the AsyncConcertService implementation, DefaultAsyncService.
+ *
+ * The embedded servlet container is started and stopped around each test in the same way as for
+ * ConcertServiceTest, so that each test runs against a freshly initialised database.
+ */
+public class AsyncConcertServiceTest {
+
+    private static final int SERVER_PORT = 10000;
+    private static final String WEB_SERVICE_CLASS_NAME = ConcertApplication.class.getName();
+
+    private static Server _server;
+
+    private AsyncConcertService _service;
+
+    @BeforeClass
+    public static void createServer() throws Exception {
+        // Start the embedded servlet container and host the Web service.
+        ServletHolder servletHolder = new ServletHolder(new HttpServletDispatcher());
+        servletHolder.setInitParameter("javax.ws.rs.Application", WEB_SERVICE_CLASS_NAME);
+        ServletContextHandler servletCtxHandler = new ServletContextHandler();
+        servletCtxHandler.setContextPath("/services");
+        servletCtxHandler.addServlet(servletHolder, "/");
+        _server = new Server(SERVER_PORT);
+        _server.setHandler(servletCtxHandler);
+    }
+
+    @Before
+    public void startServer() throws Exception {
+        _server.start();
+        _service = new DefaultAsyncService();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        _server.stop();
+    }
+
+    @Test
+    public void testRetrieveConcerts() {
+        Set<ConcertDTO> concerts = _service.getConcerts().join();
+        assertEquals(25, concerts.size());
+    }
+
+    @Test
+    public void testRetrievePerformers() {
+        Set<PerformerDTO> performers = _service.getPerformers().join();
+        assertEquals(20, performers.size());
+    }
+
+    @Test
+    public void testCreateUserWithDuplicateUsername() {
+        UserDTO userDTO = new UserDTO("Bulldog", "123", "Churchill", "Winston");
+        _service.createUser(userDTO).join();
+
+        try {
+            _service.createUser(new UserDTO("Bulldog", "123", "Thatcher", "Margaret")).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof ServiceException);
+            assertEquals(Messages.CREATE_USER_WITH_NON_UNIQUE_NAME, e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testMakeReservationWithUnauthenticatedUser() {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        ReservationRequestDTO request = new ReservationRequestDTO(2, PriceBand.PriceBandA, 1L, dateTime);
+
+        try {
+            _service.reserveSeats(request).join();
+            fail();
+        } catch (CompletionException e) {
+            assertEquals(Messages.UNAUTHENTICATED_REQUEST, e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testConcurrentJourneysByManyUsers() {
+        final int numberOfUsers = 50;
+
+        // Every user's create -> authenticate journey is in flight at the same time
+        List<CompletableFuture<UserDTO>> journeys = new ArrayList<>();
+        for (int i = 0; i < numberOfUsers; i++) {
+            AsyncConcertService service = new DefaultAsyncService();
+            UserDTO userDTO = new UserDTO("User" + i, "123", "Churchill", "Winston");
+            journeys.add(service.createUser(userDTO)
+                    .thenCompose(user -> service.authenticateUser(new UserDTO(user.getUsername(), "123"))));
+        }
+        CompletableFuture.allOf(journeys.toArray(new CompletableFuture[0])).join();
+
+        Set<String> usernames = new HashSet<>();
+        for (CompletableFuture<UserDTO> journey : journeys) {
+            usernames.add(journey.join().getUsername());
+        }
+        assertEquals(numberOfUsers, usernames.size());
+    }
+}
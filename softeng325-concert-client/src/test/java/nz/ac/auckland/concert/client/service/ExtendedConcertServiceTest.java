@@ -1,10 +1,23 @@
 package nz.ac.auckland.concert.client.service;
 
 import nz.ac.auckland.concert.client.clientApp.Subscription;
+import nz.ac.auckland.concert.common.dto.AdmissionDTO;
+import nz.ac.auckland.concert.common.dto.AvailabilityDTO;
+import nz.ac.auckland.concert.common.dto.BookingDTO;
 import nz.ac.auckland.concert.common.dto.ConcertDTO;
+import nz.ac.auckland.concert.common.dto.CreditCardDTO;
 import nz.ac.auckland.concert.common.dto.PerformerDTO;
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.dto.SeatMapDTO;
 import nz.ac.auckland.concert.common.dto.UserDTO;
+import nz.ac.auckland.concert.common.message.Messages;
 import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import nz.ac.auckland.concert.utility.TheatreLayout;
 import nz.ac.auckland.concert.service.services.ConcertApplication;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
@@ -13,15 +26,34 @@ import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
 import org.junit.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.fail;
 
@@ -258,4 +290,341 @@ public class ExtendedConcertServiceTest {
             fail();
         }
     }
+
+    @Test
+    public void testCatalogueCacheAppliesNewPerformer() throws InterruptedException {
+        try {
+            UserDTO userDTO = new UserDTO("Bulldog", "123", "Churchill", "Winston");
+            _service.createUser(userDTO);
+
+            _service.enableCatalogueCache(60 * 1000);
+            int numberOfPerformers = _service.getPerformers().size(); // First read fills the catalogue
+
+            ExtendedService service = new ExtendedService();
+            UserDTO userDTO2 = new UserDTO("Bulldog1", "123", "Churchill", "Winston");
+            service.createUser(userDTO2);
+
+            PerformerDTO newPerformer = new PerformerDTO(null, "Lorde", null, null, new HashSet<>());
+            PerformerDTO createdPerformer = service.createPerformer(newPerformer);
+
+            Thread.sleep(500); // Ensure notification is applied to the catalogue
+
+            Set<PerformerDTO> performerDTOS = _service.getPerformers();
+            Assert.assertEquals(numberOfPerformers + 1, performerDTOS.size());
+            Assert.assertTrue(performerDTOS.contains(createdPerformer));
+        } catch(ServiceException e) {
+            fail();
+        }
+    }
+
+    @Test
+    public void testLogoutRevokesToken() {
+        UserDTO userDTO = new UserDTO("Bulldog", "123", "Churchill", "Winston");
+        _service.createUser(userDTO);
+        _service.getBookings(); // Token is accepted while logged in
+
+        _service.logout();
+
+        try {
+            _service.getBookings();
+            fail();
+        } catch (ServiceException e) {
+            Assert.assertEquals(Messages.BAD_AUTHENTICATON_TOKEN, e.getMessage());
+        }
+
+        // Logging in again issues a fresh token
+        _service.authenticateUser(new UserDTO("Bulldog", "123"));
+        Assert.assertTrue(_service.getBookings().isEmpty());
+    }
+
+    @Test
+    public void testAvailabilityCountsReservedSeats() {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        int bandSize = TheatreLayout.getRowsForPriceBand(PriceBand.PriceBandC).stream()
+                .mapToInt(TheatreLayout::getNumberOfSeatsForRow).sum();
+
+        AvailabilityDTO before = _service.getAvailability(1L, dateTime);
+        Assert.assertEquals(bandSize, before.getRemainingSeats(PriceBand.PriceBandC));
+
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        _service.reserveSeats(new ReservationRequestDTO(3, PriceBand.PriceBandC, 1L, dateTime));
+
+        AvailabilityDTO after = _service.getAvailability(1L, dateTime);
+        Assert.assertEquals(bandSize - 3, after.getRemainingSeats(PriceBand.PriceBandC));
+        Assert.assertEquals(before.getRemainingSeats(PriceBand.PriceBandA), after.getRemainingSeats(PriceBand.PriceBandA));
+    }
+
+    @Test
+    public void testSeatMapChangesIncludeReservedSeats() {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+
+        SeatMapDTO seatMap = _service.getSeatMap(1L, dateTime);
+        Assert.assertTrue(seatMap.isComplete());
+        Assert.assertEquals(SeatBitmap.SEATS, seatMap.getAvailableSeats().size());
+
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        ReservationDTO reservation = _service.reserveSeats(new ReservationRequestDTO(2, PriceBand.PriceBandA, 1L, dateTime));
+
+        SeatMapDTO changes = _service.getSeatMapChanges(1L, dateTime, seatMap.getVersion());
+        Assert.assertFalse(changes.isComplete());
+        Assert.assertTrue(changes.getVersion() > seatMap.getVersion());
+        Assert.assertEquals(reservation.getSeats(), changes.getChangedSeats());
+        Assert.assertTrue(changes.getAvailableSeats().isEmpty());
+    }
+
+    @Test
+    public void testReserveRequestedSeatsReportsTakenSeats() {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        SeatRow row = TheatreLayout.getRowsForPriceBand(PriceBand.PriceBandA).iterator().next();
+        SeatDTO first = new SeatDTO(row, new SeatNumber(1));
+        SeatDTO second = new SeatDTO(row, new SeatNumber(2));
+        SeatDTO third = new SeatDTO(row, new SeatNumber(3));
+
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        Set<SeatDTO> requestedSeats = new HashSet<>(Arrays.asList(first, second));
+        ReservationDTO reservation = _service.reserveSeats(new ReservationRequestDTO(requestedSeats, PriceBand.PriceBandA, 1L, dateTime));
+        Assert.assertEquals(requestedSeats, reservation.getSeats());
+
+        ExtendedService service = new ExtendedService();
+        service.createUser(new UserDTO("Iron", "123", "Thatcher", "Margaret"));
+        try {
+            service.reserveSeats(new ReservationRequestDTO(new HashSet<>(Arrays.asList(second, third)), PriceBand.PriceBandA, 1L, dateTime));
+            fail();
+        } catch (SeatConflictException e) {
+            Assert.assertEquals(Messages.REQUESTED_SEATS_UNAVAILABLE_FOR_RESERVATION, e.getMessage());
+            Assert.assertEquals(Collections.singleton(second), e.getConflictingSeats());
+        }
+    }
+
+    @Test
+    public void testCancelledBookingReturnsSeats() {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        int bandSize = TheatreLayout.getRowsForPriceBand(PriceBand.PriceBandB).stream()
+                .mapToInt(TheatreLayout::getNumberOfSeatsForRow).sum();
+
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        _service.registerCreditCard(new CreditCardDTO(CreditCardDTO.Type.Visa, "Winston Churchill", "4929-1500-0055-9544", LocalDate.of(2019, 7, 31)));
+        ReservationDTO reservation = _service.reserveSeats(new ReservationRequestDTO(4, PriceBand.PriceBandB, 1L, dateTime));
+        _service.confirmReservation(reservation);
+        Assert.assertEquals(bandSize - 4, _service.getAvailability(1L, dateTime).getRemainingSeats(PriceBand.PriceBandB));
+
+        BookingDTO booking = _service.getBookings().iterator().next();
+        _service.cancelBooking(booking);
+
+        Assert.assertTrue(_service.getBookings().isEmpty());
+        Assert.assertEquals(bandSize, _service.getAvailability(1L, dateTime).getRemainingSeats(PriceBand.PriceBandB));
+    }
+
+    @Test
+    public void testWaitlistedRequestGetsReleasedSeats() throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        int bandSize = TheatreLayout.getRowsForPriceBand(PriceBand.PriceBandB).stream()
+                .mapToInt(TheatreLayout::getNumberOfSeatsForRow).sum();
+
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        _service.reserveSeats(new ReservationRequestDTO(bandSize, PriceBand.PriceBandB, 1L, dateTime)); // Sells out the band
+
+        ExtendedService service = new ExtendedService();
+        service.createUser(new UserDTO("Iron", "123", "Thatcher", "Margaret"));
+        Future<ReservationDTO> waiting = service.joinWaitlist(new ReservationRequestDTO(2, PriceBand.PriceBandB, 1L, dateTime));
+        Assert.assertFalse(waiting.isDone());
+
+        _service.releaseReservation();
+
+        ReservationDTO reservation = waiting.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, reservation.getSeats().size());
+    }
+
+    @Test
+    public void testWaitlistTurnsAwayRequestsThatWouldHoldItUp() throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        int bandSize = TheatreLayout.getRowsForPriceBand(PriceBand.PriceBandB).stream()
+                .mapToInt(TheatreLayout::getNumberOfSeatsForRow).sum();
+
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        _service.registerCreditCard(new CreditCardDTO(CreditCardDTO.Type.Visa, "Winston Churchill", "4929-1500-0055-9544", LocalDate.of(2019, 7, 31)));
+        _service.confirmReservation(_service.reserveSeats(new ReservationRequestDTO(bandSize, PriceBand.PriceBandB, 1L, dateTime))); // Sells out the band for good
+
+        // More seats than the band has could never be met
+        ExtendedService service = new ExtendedService();
+        service.createUser(new UserDTO("Iron", "123", "Thatcher", "Margaret"));
+        try {
+            service.joinWaitlist(new ReservationRequestDTO(bandSize + 1, PriceBand.PriceBandB, 1L, dateTime)).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals(400, ((WebApplicationException) e.getCause()).getResponse().getStatus());
+        }
+
+        // A user may only have so many requests waiting. The requests are sent at once, so any one may be turned away.
+        List<Future<ReservationDTO>> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(service.joinWaitlist(new ReservationRequestDTO(1, PriceBand.PriceBandB, 1L, dateTime)));
+        }
+        List<Future<ReservationDTO>> waiting = new ArrayList<>();
+        for (Future<ReservationDTO> request : requests) {
+            try {
+                request.get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                Assert.assertEquals(409, ((WebApplicationException) e.getCause()).getResponse().getStatus());
+            } catch (TimeoutException e) { // Still waiting
+                waiting.add(request);
+            }
+        }
+        Assert.assertEquals(3, waiting.size());
+
+        // Requests that joined are still met
+        _service.cancelBooking(_service.getBookings().iterator().next());
+        for (Future<ReservationDTO> request : waiting) {
+            Assert.assertEquals(1, request.get(5, TimeUnit.SECONDS).getSeats().size());
+        }
+    }
+
+    @Test
+    public void testBurstBeyondAdmitRateIsQueuedNotRefused() throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        int requests = 60; // More than the waiting room lets through at once
+
+        List<ExtendedService> services = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            ExtendedService service = new ExtendedService();
+            service.createUser(new UserDTO("Fan" + i, "123", "Fan", "Number" + i));
+            services.add(service);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<ReservationDTO>> reservations = new ArrayList<>();
+            for (ExtendedService service : services) {
+                reservations.add(executor.submit(() ->
+                        service.reserveSeats(new ReservationRequestDTO(1, PriceBand.PriceBandA, 1L, dateTime))));
+            }
+            for (Future<ReservationDTO> reservation : reservations) {
+                Assert.assertEquals(1, reservation.get(30, TimeUnit.SECONDS).getSeats().size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        AdmissionDTO admission = _service.getAdmission(1L, dateTime);
+        Assert.assertEquals(requests, admission.getAdmitted());
+        Assert.assertEquals(0, admission.getRefused());
+        Assert.assertEquals(0, admission.getQueueDepth());
+    }
+
+    @Test
+    public void testUnauthenticatedRequestIsNotAdmitted() {
+        LocalDateTime dateTime = LocalDateTime.of(2017, 2, 24, 17, 00);
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+        _service.logout();
+
+        try {
+            _service.reserveSeats(new ReservationRequestDTO(1, PriceBand.PriceBandA, 1L, dateTime));
+            fail();
+        } catch (ServiceException e) {
+            Assert.assertEquals(Messages.BAD_AUTHENTICATON_TOKEN, e.getMessage());
+        }
+
+        // The request was turned away before taking a turn in the waiting room
+        AdmissionDTO admission = _service.getAdmission(1L, dateTime);
+        Assert.assertEquals(0, admission.getAdmitted());
+        Assert.assertEquals(0, admission.getRefused());
+    }
+
+    @Test
+    public void testRequestForUnscheduledDateIsNotAdmitted() {
+        LocalDateTime dateTime = LocalDateTime.of(2099, 1, 1, 20, 00); // No concert on this date
+        _service.createUser(new UserDTO("Bulldog", "123", "Churchill", "Winston"));
+
+        try {
+            _service.reserveSeats(new ReservationRequestDTO(1, PriceBand.PriceBandA, 1L, dateTime));
+            fail();
+        } catch (ServiceException e) {
+            Assert.assertEquals(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE, e.getMessage());
+        }
+
+        // No waiting room, and so no metrics, were made for the made-up show
+        String metrics = _client.target("http://localhost:" + SERVER_PORT + "/services/metrics").request().get(String.class);
+        Assert.assertFalse(metrics.contains("date=\"2099-01-01T20:00\""));
+        try {
+            _service.getAdmission(1L, dateTime);
+            fail();
+        } catch (ServiceException e) {
+            Assert.assertEquals(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMetricsRecordReservations() {
+        UserDTO userDTO = new UserDTO("Bulldog", "123", "Churchill", "Winston");
+        _service.createUser(userDTO);
+        _service.reserveSeats(new ReservationRequestDTO(2, PriceBand.PriceBandB, 1L, LocalDateTime.of(2017, 2, 24, 17, 00)));
+
+        String metrics = _client.target("http://localhost:" + SERVER_PORT + "/services/metrics").request().get(String.class);
+        Assert.assertTrue(metrics.contains("# TYPE concert_http_request_duration_seconds summary"));
+        Assert.assertTrue(metrics.contains("concert_http_responses_total{method=\"ReserveResource.reserveSeats\",status=\"200\"}"));
+        Assert.assertTrue(metrics.contains("concert_reserve_persistence_seconds_count{operation=\"claim_seats\"}"));
+        Assert.assertTrue(metrics.contains("concert_entity_managers_open "));
+        Assert.assertTrue(metrics.contains("concert_subscribers_parked "));
+
+        String show = "{concert=\"1\",date=\"2017-02-24T17:00\"}";
+        Assert.assertTrue(metrics.contains("concert_admission_admitted_total" + show + " "));
+        Assert.assertTrue(metrics.contains("concert_admission_refused_total" + show + " "));
+        Assert.assertTrue(metrics.contains("concert_admission_queue_depth" + show + " 0\n"));
+        Assert.assertTrue(metrics.contains("concert_admission_in_flight" + show + " 0\n"));
+    }
+
+    @Test
+    public void testReservationIsRecordedByFlightRecorder() throws Exception {
+        UserDTO userDTO = new UserDTO("Bulldog", "123", "Churchill", "Winston");
+        _service.createUser(userDTO);
+
+        Path recordingFile = Files.createTempFile("reservation", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("nz.ac.auckland.concert.Reservation");
+                recording.enable("nz.ac.auckland.concert.SeatSearch");
+                recording.start();
+                _service.reserveSeats(new ReservationRequestDTO(3, PriceBand.PriceBandC, 1L, LocalDateTime.of(2017, 2, 24, 17, 00)));
+                recording.stop();
+                recording.dump(recordingFile);
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+            RecordedEvent reservation = events.stream()
+                    .filter(event -> event.getEventType().getName().equals("nz.ac.auckland.concert.Reservation"))
+                    .findFirst().orElseThrow(AssertionError::new);
+            Assert.assertEquals(1L, reservation.getLong("concertId"));
+            Assert.assertEquals("PriceBandC", reservation.getString("priceBand"));
+            Assert.assertEquals(3, reservation.getInt("seatsReserved"));
+            Assert.assertEquals(200, reservation.getInt("status"));
+
+            Assert.assertTrue(events.stream().anyMatch(event ->
+                    event.getEventType().getName().equals("nz.ac.auckland.concert.SeatSearch") && event.getInt("seatsFound") == 3));
+        } finally {
+            Files.delete(recordingFile);
+        }
+    }
+
+    @Test
+    public void testDiagnosticsReportServerTiming() throws Exception {
+        System.setProperty("concert.diagnostics", "true");
+        try {
+            _server.stop();
+            _server.start(); // Diagnostics are switched on when the service starts
+
+            Response response = _client.target("http://localhost:" + SERVER_PORT + "/services/concerts/1")
+                    .request().accept(MediaType.APPLICATION_XML).get();
+            String serverTiming = response.getHeaderString("Server-Timing");
+            response.close();
+            Assert.assertNotNull(serverTiming);
+            Assert.assertTrue(serverTiming.contains("db;dur="));
+            Assert.assertFalse(serverTiming.contains("\"0 statements\""));
+
+            String metrics = _client.target("http://localhost:" + SERVER_PORT + "/services/metrics").request().get(String.class);
+            Assert.assertTrue(metrics.contains("concert_http_request_statements_total{method=\"ConcertResource.getConcert\"}"));
+        } finally {
+            System.clearProperty("concert.diagnostics");
+        }
+    }
 }
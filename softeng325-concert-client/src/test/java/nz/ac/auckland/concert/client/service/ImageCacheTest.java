@@ -0,0 +1,173 @@
+package nz.ac.auckland.concert.client.service;
+
+import nz.ac.auckland.concert.common.message.Messages;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.ws.rs.ProcessingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of ImageCache on its own, with fetchers standing in for the service: concurrent callers sharing one fetch,
+ * the failure of a shared fetch reaching every caller, and revalidation of cached images by ETag.
+ */
+public class ImageCacheTest {
+
+    private static final int CALLERS = 8;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final ExecutorService _executor = Executors.newFixedThreadPool(CALLERS);
+
+    @After
+    public void shutDown() {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneFetch() throws Exception {
+        ImageCache cache = new ImageCache(1024, 60_000, false);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ImageCache.Entry image = new ImageCache.Entry(new byte[]{1, 2, 3}, "v1");
+
+        List<Future<ImageCache.Entry>> callers = callConcurrently(cache, "image.png", (name, etag) -> {
+            fetches.incrementAndGet();
+            await(release);
+            return image;
+        });
+        release.countDown();
+
+        for (Future<ImageCache.Entry> caller : callers) {
+            assertSame(image, caller.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertEquals(1, fetches.get());
+
+        // Once cached, the image is served without fetching
+        assertSame(image, cache.getEntry("image.png", (name, etag) -> { throw new AssertionError("Fetched again"); }));
+        assertEquals(3, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testFailedFetchReachesEveryCaller() throws Exception {
+        ImageCache cache = new ImageCache(1024, 60_000, false);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<ImageCache.Entry>> callers = callConcurrently(cache, "image.png", (name, etag) -> {
+            await(release);
+            throw new ProcessingException("Connection refused");
+        });
+        release.countDown();
+
+        for (Future<ImageCache.Entry> caller : callers) {
+            try {
+                caller.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("Fetch should have failed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ProcessingException);
+            }
+        }
+
+        // Nothing was cached, so the next caller fetches again
+        ImageCache.Entry image = new ImageCache.Entry(new byte[]{1}, "v1");
+        assertSame(image, cache.getEntry("image.png", (name, etag) -> image));
+    }
+
+    @Test
+    public void testServiceExceptionReachesEveryCaller() throws Exception {
+        ImageCache cache = new ImageCache(1024, 60_000, false);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<ImageCache.Entry>> callers = callConcurrently(cache, "missing.png", (name, etag) -> {
+            await(release);
+            throw new ServiceException(Messages.NO_IMAGE_FOR_PERFORMER);
+        });
+        release.countDown();
+
+        for (Future<ImageCache.Entry> caller : callers) {
+            try {
+                caller.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("Fetch should have failed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ServiceException);
+                assertEquals(Messages.NO_IMAGE_FOR_PERFORMER, e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testNotModifiedKeepsCachedImage() {
+        ImageCache cache = new ImageCache(1024, 0, false); // Every request revalidates
+        ImageCache.Entry image = new ImageCache.Entry(new byte[]{1, 2}, "v1");
+        assertSame(image, cache.getEntry("image.png", (name, etag) -> {
+            assertNull(etag);
+            return image;
+        }));
+
+        List<String> sentEtags = new ArrayList<>();
+        assertSame(image, cache.getEntry("image.png", (name, etag) -> {
+            sentEtags.add(etag);
+            return null; // Not modified
+        }));
+        assertEquals(1, sentEtags.size());
+        assertEquals("v1", sentEtags.get(0));
+        assertEquals(2, cache.getTotalBytes());
+
+        // A changed image replaces the cached one
+        ImageCache.Entry changed = new ImageCache.Entry(new byte[]{3, 4, 5}, "v2");
+        assertSame(changed, cache.getEntry("image.png", (name, etag) -> changed));
+        assertEquals(3, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testNotModifiedWithoutCachedImageFails() {
+        ImageCache cache = new ImageCache(1024, 60_000, false);
+        try {
+            cache.getEntry("image.png", (name, etag) -> null);
+            fail("Nothing was cached to be current");
+        } catch (ServiceException e) {
+            assertEquals(Messages.SERVICE_COMMUNICATION_ERROR, e.getMessage());
+        }
+
+        // The failed fetch isn't left in flight
+        ImageCache.Entry image = new ImageCache.Entry(new byte[]{1}, "v1");
+        assertSame(image, cache.getEntry("image.png", (name, etag) -> image));
+    }
+
+
+    // Private methods
+
+
+    // Calls getEntry from CALLERS threads at once, returning once all of them are under way
+    private List<Future<ImageCache.Entry>> callConcurrently(ImageCache cache, String imageName, ImageCache.Fetcher fetcher)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(CALLERS);
+        List<Future<ImageCache.Entry>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            callers.add(_executor.submit(() -> {
+                started.countDown();
+                return cache.getEntry(imageName, fetcher);
+            }));
+        }
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Thread.sleep(100); // Let every caller reach the cache before the fetch completes
+        return callers;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package nz.ac.auckland.concert.service.logging;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of RingBufferAppender on its own, writing to a StringWriter: events logged while the writing thread is idle
+ * are written promptly, and events that don't fit in a full buffer are dropped and reported.
+ */
+public class RingBufferAppenderTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private RingBufferAppender _appender;
+    private Logger _logger;
+
+    @After
+    public void removeAppender() {
+        if (_logger != null) {
+            _logger.removeAppender(_appender);
+        }
+        if (_appender != null) {
+            _appender.close();
+        }
+    }
+
+    @Test
+    public void testEventsAfterIdleAreWritten() throws Exception {
+        StringWriter written = new StringWriter();
+        start(written, 16, "Block");
+
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(100); // Let the writing thread find the buffer empty and park
+            _logger.info("Event " + i);
+            assertTrue(awaitText(written, "Event " + i));
+        }
+    }
+
+    @Test
+    public void testCloseWritesWhatIsBuffered() throws Exception {
+        StringWriter written = new StringWriter();
+        start(written, 16, "Block");
+
+        Thread.sleep(100); // Writing thread parks on the empty buffer
+        _logger.info("Event 0");
+        _appender.close(); // Wakes the writing thread, which empties the buffer before it stops
+
+        assertTrue(written.toString().contains("Event 0"));
+    }
+
+    @Test
+    public void testDiscardsWhenFull() throws Exception {
+        CountDownLatch writable = new CountDownLatch(1);
+        StringWriter written = new StringWriter();
+        start(new FilterWriter(written) {
+            @Override
+            public void write(String text, int offset, int length) throws IOException {
+                try {
+                    writable.await(); // Hold up the writing thread so that the buffer fills
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.write(text, offset, length);
+            }
+        }, 4, "Discard");
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                _logger.info("Event " + i);
+            }
+            assertTrue(_appender.getDiscardedCount() >= 20 - 5); // At most one taken and four buffered
+        } finally {
+            writable.countDown();
+        }
+
+        assertTrue(awaitText(written, "Log buffer of appender Test was full; Discarded ("));
+        assertTrue(written.toString().startsWith("Event 0"));
+    }
+
+
+    // Private methods
+
+
+    private void start(Writer writer, int bufferSize, String overflowPolicy) {
+        _appender = new RingBufferAppender();
+        _appender.setName("Test");
+        _appender.setBufferSize(bufferSize);
+        _appender.setOverflowPolicy(overflowPolicy);
+        _appender.setLayout(new PatternLayout("%m%n"));
+        _appender.activateOptions(writer);
+
+        _logger = Logger.getLogger(RingBufferAppenderTest.class.getName() + "." + overflowPolicy + bufferSize);
+        _logger.setAdditivity(false);
+        _logger.addAppender(_appender);
+    }
+
+    // Waits for the writing thread to write the given text
+    private static boolean awaitText(StringWriter written, String text) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!written.toString().contains(text)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,106 @@
+package nz.ac.auckland.concert.utility;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of SeatBitmap's encoding: sets of seats survive encode() and decode() unchanged, count() agrees with the
+ * sets' sizes, and every seat in the venue has an ordinal of its own that fits in BYTES bytes.
+ */
+public class SeatBitmapTest {
+
+    @Test
+    public void testEmptySet() {
+        byte[] bitmap = SeatBitmap.encode(Collections.emptySet());
+
+        assertEquals(SeatBitmap.BYTES, bitmap.length);
+        assertEquals(0, SeatBitmap.count(bitmap));
+        assertTrue(SeatBitmap.decode(bitmap).isEmpty());
+    }
+
+    @Test
+    public void testFullVenue() {
+        Set<SeatDTO> venue = venue();
+        assertEquals(SeatBitmap.SEATS, venue.size());
+        assertEquals((SeatBitmap.SEATS + 7) / 8, SeatBitmap.BYTES);
+
+        Set<Integer> ordinals = new HashSet<>();
+        for (SeatDTO seat : venue) {
+            int ordinal = SeatBitmap.ordinalOf(seat);
+            assertTrue(ordinal >= 0 && ordinal < SeatBitmap.SEATS);
+            assertTrue("Ordinal shared by " + seat, ordinals.add(ordinal));
+        }
+
+        byte[] bitmap = SeatBitmap.encode(venue);
+        assertEquals(SeatBitmap.BYTES, bitmap.length);
+        assertEquals(SeatBitmap.SEATS, SeatBitmap.count(bitmap));
+        assertEquals(venue, SeatBitmap.decode(bitmap));
+    }
+
+    @Test
+    public void testFirstAndLastSeatOfEachRow() {
+        Set<SeatDTO> ends = new HashSet<>();
+        for (SeatRow row : venueRows()) {
+            SeatDTO first = new SeatDTO(row, new SeatNumber(1));
+            SeatDTO last = new SeatDTO(row, new SeatNumber(TheatreLayout.getNumberOfSeatsForRow(row)));
+
+            for (SeatDTO seat : new SeatDTO[]{first, last}) {
+                Set<SeatDTO> one = Collections.singleton(seat);
+                byte[] bitmap = SeatBitmap.encode(one);
+                assertEquals(1, SeatBitmap.count(bitmap));
+                assertEquals(one, SeatBitmap.decode(bitmap));
+            }
+            ends.add(first);
+            ends.add(last);
+        }
+
+        // Together, too, so no row's seats spill into the next's
+        byte[] bitmap = SeatBitmap.encode(ends);
+        assertEquals(ends.size(), SeatBitmap.count(bitmap));
+        assertEquals(ends, SeatBitmap.decode(bitmap));
+    }
+
+    @Test
+    public void testSeatPastEndOfRowIsRejected() {
+        SeatRow row = venueRows().stream().min(Comparator.comparingInt(TheatreLayout::getNumberOfSeatsForRow)).get();
+        SeatDTO seat = new SeatDTO(row, new SeatNumber(TheatreLayout.getNumberOfSeatsForRow(row) + 1));
+        try {
+            SeatBitmap.encode(Collections.singleton(seat));
+            fail(seat + " isn't in the venue");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+
+    // Private methods
+
+
+    private static Set<SeatRow> venueRows() {
+        Set<SeatRow> rows = new HashSet<>();
+        for (PriceBand band : PriceBand.values()) {
+            rows.addAll(TheatreLayout.getRowsForPriceBand(band));
+        }
+        return rows;
+    }
+
+    private static Set<SeatDTO> venue() {
+        Set<SeatDTO> seats = new HashSet<>();
+        for (SeatRow row : venueRows()) {
+            for (int number = 1; number <= TheatreLayout.getNumberOfSeatsForRow(row); number++) {
+                seats.add(new SeatDTO(row, new SeatNumber(number)));
+            }
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,120 @@
+package nz.ac.auckland.concert.common.dto;
+
+import java.time.LocalDateTime;
+
+import nz.ac.auckland.concert.common.jaxb.LocalDateTimeAdapter;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * DTO class to represent the state of the waiting room that reservation
+ * requests for a concert on one of its dates pass through.
+ *
+ * An AdmissionDTO describes admission in terms of:
+ * _concertId  the identity of the concert.
+ * _date       the date/time of the concert.
+ * _queueDepth the number of requests holding a ticket for a later turn.
+ * _admitRate  the number of requests admitted per second when the waiting
+ *             room is in use.
+ * _admitted   the number of requests admitted so far.
+ * _refused    the number of requests turned away because the waiting room
+ *             was full.
+ *
+ */
+@XmlRootElement(name = "admission")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AdmissionDTO {
+
+	@XmlAttribute(name = "concert-id")
+	private Long _concertId;
+
+	@XmlAttribute(name = "date")
+	@XmlJavaTypeAdapter(LocalDateTimeAdapter.class)
+	private LocalDateTime _date;
+
+	@XmlElement(name = "queue-depth")
+	private int _queueDepth;
+
+	@XmlElement(name = "admit-rate")
+	private int _admitRate;
+
+	@XmlElement(name = "admitted")
+	private long _admitted;
+
+	@XmlElement(name = "refused")
+	private long _refused;
+
+	public AdmissionDTO() {
+	}
+
+	public AdmissionDTO(Long concertId, LocalDateTime date, int queueDepth, int admitRate, long admitted, long refused) {
+		_concertId = concertId;
+		_date = date;
+		_queueDepth = queueDepth;
+		_admitRate = admitRate;
+		_admitted = admitted;
+		_refused = refused;
+	}
+
+	public Long getConcertId() {
+		return _concertId;
+	}
+
+	public LocalDateTime getDate() {
+		return _date;
+	}
+
+	public int getQueueDepth() {
+		return _queueDepth;
+	}
+
+	public int getAdmitRate() {
+		return _admitRate;
+	}
+
+	public long getAdmitted() {
+		return _admitted;
+	}
+
+	public long getRefused() {
+		return _refused;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof AdmissionDTO))
+            return false;
+        if (obj == this)
+            return true;
+
+        AdmissionDTO rhs = (AdmissionDTO) obj;
+        return new EqualsBuilder().
+            append(_concertId, rhs._concertId).
+            append(_date, rhs._date).
+            append(_queueDepth, rhs._queueDepth).
+            append(_admitRate, rhs._admitRate).
+            append(_admitted, rhs._admitted).
+            append(_refused, rhs._refused).
+            isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 31).
+	            append(_concertId).
+	            append(_date).
+	            append(_queueDepth).
+	            append(_admitRate).
+	            append(_admitted).
+	            append(_refused).
+	            hashCode();
+	}
+}
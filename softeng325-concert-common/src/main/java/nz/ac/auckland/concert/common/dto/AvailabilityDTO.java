@@ -0,0 +1,91 @@
+package nz.ac.auckland.concert.common.dto;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import nz.ac.auckland.concert.common.jaxb.LocalDateTimeAdapter;
+import nz.ac.auckland.concert.common.types.PriceBand;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import javax.xml.bind.annotation.*;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * DTO class to represent the seats still available for a concert on one of
+ * its dates.
+ * 
+ * An AvailabilityDTO describes availability in terms of:
+ * _concertId      the identity of the concert.
+ * _date           the date/time of the concert.
+ * _remainingSeats the number of seats that are neither booked nor held by a
+ *                 pending reservation, for each price band (A, B and C).
+ *
+ */
+@XmlRootElement(name = "availability")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AvailabilityDTO {
+
+	@XmlAttribute(name = "concert-id")
+	private Long _concertId;
+
+	@XmlAttribute(name = "date")
+	@XmlJavaTypeAdapter(LocalDateTimeAdapter.class)
+	private LocalDateTime _date;
+
+	@XmlElementWrapper(name = "remaining-seats")
+	private Map<PriceBand, Integer> _remainingSeats;
+
+	public AvailabilityDTO() {
+	}
+
+	public AvailabilityDTO(Long concertId, LocalDateTime date, Map<PriceBand, Integer> remainingSeats) {
+		_concertId = concertId;
+		_date = date;
+		_remainingSeats = new EnumMap<PriceBand, Integer>(remainingSeats);
+	}
+
+	public Long getConcertId() {
+		return _concertId;
+	}
+
+	public LocalDateTime getDate() {
+		return _date;
+	}
+
+	public int getRemainingSeats(PriceBand seatType) {
+		Integer remaining = _remainingSeats.get(seatType);
+		return remaining == null ? 0 : remaining;
+	}
+
+	public Map<PriceBand, Integer> getRemainingSeats() {
+		return Collections.unmodifiableMap(_remainingSeats);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof AvailabilityDTO))
+            return false;
+        if (obj == this)
+            return true;
+
+        AvailabilityDTO rhs = (AvailabilityDTO) obj;
+        return new EqualsBuilder().
+            append(_concertId, rhs._concertId).
+            append(_date, rhs._date).
+            append(_remainingSeats, rhs._remainingSeats).
+            isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 31).
+	            append(_concertId).
+	            append(_date).
+	            append(_remainingSeats).
+	            hashCode();
+	}
+}
@@ -19,6 +19,8 @@ import javax.xml.bind.annotation.XmlRootElement;
  * DTO class to represent bookings (confirmed reservations). 
  * 
  * A BookingDTO describes a booking in terms of:
+ * _id             the unique identifier for a booking, used to cancel it. Not
+ *                 considered by equals().
  * _concertId      the unique identifier for a concert.
  * _concertTitle   the concert's title.
  * _dateTime       the concert's scheduled date and time for which the booking 
@@ -33,6 +35,9 @@ import javax.xml.bind.annotation.XmlRootElement;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class BookingDTO {
 
+	@XmlAttribute(name = "id")
+	private Long _id;
+
 	@XmlAttribute(name = "concert-id")
 	private Long _concertId;
 
@@ -62,6 +67,16 @@ public class BookingDTO {
 		_priceBand = priceBand;
 	}
 
+	public BookingDTO(Long id, Long concertId, String concertTitle,
+			LocalDateTime dateTime, Set<SeatDTO> seats, PriceBand priceBand) {
+		this(concertId, concertTitle, dateTime, seats, priceBand);
+		_id = id;
+	}
+
+	public Long getId() {
+		return _id;
+	}
+
 	public Long getConcertId() {
 		return _concertId;
 	}
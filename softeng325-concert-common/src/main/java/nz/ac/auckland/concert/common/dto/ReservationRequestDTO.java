@@ -1,6 +1,9 @@
 package nz.ac.auckland.concert.common.dto;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import nz.ac.auckland.concert.common.jaxb.LocalDateTimeAdapter;
 import nz.ac.auckland.concert.common.types.PriceBand;
@@ -23,6 +26,9 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  * _concertId     the identity of the concert for which to reserve seats.
  * _date          the date/time of the concert for which seats are to be 
  *                reserved.
+ * _seats         the particular seats to reserve, all of which must be in
+ *                the priceband. Null when any seats of the priceband will
+ *                do.
  *
  */
 @XmlRootElement(name = "reservation-request")
@@ -41,6 +47,8 @@ public class ReservationRequestDTO {
 	@XmlAttribute(name = "date")
 	@XmlJavaTypeAdapter(LocalDateTimeAdapter.class)
 	private LocalDateTime _date;
+
+	private Set<SeatDTO> _seats;
 	
 	public ReservationRequestDTO() {}
 	
@@ -50,6 +58,11 @@ public class ReservationRequestDTO {
 		_concertId = concertId;
 		_date = date;
 	}
+
+	public ReservationRequestDTO(Set<SeatDTO> seats, PriceBand seatType, Long concertId, LocalDateTime date) {
+		this(seats.size(), seatType, concertId, date);
+		_seats = new HashSet<SeatDTO>(seats);
+	}
 	
 	public int getNumberOfSeats() {
 		return _numberOfSeats;
@@ -66,6 +79,14 @@ public class ReservationRequestDTO {
 	public LocalDateTime getDate() {
 		return _date;
 	}
+
+	/**
+	 * Returns the particular seats requested, or null if any seats of the
+	 * requested priceband will do.
+	 */
+	public Set<SeatDTO> getSeats() {
+		return _seats == null ? null : Collections.unmodifiableSet(_seats);
+	}
 	
 	@Override
 	public boolean equals(Object obj) {
@@ -80,6 +101,7 @@ public class ReservationRequestDTO {
             append(_seatType, rhs._seatType).
             append(_concertId, rhs._concertId).
             append(_date, rhs._date).
+            append(_seats, rhs._seats).
             isEquals();
 	}
 	
@@ -90,6 +112,7 @@ public class ReservationRequestDTO {
 	            append(_seatType).
 	            append(_concertId).
 	            append(_date).
+	            append(_seats).
 	            hashCode();
 	}
 }
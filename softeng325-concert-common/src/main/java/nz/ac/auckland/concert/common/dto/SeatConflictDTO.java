@@ -0,0 +1,69 @@
+package nz.ac.auckland.concert.common.dto;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * DTO class to represent a reservation request for particular seats that
+ * could not be met because some of them are already taken.
+ *
+ * A SeatConflictDTO describes the conflict in terms of:
+ * _message the reason the reservation was refused.
+ * _seats   the requested seats that are held or booked by other
+ *          reservations (represented as a Set of SeatDTO objects).
+ *
+ */
+@XmlRootElement(name = "seat-conflict")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class SeatConflictDTO {
+
+	@XmlAttribute(name = "message")
+	private String _message;
+
+	private Set<SeatDTO> _seats;
+
+	public SeatConflictDTO() {}
+
+	public SeatConflictDTO(String message, Set<SeatDTO> seats) {
+		_message = message;
+		_seats = new HashSet<SeatDTO>(seats);
+	}
+
+	public String getMessage() {
+		return _message;
+	}
+
+	public Set<SeatDTO> getSeats() {
+		return _seats == null ? Collections.<SeatDTO>emptySet() : Collections.unmodifiableSet(_seats);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SeatConflictDTO))
+            return false;
+        if (obj == this)
+            return true;
+
+        SeatConflictDTO rhs = (SeatConflictDTO) obj;
+        return new EqualsBuilder().
+            append(_message, rhs._message).
+            append(_seats, rhs._seats).
+            isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 31).
+	            append(_message).
+	            append(_seats).
+	            hashCode();
+	}
+}
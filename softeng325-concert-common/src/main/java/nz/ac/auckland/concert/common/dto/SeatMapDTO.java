@@ -0,0 +1,130 @@
+package nz.ac.auckland.concert.common.dto;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import nz.ac.auckland.concert.common.jaxb.LocalDateTimeAdapter;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * DTO class to represent the availability of every seat for a concert on one
+ * of its dates, or the changes to it since an earlier version. Seats are
+ * encoded as SeatBitmaps, one bit per seat in the venue.
+ *
+ * A SeatMapDTO describes a seat map in terms of:
+ * _concertId      the identity of the concert.
+ * _date           the date/time of the concert.
+ * _version        the version of the seat map described. Versions increase
+ *                 with every change to the seat map.
+ * _changedSeats   the seats whose availability has changed since the version
+ *                 asked for, or null when this is a complete seat map.
+ * _availableSeats the seats that are available (neither booked nor held by a
+ *                 pending reservation). For a set of changes, only changed
+ *                 seats are included.
+ *
+ */
+@XmlRootElement(name = "seat-map")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class SeatMapDTO {
+
+	@XmlAttribute(name = "concert-id")
+	private Long _concertId;
+
+	@XmlAttribute(name = "date")
+	@XmlJavaTypeAdapter(LocalDateTimeAdapter.class)
+	private LocalDateTime _date;
+
+	@XmlAttribute(name = "version")
+	private long _version;
+
+	@XmlElement(name = "changed-seats")
+	private byte[] _changedSeats;
+
+	@XmlElement(name = "available-seats")
+	private byte[] _availableSeats;
+
+	public SeatMapDTO() {
+	}
+
+	public SeatMapDTO(Long concertId, LocalDateTime date, long version, byte[] changedSeats, byte[] availableSeats) {
+		_concertId = concertId;
+		_date = date;
+		_version = version;
+		_changedSeats = changedSeats;
+		_availableSeats = availableSeats;
+	}
+
+	public Long getConcertId() {
+		return _concertId;
+	}
+
+	public LocalDateTime getDate() {
+		return _date;
+	}
+
+	public long getVersion() {
+		return _version;
+	}
+
+	/**
+	 * Returns true if this is a complete seat map, rather than a set of
+	 * changes to an earlier version.
+	 */
+	public boolean isComplete() {
+		return _changedSeats == null;
+	}
+
+	public byte[] getChangedSeatsBitmap() {
+		return _changedSeats;
+	}
+
+	public byte[] getAvailableSeatsBitmap() {
+		return _availableSeats;
+	}
+
+	public Set<SeatDTO> getChangedSeats() {
+		return SeatBitmap.decode(_changedSeats);
+	}
+
+	public Set<SeatDTO> getAvailableSeats() {
+		return SeatBitmap.decode(_availableSeats);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SeatMapDTO))
+            return false;
+        if (obj == this)
+            return true;
+
+        SeatMapDTO rhs = (SeatMapDTO) obj;
+        return new EqualsBuilder().
+            append(_concertId, rhs._concertId).
+            append(_date, rhs._date).
+            append(_version, rhs._version).
+            append(_changedSeats, rhs._changedSeats).
+            append(_availableSeats, rhs._availableSeats).
+            isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 31).
+	            append(_concertId).
+	            append(_date).
+	            append(_version).
+	            append(_changedSeats).
+	            append(_availableSeats).
+	            hashCode();
+	}
+}
@@ -20,9 +20,19 @@ public class Messages {
 	public static final String RESERVATION_REQUEST_WITH_MISSING_FIELDS = "Unable to process reservation - missing fields in the request";
 	public static final String CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE = "Unable to process reservation - concert isn't scheduled on spcecified date";
 	public static final String INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION = "Unable to make reservation - seats of the required type are not available";
+	public static final String INVALID_SEATS_FOR_RESERVATION = "Unable to process reservation - requested seats aren't seats of the required type";
+	public static final String REQUESTED_SEATS_UNAVAILABLE_FOR_RESERVATION = "Unable to make reservation - some of the requested seats are not available";
+	public static final String RESERVATION_QUEUED = "Unable to make reservation yet - too many requests for this concert, retry with ticket";
+	public static final String RESERVATION_ADMISSION_REFUSED = "Unable to make reservation - too many requests for this concert, try again later";
+	public static final String RESERVATION_REQUEST_EXCEEDS_CAPACITY = "Unable to process reservation - more seats requested than the price band has";
+	public static final String WAITLIST_LIMIT_REACHED = "Unable to join waitlist - too many requests already waiting for this user";
+	public static final String WAITLIST_TIMED_OUT = "Unable to make reservation - seats didn't come back in time";
 	
 	public static final String CREDIT_CARD_NOT_REGISTERED = "Unable to confirm reservation - credit card not registered";
 	public static final String EXPIRED_RESERVATION = "Unable to confirm reservation - reservation has expired";
 
+	public static final String NO_RESERVATION_TO_RELEASE = "Unable to release reservation - no pending reservation";
+	public static final String BOOKING_NOT_FOUND = "Unable to cancel booking - unrecognised booking";
+
 	public static final String NO_IMAGE_FOR_PERFORMER = "Unable to download image - no image associated with requested performer";
 }
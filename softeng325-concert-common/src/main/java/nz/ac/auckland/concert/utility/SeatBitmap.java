@@ -0,0 +1,102 @@
+package nz.ac.auckland.concert.utility;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utility class that encodes sets of seats as bitmaps over the venue's seat ordinals. Every seat in the venue has an
+ * ordinal: the rows that have seats are taken in SeatRow order, and seat n of a row has ordinal (row offset + n - 1).
+ * A set of seats is then stored as one bit per ordinal, so any reservation at the venue fits in BYTES bytes.
+ */
+public class SeatBitmap {
+
+	private static final Map<SeatRow, Integer> ROW_OFFSETS = new EnumMap<>(SeatRow.class);
+	private static final SeatRow[] ORDINAL_ROWS; // Row of each ordinal
+
+	/**
+	 * Number of seats in the venue, and so the highest ordinal plus one.
+	 */
+	public static final int SEATS;
+
+	/**
+	 * Size of an encoded bitmap in bytes.
+	 */
+	public static final int BYTES;
+
+	static {
+		Set<SeatRow> venueRows = new HashSet<>();
+		for (PriceBand band : PriceBand.values()) {
+			venueRows.addAll(TheatreLayout.getRowsForPriceBand(band));
+		}
+
+		int ordinal = 0;
+		for (SeatRow row : SeatRow.values()) {
+			if (venueRows.contains(row)) {
+				ROW_OFFSETS.put(row, ordinal);
+				ordinal += TheatreLayout.getNumberOfSeatsForRow(row);
+			}
+		}
+		SEATS = ordinal;
+		BYTES = (SEATS + 7) / 8;
+
+		ORDINAL_ROWS = new SeatRow[SEATS];
+		for (Map.Entry<SeatRow, Integer> row : ROW_OFFSETS.entrySet()) {
+			for (int i = 0; i < TheatreLayout.getNumberOfSeatsForRow(row.getKey()); i++) {
+				ORDINAL_ROWS[row.getValue() + i] = row.getKey();
+			}
+		}
+	}
+
+	// This is utility class, so hide the constructor to prevent instantiation.
+	private SeatBitmap() {}
+
+	public static byte[] encode(Set<SeatDTO> seats) {
+		byte[] bitmap = new byte[BYTES];
+		for (SeatDTO seat : seats) {
+			int ordinal = ordinalOf(seat);
+			bitmap[ordinal >>> 3] |= 1 << (ordinal & 7);
+		}
+		return bitmap;
+	}
+
+	public static Set<SeatDTO> decode(byte[] bitmap) {
+		Set<SeatDTO> seats = new HashSet<>();
+		for (int i = 0; i < bitmap.length; i++) {
+			int bits = bitmap[i] & 0xFF;
+			while (bits != 0) { // Visit set bits only
+				int ordinal = (i << 3) + Integer.numberOfTrailingZeros(bits);
+				SeatRow row = ORDINAL_ROWS[ordinal];
+				seats.add(new SeatDTO(row, new SeatNumber(ordinal - ROW_OFFSETS.get(row) + 1)));
+				bits &= bits - 1;
+			}
+		}
+		return seats;
+	}
+
+	/**
+	 * Returns the number of seats in an encoded bitmap, without decoding it.
+	 */
+	public static int count(byte[] bitmap) {
+		int count = 0;
+		for (byte b : bitmap) {
+			count += Integer.bitCount(b & 0xFF);
+		}
+		return count;
+	}
+
+	public static int ordinalOf(SeatDTO seat) {
+		Integer offset = ROW_OFFSETS.get(seat.getRow());
+		int number = seat.getNumber().intValue();
+		if (offset == null || number < 1 || number > TheatreLayout.getNumberOfSeatsForRow(seat.getRow())) {
+			throw new IllegalArgumentException("No seat " + seat + " in the venue");
+		}
+		return offset + number - 1;
+	}
+}
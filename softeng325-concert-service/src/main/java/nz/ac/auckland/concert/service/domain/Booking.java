@@ -4,23 +4,30 @@ import javax.persistence.*;
 
 @Entity
 @Table(name = "BOOKINGS")
+@NamedQuery(name = "Booking.countByReservation", query = "SELECT COUNT(b) FROM Booking b WHERE b.reservation = :reservation")
 public class Booking {
 
     public Booking() {}
 
     public Booking(Reservation reservation, User user) {
         this.reservation = reservation;
+        this.show = reservation.getShow();
         this.user = user;
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOKINGS_ID_SEQUENCE")
+    @SequenceGenerator(name = "BOOKINGS_ID_SEQUENCE", sequenceName = "BOOKINGS_ID_SEQUENCE", allocationSize = 50)
     private long id;
 
     @OneToOne(cascade = CascadeType.REMOVE)
     @JoinColumn(name = "Reservation_ID")
     private Reservation reservation;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "SHOW_ID")
+    private Show show;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     private User user;
@@ -28,10 +35,18 @@ public class Booking {
     @Version
     private long version;
 
+    public long getId() {
+        return id;
+    }
+
     public Reservation getReservation() {
         return reservation;
     }
 
+    public Show getShow() {
+        return show;
+    }
+
     public User getUser() {
         return user;
     }
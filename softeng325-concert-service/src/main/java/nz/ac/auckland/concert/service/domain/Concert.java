@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "CONCERTS")
+@NamedQuery(name = "Concert.findAll", query = "SELECT c FROM Concert c")
 public class Concert {
 
     public Concert() {} // Default constructor required for JPA
@@ -4,8 +4,6 @@ import nz.ac.auckland.concert.common.dto.BookingDTO;
 import nz.ac.auckland.concert.service.domain.Booking;
 import nz.ac.auckland.concert.service.domain.Reservation;
 
-import java.util.stream.Collectors;
-
 /**
  * Mapper for mapping domain booking object to BookingDTO object. Note there is no method for the]
  * directing on vice-versa because this function is not needed anywhere in the system as no BookingDTO
@@ -17,10 +15,11 @@ public class BookingMapper {
         Reservation reservation = booking.getReservation();
 
         return new BookingDTO(
+                booking.getId(),
                 reservation.getConcert().getId(),
                 reservation.getConcert().getTitle(),
                 reservation.getDate(),
-                reservation.getSeats().stream().map(SeatMapper::toDto).collect(Collectors.toSet()),
+                SeatMapper.toDtos(reservation),
                 reservation.getPriceBand()
         );
     }
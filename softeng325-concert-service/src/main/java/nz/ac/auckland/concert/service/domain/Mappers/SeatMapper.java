@@ -1,7 +1,13 @@
 package nz.ac.auckland.concert.service.domain.Mappers;
 
 import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.service.domain.SeatClaim;
 import nz.ac.auckland.concert.service.domain.SeatReservation;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Mapper class for mapping Seat domain model objects to SeatDTO's and vice-versa.
@@ -15,6 +21,23 @@ public class SeatMapper {
         );
     }
 
+    public static SeatDTO toDto(SeatClaim claim) {
+        return new SeatDTO(
+                claim.getRow(),
+                claim.getNumber()
+        );
+    }
+
+    /**
+     * Returns the seats of a reservation, decoding them from its bitmap when it has one.
+     */
+    public static Set<SeatDTO> toDtos(Reservation reservation) {
+        if (reservation.getSeatsBitmap() != null) {
+            return SeatBitmap.decode(reservation.getSeatsBitmap());
+        }
+        return reservation.getSeats().stream().map(SeatMapper::toDto).collect(Collectors.toSet());
+    }
+
     public static SeatReservation toReservation(SeatDTO dto) {
         return new SeatReservation(
                 dto.getRow(),
@@ -9,6 +9,7 @@ import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "PERFORMERS")
+@NamedQuery(name = "Performer.findAll", query = "SELECT p FROM Performer p")
 public class Performer  {
 
     public Performer() {}
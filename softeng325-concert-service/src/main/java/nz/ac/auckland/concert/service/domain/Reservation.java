@@ -2,34 +2,54 @@ package nz.ac.auckland.concert.service.domain;
 
 import nz.ac.auckland.concert.common.types.PriceBand;
 import nz.ac.auckland.concert.service.domain.jpa.LocalDateTimeConverter;
+import nz.ac.auckland.concert.utility.SeatBitmap;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.Set;
 
 @Entity
 @Embeddable
-@Table(name = "RESERVATIONS")
+@Table(name = "RESERVATIONS", indexes = {
+        // Seat availability searches for a concert's active reservations on one date
+        @Index(name = "IDX_RESERVATIONS_CONCERT_DATE_EXPIRY", columnList = "CONCERT_ID, CONCERT_DATE, EXPIRY")
+})
 public class Reservation {
 
     public Reservation() {}
 
-    public Reservation(Set<SeatReservation> seats, Concert concert, LocalDateTime date, LocalDateTime expiry, PriceBand priceBand) {
+    public Reservation(Set<SeatReservation> seats, Show show, LocalDateTime expiry, PriceBand priceBand) {
         this.seats = seats;
-        this.concert = concert;
-        this.date = date;
+        this.show = show;
+        this.concert = show.getConcert();
+        this.date = show.getDate();
         this.expiry = expiry;
         this.priceBand = priceBand;
     }
 
+    // Seats stored as a bitmap over the venue's seat ordinals (see SeatBitmap) rather than as SEAT_RESERVATIONS rows
+    public Reservation(byte[] seatsBitmap, Show show, LocalDateTime expiry, PriceBand priceBand) {
+        this(new HashSet<>(), show, expiry, priceBand);
+        this.seatsBitmap = seatsBitmap;
+    }
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "RESERVATIONS_ID_SEQUENCE")
+    @SequenceGenerator(name = "RESERVATIONS_ID_SEQUENCE", sequenceName = "RESERVATIONS_ID_SEQUENCE", allocationSize = 50) // Ids come from blocks of 50, so inserts needn't run one at a time to learn them
     @Column(name = "ID")
     private long id;
 
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "SEAT_RESERVATION_ID")
-    private Set<SeatReservation> seats;
+    private Set<SeatReservation> seats; // Empty when the seats are held in seatsBitmap
+
+    @Column(name = "SEATS_BITMAP", length = 64)
+    private byte[] seatsBitmap;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "SHOW_ID")
+    private Show show;
 
     @ManyToOne
     @JoinColumn(name = "CONCERT_ID")
@@ -58,6 +78,25 @@ public class Reservation {
         return seats;
     }
 
+    public byte[] getSeatsBitmap() {
+        return seatsBitmap;
+    }
+
+    /**
+     * Returns the number of seats reserved, whichever way they are stored.
+     */
+    public int getSeatCount() {
+        return seatsBitmap == null ? seats.size() : SeatBitmap.count(seatsBitmap);
+    }
+
+    public void setSeatsBitmap(byte[] seatsBitmap) {
+        this.seatsBitmap = seatsBitmap;
+    }
+
+    public Show getShow() {
+        return show;
+    }
+
     public Concert getConcert() {
         return concert;
     }
@@ -0,0 +1,108 @@
+package nz.ac.auckland.concert.service.domain;
+
+import nz.ac.auckland.concert.common.types.SeatNumber;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.domain.Types.SeatClaimState;
+import nz.ac.auckland.concert.service.domain.jpa.LocalDateTimeConverter;
+import nz.ac.auckland.concert.service.domain.jpa.SeatNumberConverter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Occupancy of one seat at one performance of a concert. A seat can only ever have one claim, enforced by the unique
+ * constraint over (concert, date, row, number), so a reservation takes its seats simply by inserting their claims -
+ * if any seat is already claimed the insert fails. Claims are HELD until their expiry while the reservation is
+ * pending, and BOOKED once it is confirmed. An expired hold may be taken over by a later reservation.
+ */
+@Entity
+@Table(name = "SEAT_CLAIMS", uniqueConstraints = {
+        @UniqueConstraint(name = "UQ_SEAT_CLAIMS_SEAT", columnNames = {"CONCERT_ID", "CONCERT_DATE", "SEAT_ROW", "SEAT_NUMBER"})
+}, indexes = {
+        // Booking confirmation updates every claim of a reservation
+        @Index(name = "IDX_SEAT_CLAIMS_RESERVATION", columnList = "RESERVATION_ID")
+})
+@NamedQueries({
+        @NamedQuery(name = "SeatClaim.findByShow",
+                query = "SELECT c FROM SeatClaim c WHERE c.concert.id = :concertId AND c.date = :date"),
+        @NamedQuery(name = "SeatClaim.findByShowAndRows",
+                query = "SELECT c FROM SeatClaim c WHERE c.concert.id = :concertId AND c.date = :date AND c.row IN :rows"),
+        @NamedQuery(name = "SeatClaim.deleteByReservation",
+                query = "DELETE FROM SeatClaim c WHERE c.reservationId = :reservationId AND c.state = :state"),
+        @NamedQuery(name = "SeatClaim.book",
+                query = "UPDATE SeatClaim c SET c.state = :booked " +
+                        "WHERE c.reservationId = :reservationId AND c.state = :held AND c.expiry > :currentTime"),
+        @NamedQuery(name = "SeatClaim.takeOverLapsedHold",
+                query = "UPDATE SeatClaim c SET c.reservationId = :reservationId, c.expiry = :expiry " +
+                        "WHERE c.id = :id AND c.state = :held AND c.expiry <= :currentTime")
+})
+public class SeatClaim {
+
+    public SeatClaim() {}
+
+    public SeatClaim(Concert concert, LocalDateTime date, SeatRow row, SeatNumber number, long reservationId, LocalDateTime expiry) {
+        this.concert = concert;
+        this.date = date;
+        this.row = row;
+        this.number = number;
+        this.reservationId = reservationId;
+        this.expiry = expiry;
+        this.state = SeatClaimState.HELD;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEAT_CLAIMS_ID_SEQUENCE")
+    @SequenceGenerator(name = "SEAT_CLAIMS_ID_SEQUENCE", sequenceName = "SEAT_CLAIMS_ID_SEQUENCE", allocationSize = 50)
+    @Column(name = "ID")
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "CONCERT_ID", nullable = false)
+    private Concert concert;
+
+    @Column(name = "CONCERT_DATE", nullable = false)
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime date;
+
+    @Column(name = "SEAT_ROW", nullable = false)
+    private SeatRow row;
+
+    @Column(name = "SEAT_NUMBER", nullable = false)
+    @Convert(converter = SeatNumberConverter.class)
+    private SeatNumber number;
+
+    @Column(name = "STATE", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SeatClaimState state;
+
+    @Column(name = "EXPIRY")
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime expiry;
+
+    @Column(name = "RESERVATION_ID") // Reservation currently holding the seat; not a foreign key so claims outlive it
+    private long reservationId;
+
+    public long getId() {
+        return id;
+    }
+
+    public SeatRow getRow() {
+        return row;
+    }
+
+    public SeatNumber getNumber() {
+        return number;
+    }
+
+    public SeatClaimState getState() {
+        return state;
+    }
+
+    public LocalDateTime getExpiry() {
+        return expiry;
+    }
+
+    public long getReservationId() {
+        return reservationId;
+    }
+}
@@ -11,7 +11,8 @@ import javax.persistence.*;
 public class SeatReservation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEAT_RESERVATIONS_ID_SEQUENCE")
+    @SequenceGenerator(name = "SEAT_RESERVATIONS_ID_SEQUENCE", sequenceName = "SEAT_RESERVATIONS_ID_SEQUENCE", allocationSize = 50)
     private long id;
 
     @Column(name = "SEAT_ROW")
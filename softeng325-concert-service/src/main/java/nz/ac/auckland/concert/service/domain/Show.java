@@ -0,0 +1,51 @@
+package nz.ac.auckland.concert.service.domain;
+
+import nz.ac.auckland.concert.service.domain.jpa.LocalDateTimeConverter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One performance of a concert, on one of its dates. Reservations and bookings belong to a show, and each show has a
+ * ShowInventory row (sharing its id) counting the seats it has left.
+ */
+@Entity
+@Table(name = "SHOWS", uniqueConstraints = {
+        @UniqueConstraint(name = "UQ_SHOWS_CONCERT_DATE", columnNames = {"CONCERT_ID", "CONCERT_DATE"})
+})
+@NamedQuery(name = "Show.findIdByConcertAndDate", query = "SELECT s.id FROM Show s WHERE s.concert.id = :id AND s.date = :date")
+public class Show {
+
+    public Show() {}
+
+    public Show(Concert concert, LocalDateTime date) {
+        this.concert = concert;
+        this.date = date;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SHOWS_ID_SEQUENCE")
+    @SequenceGenerator(name = "SHOWS_ID_SEQUENCE", sequenceName = "SHOWS_ID_SEQUENCE", allocationSize = 50)
+    @Column(name = "ID")
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "CONCERT_ID", nullable = false)
+    private Concert concert;
+
+    @Column(name = "CONCERT_DATE", nullable = false)
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime date;
+
+    public long getId() {
+        return id;
+    }
+
+    public Concert getConcert() {
+        return concert;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+}
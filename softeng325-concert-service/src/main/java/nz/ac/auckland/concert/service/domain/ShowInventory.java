@@ -0,0 +1,113 @@
+package nz.ac.auckland.concert.service.domain;
+
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+
+import javax.persistence.*;
+
+/**
+ * Seats a show has left to sell, counted per price band in a single row. A seat is only taken off the count once it
+ * is booked; seats held by pending reservations are tracked by their SeatClaims. The version is incremented with
+ * every change, so it also identifies a particular state of the show's inventory.
+ */
+@Entity
+@Table(name = "SHOW_INVENTORIES")
+@NamedQueries({
+        @NamedQuery(name = "ShowInventory.findByShow",
+                query = "SELECT i FROM ShowInventory i JOIN FETCH i.show s WHERE s.concert.id = :id AND s.date = :date"),
+        // Show id, concert id and date of shows, those with the fewest seats left first
+        @NamedQuery(name = "ShowInventory.findBusiestShows",
+                query = "SELECT s.id, s.concert.id, s.date FROM ShowInventory i JOIN i.show s " +
+                        "ORDER BY i.remainingA + i.remainingB + i.remainingC, s.id")
+})
+public class ShowInventory {
+
+    public ShowInventory() {}
+
+    public ShowInventory(Show show) {
+        this.show = show;
+        this.remainingA = capacityOf(PriceBand.PriceBandA);
+        this.remainingB = capacityOf(PriceBand.PriceBandB);
+        this.remainingC = capacityOf(PriceBand.PriceBandC);
+    }
+
+    @Id
+    @Column(name = "SHOW_ID")
+    private long id;
+
+    @MapsId // Shares the id of its show; SHOW_INVENTORIES has one row per show
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "SHOW_ID")
+    private Show show;
+
+    @Column(name = "REMAINING_A", nullable = false)
+    private int remainingA;
+
+    @Column(name = "REMAINING_B", nullable = false)
+    private int remainingB;
+
+    @Column(name = "REMAINING_C", nullable = false)
+    private int remainingC;
+
+    @Version
+    @Column(name = "VERSION")
+    private long version;
+
+    public Show getShow() {
+        return show;
+    }
+
+    public int getRemaining(PriceBand priceBand) {
+        switch (priceBand) {
+            case PriceBandA:
+                return remainingA;
+            case PriceBandB:
+                return remainingB;
+            default:
+                return remainingC;
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Takes seats off the count for a price band, returning false (and leaving the count alone) if the band doesn't
+     * have that many seats left.
+     */
+    public boolean take(PriceBand priceBand, int seats) {
+        if (getRemaining(priceBand) < seats) {
+            return false;
+        }
+        setRemaining(priceBand, getRemaining(priceBand) - seats);
+        return true;
+    }
+
+    /**
+     * Puts seats back on the count for a price band, e.g. when a booking is cancelled.
+     */
+    public void putBack(PriceBand priceBand, int seats) {
+        setRemaining(priceBand, Math.min(capacityOf(priceBand), getRemaining(priceBand) + seats));
+    }
+
+    /**
+     * Returns the number of seats in a price band at the venue.
+     */
+    public static int capacityOf(PriceBand priceBand) {
+        return TheatreLayout.getRowsForPriceBand(priceBand).stream().mapToInt(TheatreLayout::getNumberOfSeatsForRow).sum();
+    }
+
+    private void setRemaining(PriceBand priceBand, int remaining) {
+        switch (priceBand) {
+            case PriceBandA:
+                remainingA = remaining;
+                break;
+            case PriceBandB:
+                remainingB = remaining;
+                break;
+            default:
+                remainingC = remaining;
+        }
+    }
+}
@@ -6,7 +6,14 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "AUTHORIZATION_TOKENS")
+@Table(name = "AUTHORIZATION_TOKENS", indexes = {
+        // Every authenticated request looks its token up by value rather than by username
+        @Index(name = "IDX_AUTHORIZATION_TOKENS_TOKEN", columnList = "TOKEN", unique = true)
+})
+@NamedQueries({
+        @NamedQuery(name = "Token.findByToken", query = "SELECT t FROM Token t WHERE t.token = :token"),
+        @NamedQuery(name = "Token.deleteByToken", query = "DELETE FROM Token t WHERE t.token = :token")
+})
 public class Token {
 
     public Token() {}
@@ -0,0 +1,5 @@
+package nz.ac.auckland.concert.service.domain.Types;
+
+public enum SeatClaimState {
+    HELD, BOOKED
+}
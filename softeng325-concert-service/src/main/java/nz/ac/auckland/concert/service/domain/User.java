@@ -5,6 +5,11 @@ import java.util.Set;
 
 @Entity
 @Table(name = "USERS")
+@NamedQueries({
+        @NamedQuery(name = "User.findCreditCard", query = "SELECT c FROM User u JOIN u.creditCard c WHERE u.username = :username"),
+        @NamedQuery(name = "User.findReservation", query = "SELECT r FROM User u JOIN u.reservation r WHERE u.username = :username"),
+        @NamedQuery(name = "User.findBookings", query = "SELECT b FROM User u JOIN u.bookings b WHERE u.username = :username")
+})
 public class User {
 
     public User() {}
@@ -0,0 +1,43 @@
+package nz.ac.auckland.concert.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for checking an authorization token. Costs nothing unless being recorded, as for
+ * ReservationEvent.
+ */
+@Name("nz.ac.auckland.concert.Authentication")
+@Label("Authentication")
+@Category({"Concert Service", "Authentication"})
+@Description("Checking an authorization token")
+@StackTrace(false)
+public class AuthenticationEvent extends Event {
+
+    @Name("tokenKind")
+    @Label("Token Kind")
+    private String _tokenKind;
+
+    @Name("accepted")
+    @Label("Accepted")
+    private boolean _accepted;
+
+    /**
+     * Writes the event, if it is being recorded.
+     * @param tokenKind signed or database
+     * @param username user the token was issued to, or null if it was rejected
+     */
+    public void commit(String tokenKind, String username) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        _tokenKind = tokenKind;
+        _accepted = username != null;
+        commit();
+    }
+}
@@ -0,0 +1,66 @@
+package nz.ac.auckland.concert.service.jfr;
+
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Flight Recorder event for a request to book the seats of a reservation, from arriving at ReserveResource to being
+ * answered. Costs nothing unless being recorded, as for ReservationEvent.
+ */
+@Name("nz.ac.auckland.concert.Booking")
+@Label("Booking")
+@Category({"Concert Service", "Reservations"})
+@Description("A request to book the seats of a reservation")
+@StackTrace(false)
+public class BookingEvent extends RequestEvent {
+
+    @Name("reservationId")
+    @Label("Reservation Id")
+    private long _reservationId;
+
+    @Name("concertId")
+    @Label("Concert Id")
+    private long _concertId;
+
+    @Name("date")
+    @Label("Date")
+    private String _date;
+
+    @Name("priceBand")
+    @Label("Price Band")
+    private String _priceBand;
+
+    @Name("seatCount")
+    @Label("Seat Count")
+    private int _seatCount;
+
+    /**
+     * Writes the event, if it is being recorded, describing the reservation booked and the response.
+     */
+    public void commit(ReservationDTO reservationDto, Response response) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        if (reservationDto != null) {
+            _reservationId = reservationDto.getId() == null ? 0 : reservationDto.getId();
+            _seatCount = reservationDto.getSeats() == null ? 0 : reservationDto.getSeats().size();
+            ReservationRequestDTO requestDto = reservationDto.getReservationRequest();
+            if (requestDto != null) {
+                _concertId = requestDto.getConcertId() == null ? 0 : requestDto.getConcertId();
+                _date = String.valueOf(requestDto.getDate());
+                _priceBand = String.valueOf(requestDto.getSeatType());
+            }
+        }
+        setResponse(response);
+        commit();
+    }
+}
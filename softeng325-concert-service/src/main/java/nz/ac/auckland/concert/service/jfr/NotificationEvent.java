@@ -0,0 +1,43 @@
+package nz.ac.auckland.concert.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for sending a notification to parked subscribers, by SubscriptionManager. Costs nothing
+ * unless being recorded, as for ReservationEvent.
+ */
+@Name("nz.ac.auckland.concert.Notification")
+@Label("Notification")
+@Category({"Concert Service", "Subscriptions"})
+@Description("Sending a notification to every parked subscriber")
+@StackTrace(false)
+public class NotificationEvent extends Event {
+
+    @Name("subscribersResumed")
+    @Label("Subscribers Resumed")
+    private int _subscribersResumed;
+
+    @Name("notificationsBuffered")
+    @Label("Notifications Buffered")
+    private int _notificationsBuffered;
+
+    /**
+     * Writes the event, if it is being recorded.
+     * @param subscribersResumed parked subscribers sent the notification
+     * @param notificationsBuffered recent notifications kept for subscribers yet to catch up
+     */
+    public void commit(int subscribersResumed, int notificationsBuffered) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        _subscribersResumed = subscribersResumed;
+        _notificationsBuffered = notificationsBuffered;
+        commit();
+    }
+}
@@ -0,0 +1,31 @@
+package nz.ac.auckland.concert.service.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Base class of Flight Recorder events for requests to the service, recording how each request was answered.
+ */
+abstract class RequestEvent extends Event {
+
+    // Fields are package-private, as Flight Recorder leaves out the private fields of superclasses
+
+    @Name("status")
+    @Label("Status")
+    int _status;
+
+    @Name("outcome")
+    @Label("Outcome")
+    String _outcome;
+
+    // The response's message, when it carries one, or else its reason phrase
+    void setResponse(Response response) {
+        _status = response.getStatus();
+        _outcome = response.getEntity() instanceof String
+                ? (String) response.getEntity()
+                : response.getStatusInfo().getReasonPhrase();
+    }
+}
@@ -0,0 +1,65 @@
+package nz.ac.auckland.concert.service.jfr;
+
+import nz.ac.auckland.concert.common.dto.ReservationDTO;
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Flight Recorder event for a request to reserve seats, from arriving at ReserveResource to being answered.
+ *
+ * Events are only filled in and written when a recording has the event enabled. Otherwise creating, beginning and
+ * committing one does nothing, and the JIT compiler does away with the event altogether.
+ */
+@Name("nz.ac.auckland.concert.Reservation")
+@Label("Reservation")
+@Category({"Concert Service", "Reservations"})
+@Description("A request to reserve seats for a concert date")
+@StackTrace(false)
+public class ReservationEvent extends RequestEvent {
+
+    @Name("concertId")
+    @Label("Concert Id")
+    private long _concertId;
+
+    @Name("date")
+    @Label("Date")
+    private String _date;
+
+    @Name("priceBand")
+    @Label("Price Band")
+    private String _priceBand;
+
+    @Name("seatsRequested")
+    @Label("Seats Requested")
+    private int _seatsRequested;
+
+    @Name("seatsReserved")
+    @Label("Seats Reserved")
+    private int _seatsReserved;
+
+    /**
+     * Writes the event, if it is being recorded, describing the request and its response.
+     */
+    public void commit(ReservationRequestDTO requestDto, Response response) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        _concertId = requestDto.getConcertId() == null ? 0 : requestDto.getConcertId();
+        _date = String.valueOf(requestDto.getDate());
+        _priceBand = String.valueOf(requestDto.getSeatType());
+        _seatsRequested = requestDto.getNumberOfSeats();
+        if (response.getEntity() instanceof ReservationDTO) {
+            _seatsReserved = ((ReservationDTO) response.getEntity()).getSeats().size();
+        }
+        setResponse(response);
+        commit();
+    }
+}
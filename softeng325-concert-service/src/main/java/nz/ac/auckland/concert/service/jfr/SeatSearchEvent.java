@@ -0,0 +1,67 @@
+package nz.ac.auckland.concert.service.jfr;
+
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a search for seats to reserve, by TheatreUtility. Costs nothing unless being recorded, as
+ * for ReservationEvent.
+ */
+@Name("nz.ac.auckland.concert.SeatSearch")
+@Label("Seat Search")
+@Category({"Concert Service", "Reservations"})
+@Description("A search for seats to reserve in a price band")
+@StackTrace(false)
+public class SeatSearchEvent extends Event {
+
+    @Name("priceBand")
+    @Label("Price Band")
+    private String _priceBand;
+
+    @Name("seatsRequested")
+    @Label("Seats Requested")
+    private int _seatsRequested;
+
+    @Name("seatsScanned")
+    @Label("Seats Scanned")
+    private int _seatsScanned;
+
+    @Name("seatsOpen")
+    @Label("Seats Open")
+    private int _seatsOpen;
+
+    @Name("seatsFound")
+    @Label("Seats Found")
+    private int _seatsFound;
+
+    /**
+     * Writes the event, if it is being recorded.
+     * @param priceBand
+     * @param seatsRequested
+     * @param seatsOpen seats in the price band that aren't taken
+     * @param seatsFound seats returned, 0 if there weren't enough open
+     */
+    public void commit(PriceBand priceBand, int seatsRequested, int seatsOpen, int seatsFound) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        _priceBand = String.valueOf(priceBand);
+        _seatsRequested = seatsRequested;
+        _seatsScanned = 0; // Every seat in the price band is looked at
+        for (SeatRow row : TheatreLayout.getRowsForPriceBand(priceBand)) {
+            _seatsScanned += TheatreLayout.getNumberOfSeatsForRow(row);
+        }
+        _seatsOpen = seatsOpen;
+        _seatsFound = seatsFound;
+        commit();
+    }
+}
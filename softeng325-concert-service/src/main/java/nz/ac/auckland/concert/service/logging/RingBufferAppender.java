@@ -0,0 +1,334 @@
+package nz.ac.auckland.concert.service.logging;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.Priority;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.OnlyOnceErrorHandler;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.ErrorHandler;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.OptionHandler;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Console appender that writes asynchronously. A logging thread only copies what the layout needs out of the event
+ * and puts it in a bounded ring buffer; a daemon thread takes events out of the buffer, formats them with the layout
+ * and writes them to standard out (or standard error), flushing whenever the buffer is emptied rather than after
+ * every event. Set up in log4j.properties like a ConsoleAppender, e.g.
+ *
+ *     log4j.appender.A1=nz.ac.auckland.concert.service.logging.RingBufferAppender
+ *     log4j.appender.A1.BufferSize=8192
+ *     log4j.appender.A1.OverflowPolicy=DiscardBelowWarn
+ *     log4j.appender.A1.layout=org.apache.log4j.PatternLayout
+ *
+ * When the buffer is full, because events are logged faster than they can be written, the OverflowPolicy decides
+ * what happens to further events: Block makes the logging thread wait for room, Discard drops them and
+ * DiscardBelowWarn (the default) drops those below WARN while waiting for room for the rest. How many events were
+ * dropped is written out once there's room again.
+ *
+ * The buffer is claimed with a compare-and-set on its tail, so logging threads never wait for one another here,
+ * although log4j itself still holds the logger's lock while it calls its appenders. The writing thread parks while
+ * the buffer is empty, and is unparked by the next event put in it. Location information (%C, %F,
+ * %L, %l and %M) is not copied, so it isn't available to the layout.
+ */
+public class RingBufferAppender implements Appender, OptionHandler {
+
+    public enum OverflowPolicy {
+        Block, Discard, DiscardBelowWarn
+    }
+
+    private static final long FULL_NANOS = TimeUnit.MICROSECONDS.toNanos(100); // Wait between attempts on a full buffer
+
+    private static final String SYSTEM_ERR = "System.err";
+
+    private String _name;
+    private Layout _layout;
+    private Priority _threshold;
+    private Filter _headFilter;
+    private Filter _tailFilter;
+    private ErrorHandler _errorHandler = new OnlyOnceErrorHandler();
+
+    private int _bufferSize = 8192;
+    private OverflowPolicy _overflowPolicy = OverflowPolicy.DiscardBelowWarn;
+    private String _target = "System.out";
+
+    private AtomicReferenceArray<LoggingEvent> _slots; // Events waiting to be written; null once taken
+    private int _mask;
+    private final AtomicLong _tail = new AtomicLong(); // Sequence of the next slot to be claimed by a logging thread
+    private final AtomicLong _head = new AtomicLong(); // Sequence of the next slot to be taken by the writing thread
+    private final AtomicLong _discarded = new AtomicLong(); // Dropped since last reported
+
+    private Writer _writer;
+    private Thread _writingThread;
+    private volatile boolean _idle; // Whether the writing thread is parked, or about to park, on an empty buffer
+    private volatile boolean _closed;
+
+    public void setBufferSize(int bufferSize) {
+        _bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+        return _bufferSize;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        try {
+            _overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim());
+        } catch (IllegalArgumentException e) {
+            LogLog.warn("Unknown OverflowPolicy [" + overflowPolicy + "]; Using " + _overflowPolicy);
+        }
+    }
+
+    public String getOverflowPolicy() {
+        return _overflowPolicy.name();
+    }
+
+    public void setTarget(String target) {
+        _target = target.trim();
+    }
+
+    public String getTarget() {
+        return _target;
+    }
+
+    public void setThreshold(Priority threshold) {
+        _threshold = threshold;
+    }
+
+    public Priority getThreshold() {
+        return _threshold;
+    }
+
+    /**
+     * Returns the number of events that have been dropped and not yet reported, because the buffer was full.
+     */
+    public long getDiscardedCount() {
+        return _discarded.get();
+    }
+
+    @Override
+    public void activateOptions() {
+        activateOptions(new OutputStreamWriter(SYSTEM_ERR.equalsIgnoreCase(_target) ? System.err : System.out));
+    }
+
+    /**
+     * Starts writing to the given writer instead of the configured Target.
+     */
+    public void activateOptions(Writer writer) {
+        int capacity = Integer.highestOneBit(Math.max(_bufferSize, 2) - 1) << 1; // Rounded up to a power of two
+        _slots = new AtomicReferenceArray<>(capacity);
+        _mask = capacity - 1;
+        _writer = writer;
+
+        _writingThread = new Thread(this::write, "log-writer-" + _name);
+        _writingThread.setDaemon(true);
+        _writingThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close)); // Don't lose what's buffered on exit
+    }
+
+    @Override
+    public void doAppend(LoggingEvent event) {
+        if (_closed || _slots == null) {
+            return;
+        }
+        if (_threshold != null && !event.getLevel().isGreaterOrEqual(_threshold)) {
+            return;
+        }
+        for (Filter filter = _headFilter; filter != null; filter = filter.getNext()) {
+            int decision = filter.decide(event);
+            if (decision == Filter.DENY) {
+                return;
+            } else if (decision == Filter.ACCEPT) {
+                break;
+            }
+        }
+
+        // Copy what depends on the logging thread before another thread formats the event
+        event.getRenderedMessage();
+        event.getThreadName();
+        event.getNDC();
+        event.getMDCCopy();
+        event.getThrowableStrRep();
+
+        boolean mayWait = _overflowPolicy == OverflowPolicy.Block ||
+                (_overflowPolicy == OverflowPolicy.DiscardBelowWarn && event.getLevel().isGreaterOrEqual(Level.WARN));
+        while (!offer(event)) {
+            if (!mayWait || _closed) {
+                _discarded.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(FULL_NANOS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        if (_writingThread != null) {
+            LockSupport.unpark(_writingThread); // Let it empty the buffer and stop
+            try {
+                _writingThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void addFilter(Filter filter) {
+        if (_headFilter == null) {
+            _headFilter = filter;
+        } else {
+            _tailFilter.setNext(filter);
+        }
+        _tailFilter = filter;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return _headFilter;
+    }
+
+    @Override
+    public void clearFilters() {
+        _headFilter = _tailFilter = null;
+    }
+
+    @Override
+    public String getName() {
+        return _name;
+    }
+
+    @Override
+    public void setName(String name) {
+        _name = name;
+    }
+
+    @Override
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        if (errorHandler == null) {
+            LogLog.warn("You have tried to set a null error-handler.");
+        } else {
+            _errorHandler = errorHandler;
+        }
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return _errorHandler;
+    }
+
+    @Override
+    public void setLayout(Layout layout) {
+        _layout = layout;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return _layout;
+    }
+
+    @Override
+    public boolean requiresLayout() {
+        return true;
+    }
+
+
+    // Private methods
+
+
+    /**
+     * Puts the event in the next free slot, or returns false if there's none.
+     */
+    private boolean offer(LoggingEvent event) {
+        while (true) {
+            long tail = _tail.get();
+            if (tail - _head.get() >= _slots.length()) {
+                return false;
+            }
+            if (_tail.compareAndSet(tail, tail + 1)) {
+                _slots.set((int) tail & _mask, event);
+                if (_idle) {
+                    LockSupport.unpark(_writingThread);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Run by the writing thread: writes events in the order their slots were claimed, until closed and emptied.
+     */
+    private void write() {
+        while (true) {
+            long head = _head.get();
+            int slot = (int) head & _mask;
+            LoggingEvent event = _slots.get(slot);
+            if (event != null) {
+                _slots.set(slot, null);
+                _head.lazySet(head + 1); // Frees the slot for logging threads
+                write(event);
+            } else if (head != _tail.get()) {
+                Thread.yield(); // Slot claimed, but its event not yet stored
+            } else {
+                reportDiscarded();
+                flush();
+                if (_closed) {
+                    return;
+                }
+                _idle = true;
+                if (head == _tail.get() && !_closed) { // Checked again once idle, so an event offered meanwhile unparks us
+                    LockSupport.park(this);
+                }
+                _idle = false;
+            }
+        }
+    }
+
+    private void reportDiscarded() {
+        long discarded = _discarded.getAndSet(0);
+        if (discarded > 0) {
+            write(new LoggingEvent(RingBufferAppender.class.getName(), Logger.getLogger(RingBufferAppender.class), Level.WARN,
+                    "Log buffer of appender " + _name + " was full; Discarded (" + discarded + ") events", null));
+        }
+    }
+
+    private void write(LoggingEvent event) {
+        try {
+            _writer.write(_layout.format(event));
+            if (_layout.ignoresThrowable()) {
+                String[] throwable = event.getThrowableStrRep();
+                if (throwable != null) {
+                    for (String line : throwable) {
+                        _writer.write(line);
+                        _writer.write(Layout.LINE_SEP);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            _errorHandler.error("Failed to write log event to " + _target, e, ErrorCode.WRITE_FAILURE);
+        }
+    }
+
+    private void flush() {
+        try {
+            _writer.flush();
+        } catch (IOException e) {
+            _errorHandler.error("Failed to flush " + _target, e, ErrorCode.FLUSH_FAILURE);
+        }
+    }
+}
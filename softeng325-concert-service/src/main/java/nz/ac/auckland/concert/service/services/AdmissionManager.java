@@ -0,0 +1,258 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.common.dto.AdmissionDTO;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that acts as a virtual waiting room for reservation requests, so that an on-sale can't swamp the
+ * database. Requests for each show - a concert on one of its dates - are let through at Config.ADMISSION_RATE_PER_SECOND,
+ * with bursts of up to Config.ADMISSION_BURST, before any work is done for them. Callers look the show up first, so
+ * only shows that exist get waiting rooms.
+ *
+ * Admission is decided with the generic cell rate algorithm, a token bucket kept as a single time: the time by which
+ * every request admitted so far would have been let through at the admit rate. A request that arrives too early isn't
+ * turned away but given a ticket for the next free turn, and is told how long to wait. Presenting the ticket once its
+ * turn has come admits the request ahead of anyone without one, so requests are admitted in the order they arrived.
+ * Once Config.ADMISSION_QUEUE_CAPACITY turns are taken, further requests are refused without a ticket.
+ *
+ * Retry-After is in whole seconds, so ticket holders tend to come back together. To keep them from all hitting the
+ * database at once, no more than Config.ADMISSION_MAX_IN_FLIGHT admitted requests (across all shows) may be
+ * in progress at a time; a request whose turn has come while they are is told to try again shortly, keeping its place.
+ * Every admitted request must be followed by a call to leave() once it is done.
+ *
+ * Each show's queue depth and requests in progress are reported as gauges, and its admitted and refused requests as
+ * counters, all labelled with the concert and date (see MetricsManager). The series are registered along with the
+ * show's waiting room and removed with it.
+ */
+public class AdmissionManager {
+
+    private static AdmissionManager _instance = null;
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / Config.ADMISSION_RATE_PER_SECOND;
+    private static final long BURST_NANOS = INTERVAL_NANOS * (Config.ADMISSION_BURST - 1); // How far ahead of the rate a burst may run
+    private static final long TICKET_GRACE_NANOS = TimeUnit.SECONDS.toNanos(Config.ADMISSION_TICKET_GRACE_SECONDS);
+
+    private final Map<Long, ShowAdmission> _shows = new ConcurrentHashMap<>(); // Show id -> admission state
+    private final Semaphore _inFlight = new Semaphore(Config.ADMISSION_MAX_IN_FLIGHT); // Admitted requests yet to leave
+
+    protected AdmissionManager() {}
+
+    public static AdmissionManager instance() {
+        if (_instance == null) {
+            _instance = new AdmissionManager();
+        }
+        return _instance;
+    }
+
+    /**
+     * Decides whether a reservation request for a show may go ahead now.
+     * @param showId id of the show, which must exist
+     * @param concertId
+     * @param date
+     * @param ticket ticket given to the request earlier, or null
+     * @return whether the request is admitted, and if not, when to try again and with which ticket
+     */
+    public Admission admit(long showId, long concertId, LocalDateTime date, String ticket) {
+        long now = System.nanoTime();
+        return _shows.computeIfAbsent(showId, key -> new ShowAdmission(concertId, date, now))
+                .admit(ticket, now, _inFlight);
+    }
+
+    /**
+     * Lets another request in, now that an admitted request is done.
+     * @param admission the request's admission, as returned by admit()
+     */
+    public void leave(Admission admission) {
+        admission._show.leave();
+        _inFlight.release();
+    }
+
+    /**
+     * Returns how many requests are queued for a show, and how many have been admitted and refused.
+     */
+    public AdmissionDTO getStatistics(long showId, long concertId, LocalDateTime date) {
+        ShowAdmission show = _shows.get(showId);
+        if (show == null) { // No requests yet
+            return new AdmissionDTO(concertId, date, 0, Config.ADMISSION_RATE_PER_SECOND, 0, 0);
+        }
+        synchronized (show) {
+            return new AdmissionDTO(concertId, date, show.queueDepth(System.nanoTime()), Config.ADMISSION_RATE_PER_SECOND,
+                    show._admitted, show._refused);
+        }
+    }
+
+    /**
+     * Forgets all admission state, and the metrics reported for it. Used when the service is reinitialised along with
+     * its database.
+     */
+    public void clear() {
+        for (Long showId : _shows.keySet()) {
+            ShowAdmission show = _shows.remove(showId);
+            if (show != null) {
+                show.unregister();
+            }
+        }
+    }
+
+
+    // Private methods
+
+
+    /**
+     * Outcome of a request for admission.
+     */
+    public static class Admission {
+
+        private final ShowAdmission _show;
+        private final boolean _admitted;
+        private final String _ticket;
+        private final int _position;
+        private final long _waitNanos;
+
+        private Admission(ShowAdmission show, boolean admitted, String ticket, int position, long waitNanos) {
+            _show = show;
+            _admitted = admitted;
+            _ticket = ticket;
+            _position = position;
+            _waitNanos = waitNanos;
+        }
+
+        public boolean isAdmitted() {
+            return _admitted;
+        }
+
+        /**
+         * Returns the ticket to retry with, or null if the request was refused outright.
+         */
+        public String getTicket() {
+            return _ticket;
+        }
+
+        /**
+         * Returns the number of turns up to and including the request's, when it has a ticket.
+         */
+        public int getPosition() {
+            return _position;
+        }
+
+        /**
+         * Returns the number of whole seconds to wait before trying again, at least 1.
+         */
+        public long getRetryAfterSeconds() {
+            return Math.max(1, (_waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Admission state of one show. Guarded by its own lock.
+     */
+    private static class ShowAdmission {
+
+        private static final String ADMITTED_TOTAL = "concert_admission_admitted_total";
+        private static final String REFUSED_TOTAL = "concert_admission_refused_total";
+        private static final String QUEUE_DEPTH = "concert_admission_queue_depth";
+        private static final String IN_FLIGHT = "concert_admission_in_flight";
+
+        private final LinkedHashMap<String, Long> _tickets = new LinkedHashMap<>(); // Ticket -> its turn, in issue order
+        private final String[] _labels;
+        private final MetricsManager.Counter _admittedTotal;
+        private final MetricsManager.Counter _refusedTotal;
+        private long _theoreticalArrival; // Time by which all admissions so far are spaced out at the admit rate
+        private long _admitted;
+        private long _refused;
+        private int _inFlight; // Admitted requests yet to leave
+
+        ShowAdmission(long concertId, LocalDateTime date, long now) {
+            _theoreticalArrival = now;
+
+            MetricsManager metrics = MetricsManager.instance();
+            _labels = new String[]{"concert", Long.toString(concertId), "date", date.toString()};
+            _admittedTotal = metrics.counter(ADMITTED_TOTAL, "Reservation requests admitted from the waiting room.", _labels);
+            _refusedTotal = metrics.counter(REFUSED_TOTAL, "Reservation requests refused because the waiting room was full.", _labels);
+            metrics.gauge(QUEUE_DEPTH, "Reservation requests waiting for their turn.", () -> queueDepth(System.nanoTime()), _labels);
+            metrics.gauge(IN_FLIGHT, "Admitted reservation requests in progress.", this::getInFlight, _labels);
+        }
+
+        // Removes the show's metrics, once it has been dropped
+        void unregister() {
+            MetricsManager metrics = MetricsManager.instance();
+            for (String name : new String[]{ADMITTED_TOTAL, REFUSED_TOTAL, QUEUE_DEPTH, IN_FLIGHT}) {
+                metrics.remove(name, _labels);
+            }
+        }
+
+        synchronized Admission admit(String ticket, long now, Semaphore inFlight) {
+            expireTickets(now);
+
+            Long turn = ticket == null ? null : _tickets.get(ticket);
+            if (turn != null) { // Request has already queued for a turn
+                if (turn > now) { // Too early, keep waiting
+                    return new Admission(this, false, ticket, positionOf(turn, now), turn - now);
+                }
+                if (!inFlight.tryAcquire()) { // Turn has come, but too many requests are in progress
+                    return new Admission(this, false, ticket, 1, INTERVAL_NANOS);
+                }
+                _tickets.remove(ticket);
+                return admitted();
+            }
+
+            long arrival = Math.max(_theoreticalArrival, now);
+            turn = Math.max(arrival - BURST_NANOS, now); // Earliest time this request fits within the rate
+            if (turn == now && inFlight.tryAcquire()) {
+                _theoreticalArrival = arrival + INTERVAL_NANOS;
+                return admitted();
+            }
+
+            int position = positionOf(turn, now);
+            if (position > Config.ADMISSION_QUEUE_CAPACITY) { // Waiting room is full
+                _refused++;
+                _refusedTotal.increment();
+                return new Admission(this, false, null, 0, turn - now);
+            }
+
+            _theoreticalArrival = arrival + INTERVAL_NANOS; // Turn is taken, whether or not the ticket is used
+            String newTicket = UUID.randomUUID().toString();
+            _tickets.put(newTicket, turn);
+            return new Admission(this, false, newTicket, position, turn - now);
+        }
+
+        synchronized void leave() {
+            _inFlight--;
+        }
+
+        synchronized int getInFlight() {
+            return _inFlight;
+        }
+
+        synchronized int queueDepth(long now) {
+            return Math.max(0, positionOf(_theoreticalArrival - BURST_NANOS, now) - 1);
+        }
+
+        private Admission admitted() {
+            _admitted++;
+            _admittedTotal.increment();
+            _inFlight++;
+            return new Admission(this, true, null, 0, 0);
+        }
+
+        private static int positionOf(long turn, long now) {
+            return (int) Math.max(1, (turn - now) / INTERVAL_NANOS + 1);
+        }
+
+        // Turns are handed out in order, so lapsed tickets are always the oldest
+        private void expireTickets(long now) {
+            Iterator<Long> turns = _tickets.values().iterator();
+            while (turns.hasNext() && turns.next() + TICKET_GRACE_NANOS < now) {
+                turns.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.service.domain.Token;
+import nz.ac.auckland.concert.service.domain.User;
+import nz.ac.auckland.concert.service.jfr.AuthenticationEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton class that issues and checks the authorization tokens handed to users. Two kinds of token are supported,
+ * chosen by Config.SIGNED_AUTHENTICATION_TOKENS:
+ *
+ *  - Signed tokens (the default) carry the username and expiry themselves, together with an HMAC-SHA256 signature.
+ *    They are checked entirely in-process, so authenticating a request needs no database round trip and any service
+ *    instance configured with the same signing secret accepts them. A random nonce keeps two tokens issued to a user
+ *    in the same second apart, so that revoking one doesn't revoke the other. Format:
+ *        v1.<key id>.<expiry, epoch seconds>.<base64url username>.<base64url nonce>.<base64url signature>
+ *
+ *  - Database tokens are random UUIDs stored against the user in AUTHORIZATION_TOKENS and looked up on every request,
+ *    as the service has always done. These remain available for compatibility.
+ *
+ * Signing keys rotate every Config.SIGNING_KEY_ROTATION_MINUTES. The key for a rotation period is derived from the
+ * signing secret and the period's number, so instances sharing the secret agree on keys without coordinating. Tokens
+ * are accepted under the current key and the Config.SIGNING_KEYS_RETAINED - 1 keys before it; anything signed with
+ * an older key has been rotated out and is rejected. Individually revoked tokens (e.g. on logout) are kept on a
+ * revocation list until they would have expired anyway.
+ */
+public class AuthenticationManager {
+
+    private static final Logger _logger = LoggerFactory.getLogger(AuthenticationManager.class);
+
+    private static AuthenticationManager _instance = null;
+
+    private static final String TOKEN_VERSION = "v1";
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int NONCE_BYTES = 8;
+
+    private final byte[] _signingSecret;
+    private final long _rotationMillis;
+    private final SecureRandom _random = new SecureRandom();
+
+    private final Map<Long, SecretKeySpec> _keys = new ConcurrentHashMap<>(); // Derived keys by rotation period
+    private final Map<String, Long> _revokedTokens = new ConcurrentHashMap<>(); // Signature -> expiry, epoch seconds
+
+    // Mac instances aren't thread safe, so each request thread keeps its own
+    private final ThreadLocal<Mac> _mac = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(SIGNATURE_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(SIGNATURE_ALGORITHM + " is not available", e);
+        }
+    });
+
+    protected AuthenticationManager() {
+
+        if (Config.AUTHENTICATION_SIGNING_SECRET != null) {
+            _signingSecret = Config.AUTHENTICATION_SIGNING_SECRET.getBytes(StandardCharsets.UTF_8);
+        } else { // No shared secret configured, so tokens are only accepted by this instance
+            _signingSecret = new byte[32];
+            _random.nextBytes(_signingSecret);
+        }
+        _rotationMillis = Duration.ofMinutes(Config.SIGNING_KEY_ROTATION_MINUTES).toMillis();
+    }
+
+    public static AuthenticationManager instance() {
+        if (_instance == null) {
+            _instance = new AuthenticationManager();
+        }
+        return _instance;
+    }
+
+    /**
+     * Issues a token for a user. For database tokens, an active token the user already holds is returned as is;
+     * otherwise a new one is stored, so the caller must have a transaction open on em.
+     * @param user
+     * @param em
+     * @return token to hand to the user under the Authorization header
+     */
+    public String issueToken(User user, EntityManager em) {
+
+        if (!Config.SIGNED_AUTHENTICATION_TOKENS) {
+            return issueDatabaseToken(user, em);
+        }
+
+        long keyId = currentKeyId();
+        long expiry = System.currentTimeMillis() / 1000 + Duration.ofMinutes(Config.AUTHENTICATION_TIMEOUT_MINUTES).getSeconds();
+        byte[] nonce = new byte[NONCE_BYTES];
+        _random.nextBytes(nonce);
+        String payload = TOKEN_VERSION + "." + keyId + "." + expiry + "." +
+                ENCODER.encodeToString(user.getUsername().getBytes(StandardCharsets.UTF_8)) + "." + ENCODER.encodeToString(nonce);
+
+        return payload + "." + ENCODER.encodeToString(sign(keyId, payload));
+    }
+
+    /**
+     * Checks a token, returning the username it was issued to, or null if the token is malformed, forged, expired,
+     * signed with a rotated out key or revoked. em is only used for database tokens.
+     * @param authToken
+     * @param em
+     * @return username of the token's holder, or null when the token isn't valid
+     */
+    public String authenticate(String authToken, EntityManager em) {
+
+        AuthenticationEvent event = new AuthenticationEvent(); // Written only while a flight recording is taking it
+        event.begin();
+        String username = Config.SIGNED_AUTHENTICATION_TOKENS
+                ? authenticateSignedToken(authToken)
+                : authenticateDatabaseToken(authToken, em);
+        event.commit(Config.SIGNED_AUTHENTICATION_TOKENS ? "signed" : "database", username);
+        return username;
+    }
+
+    /**
+     * Revokes a token so that it is no longer accepted, e.g. when its holder logs out. For database tokens the
+     * stored token is removed, so the caller must have a transaction open on em.
+     * @param authToken
+     * @param em
+     */
+    public void revoke(String authToken, EntityManager em) {
+
+        if (!Config.SIGNED_AUTHENTICATION_TOKENS) {
+            em.createNamedQuery("Token.deleteByToken").setParameter("token", authToken).executeUpdate();
+            return;
+        }
+
+        String[] parts = authToken.split("\\.");
+        long now = System.currentTimeMillis() / 1000;
+
+        // Forget revocations of tokens that have expired since, they are rejected regardless
+        _revokedTokens.values().removeIf(expiry -> expiry <= now);
+        _revokedTokens.put(parts[5], Long.parseLong(parts[2]));
+        _logger.info("Revoked token; ({}) unexpired tokens on revocation list", _revokedTokens.size());
+    }
+
+    /**
+     * Forgets all revoked tokens. Used when the service is reinitialised along with its database.
+     */
+    public void clearRevocations() {
+        _revokedTokens.clear();
+    }
+
+
+    // Private methods
+
+
+    private String authenticateSignedToken(String authToken) {
+
+        String[] parts = authToken.split("\\.");
+        if (parts.length != 6 || !TOKEN_VERSION.equals(parts[0])) {
+            return null;
+        }
+
+        try {
+            long keyId = Long.parseLong(parts[1]);
+            long expiry = Long.parseLong(parts[2]);
+
+            long currentKeyId = currentKeyId();
+            if (keyId > currentKeyId || keyId <= currentKeyId - Config.SIGNING_KEYS_RETAINED) { // Unknown or rotated out key
+                return null;
+            }
+
+            byte[] signature = DECODER.decode(parts[5]);
+            String payload = authToken.substring(0, authToken.lastIndexOf('.'));
+            if (!MessageDigest.isEqual(signature, sign(keyId, payload))) { // Constant time comparison
+                return null;
+            }
+
+            if (expiry <= System.currentTimeMillis() / 1000 || _revokedTokens.containsKey(parts[5])) {
+                return null;
+            }
+            return new String(DECODER.decode(parts[3]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) { // Includes NumberFormatException; not a token we issued
+            return null;
+        }
+    }
+
+    private long currentKeyId() {
+        return System.currentTimeMillis() / _rotationMillis;
+    }
+
+    private byte[] sign(long keyId, String payload) {
+
+        SecretKeySpec key = _keys.get(keyId);
+        if (key == null) { // Derived the same way by every thread, so whichever is stored first will do
+            SecretKeySpec derived = new SecretKeySpec(hmac(new SecretKeySpec(_signingSecret, SIGNATURE_ALGORITHM), "key-" + keyId), SIGNATURE_ALGORITHM);
+            key = _keys.putIfAbsent(keyId, derived);
+            if (key == null) {
+                key = derived;
+                _keys.keySet().removeIf(old -> old <= keyId - Config.SIGNING_KEYS_RETAINED); // Rotated out for good
+            }
+        }
+        return hmac(key, payload);
+    }
+
+    private byte[] hmac(SecretKeySpec key, String data) {
+        Mac mac = _mac.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialise " + SIGNATURE_ALGORITHM, e);
+        }
+        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String issueDatabaseToken(User user, EntityManager em) {
+
+        Token token = em.find(Token.class, user.getUsername()); // One token for one user
+
+        if (token != null && !token.getExpiry().isBefore(LocalDateTime.now())) { // Stored token is still active
+            return token.getToken();
+        }
+
+        if (token != null) { // Remove the timed out token
+            em.remove(token);
+            em.flush();
+        }
+
+        String tokenString = UUID.randomUUID().toString();
+        em.persist(new Token(user, tokenString, LocalDateTime.now().plus(Duration.ofMinutes(Config.AUTHENTICATION_TIMEOUT_MINUTES))));
+        return tokenString;
+    }
+
+    private String authenticateDatabaseToken(String authToken, EntityManager em) {
+
+        // Retrieve corresponding token form the database
+        TypedQuery<Token> tokenQuery = em.createNamedQuery("Token.findByToken", Token.class);
+        tokenQuery.setParameter("token", authToken);
+        List<Token> tokens = tokenQuery.getResultList();
+
+        // Valid if the token exists and its expiry time is after the current time
+        if (tokens.isEmpty() || LocalDateTime.now().isAfter(tokens.get(0).getExpiry())) {
+            return null;
+        }
+        return tokens.get(0).getUser().getUsername();
+    }
+}
@@ -0,0 +1,545 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.common.dto.SeatDTO;
+import nz.ac.auckland.concert.common.dto.SeatMapDTO;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.domain.Mappers.SeatMapper;
+import nz.ac.auckland.concert.service.domain.SeatClaim;
+import nz.ac.auckland.concert.service.domain.Types.SeatClaimState;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import nz.ac.auckland.concert.utility.TheatreLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.container.AsyncResponse;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Singleton class that tracks which seats of each show are available, without going to the database for it.
+ *
+ * Seats held by pending reservations are counted per show and price band. Together with the booked seats already
+ * taken off each ShowInventory, this gives a show's availability without looking at any seat. A hold is counted from
+ * the moment its reservation is made until it is either booked or expires. Expiry isn't an event anywhere else in the
+ * service, so holds are queued by expiry time and dropped as they lapse. The counts cover reservations made through
+ * this instance, plus any found when a show's seat map is loaded; seats themselves are still guarded by their
+ * SeatClaims, so a missing hold can only make a show look briefly emptier than it is.
+ *
+ * Shows that have been asked for their seat map also keep the state of every seat, loaded from their SeatClaims once
+ * and then updated as seats are held, booked and released. Each change bumps the seat map's version and is kept in a
+ * buffer of recent changes, so a client can be sent just the seats that changed since the version it holds - at
+ * once, or by long-polling until the next change. At most Config.SEAT_MAPS_CACHED seat maps are kept: loading
+ * another drops the least recently used, except any with clients long-polling on them. A dropped seat map is simply
+ * loaded again when next asked for.
+ *
+ * The same seat states settle requests for particular seats without going to the database: see claim().
+ */
+public class AvailabilityManager {
+
+    private static final Logger _logger = LoggerFactory.getLogger(AvailabilityManager.class);
+
+    private static AvailabilityManager _instance = null;
+
+    private static final int RECENT_CHANGES = 100; // Changes kept per seat map for sending deltas
+    private static final long BOOKED = -1; // Holder of a booked seat
+    private static final long CLAIMED = -2; // Holder of a seat claimed for a reservation that is still being stored
+
+    private final PersistenceManager _pm;
+
+    private final Map<Long, Hold> _holds = new ConcurrentHashMap<>(); // Reservation id -> hold
+    private final Map<Long, AtomicIntegerArray> _heldSeats = new ConcurrentHashMap<>(); // Show id -> seats held per band
+    private final DelayQueue<Hold> _expiries = new DelayQueue<>();
+
+    private final Map<Long, ShowSeats> _seatMaps = new ConcurrentHashMap<>(); // Show id -> state of every seat
+
+    protected AvailabilityManager() {
+
+        _pm = PersistenceManager.instance();
+
+        Thread expiry = new Thread(this::expireHolds, "hold-expiry"); // Releases holds as they lapse
+        expiry.setDaemon(true);
+        expiry.start();
+    }
+
+    public static AvailabilityManager instance() {
+        if (_instance == null) {
+            _instance = new AvailabilityManager();
+        }
+        return _instance;
+    }
+
+    /**
+     * Counts a new reservation's seats as held until expiry.
+     * @param reservationId
+     * @param showId
+     * @param priceBand
+     * @param seats SeatBitmap of the reservation's seats
+     * @param expiry
+     */
+    public void hold(long reservationId, long showId, PriceBand priceBand, byte[] seats, LocalDateTime expiry) {
+        track(new Hold(reservationId, showId, priceBand, seats, expiry));
+
+        ShowSeats seatMap = _seatMaps.get(showId);
+        if (seatMap != null) {
+            seatMap.hold(reservationId, seats);
+        }
+    }
+
+    /**
+     * Stops counting a reservation's seats as held once they are booked. The seats stay unavailable - or become so
+     * again, if the hold lapsed and was released just before the booking was stored.
+     * @param reservationId
+     * @param showId
+     * @param seats SeatBitmap of the reservation's seats
+     */
+    public void book(long reservationId, long showId, byte[] seats) {
+        Hold hold = _holds.remove(reservationId);
+        if (hold != null) {
+            uncount(hold);
+        }
+
+        ShowSeats seatMap = _seatMaps.get(showId);
+        if (seatMap != null) {
+            seatMap.book(seats);
+        }
+    }
+
+    /**
+     * Makes a reservation's seats available again before its expiry, when the reservation is released.
+     */
+    public void releaseHold(long reservationId) {
+        Hold hold = _holds.get(reservationId);
+        if (hold != null) {
+            _expiries.remove(hold);
+            release(hold);
+        }
+    }
+
+    /**
+     * Makes booked seats of a show available again, when their booking is cancelled.
+     * @param showId
+     * @param priceBand
+     * @param seats SeatBitmap of the booking's seats
+     */
+    public void releaseBooking(long showId, PriceBand priceBand, byte[] seats) {
+        ShowSeats seatMap = _seatMaps.get(showId);
+        if (seatMap != null) {
+            seatMap.release(BOOKED, seats);
+        }
+        WaitlistManager.instance().seatsReleased(showId, priceBand);
+    }
+
+    /**
+     * Returns the number of seats in a price band currently held by unexpired reservations for a show.
+     */
+    public int getHeldSeats(long showId, PriceBand priceBand) {
+        releaseLapsedHolds();
+
+        AtomicIntegerArray held = _heldSeats.get(showId);
+        return held == null ? 0 : held.get(priceBand.ordinal());
+    }
+
+    /**
+     * Claims particular seats of a show for a reservation that is about to be stored, provided none of them is held
+     * or booked. Either all of the seats are claimed or none is, and the seats stay claimed until the reservation
+     * holds them or the claim is abandoned. Claims only settle contention between requests for the same seats; the
+     * reservation must still claim its seats in the database, which remains the authority on who holds them.
+     * @param showId
+     * @param concertId
+     * @param date
+     * @param seats SeatBitmap of the seats to claim
+     * @return the requested seats that are already taken - none if the seats were claimed
+     */
+    public Set<SeatDTO> claim(long showId, long concertId, LocalDateTime date, byte[] seats) {
+        releaseLapsedHolds(); // A hold that has just lapsed mustn't turn a claim down
+
+        ShowSeats seatMap = seatMapFor(showId, concertId, date);
+        return SeatBitmap.decode(seatMap.claim(seats));
+    }
+
+    /**
+     * Makes seats claimed by claim() available again, after their reservation couldn't be stored.
+     */
+    public void abandonClaim(long showId, byte[] seats) {
+        ShowSeats seatMap = _seatMaps.get(showId);
+        if (seatMap != null) {
+            seatMap.release(CLAIMED, seats);
+        }
+    }
+
+    /**
+     * Returns the complete seat map of a show, loading it first if this is the first time it is asked for.
+     */
+    public SeatMapDTO getSeatMap(long showId, long concertId, LocalDateTime date) {
+        ShowSeats seatMap = seatMapFor(showId, concertId, date);
+        synchronized (seatMap) {
+            return seatMap.changesSince(-1);
+        }
+    }
+
+    /**
+     * Loads the seat map of a show, along with the holds on it, ahead of the first request for it.
+     */
+    public void preload(long showId, long concertId, LocalDateTime date) {
+        seatMapFor(showId, concertId, date);
+    }
+
+    /**
+     * Resumes response with the changes to a show's seat map since version. If there are none yet, response is
+     * resumed by the next change instead, or with an empty set of changes when it times out. A version the seat map
+     * can't send changes from - too old, or from before the service restarted - is answered with the complete map.
+     */
+    public void waitForChanges(long showId, long concertId, LocalDateTime date, long version, AsyncResponse response) {
+        while (true) {
+            ShowSeats seatMap = seatMapFor(showId, concertId, date);
+            synchronized (seatMap) {
+                if (seatMap._evicted) { // Dropped since it was looked up, so it would see no more changes
+                    continue;
+                }
+                if (version != seatMap._version) {
+                    response.resume(seatMap.changesSince(version));
+                    return;
+                }
+
+                response.setTimeoutHandler(timedOut -> {
+                    synchronized (seatMap) {
+                        seatMap._waiting.remove(timedOut);
+                        timedOut.resume(seatMap.changesSince(version));
+                    }
+                });
+                response.setTimeout(Config.SEAT_MAP_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                seatMap._waiting.add(response);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgets all holds and seat maps. Used when the service is reinitialised along with its database.
+     */
+    public void clear() {
+        _expiries.clear();
+        _holds.clear();
+        _heldSeats.clear();
+        _seatMaps.clear();
+    }
+
+
+    // Private methods
+
+
+    private void track(Hold hold) {
+        if (_holds.putIfAbsent(hold._reservationId, hold) != null) { // Already found when loading a seat map
+            return;
+        }
+        _heldSeats.computeIfAbsent(hold._showId, id -> new AtomicIntegerArray(PriceBand.values().length))
+                .addAndGet(hold._priceBand.ordinal(), SeatBitmap.count(hold._seats));
+        _expiries.add(hold);
+    }
+
+    private void uncount(Hold hold) {
+        _heldSeats.get(hold._showId).addAndGet(hold._priceBand.ordinal(), -SeatBitmap.count(hold._seats));
+    }
+
+    // Makes a hold's seats available again, unless it was booked (or released) first
+    private void release(Hold hold) {
+        if (!_holds.remove(hold._reservationId, hold)) {
+            return;
+        }
+        uncount(hold);
+
+        ShowSeats seatMap = _seatMaps.get(hold._showId);
+        if (seatMap != null) {
+            seatMap.release(hold._reservationId, hold._seats);
+        }
+        WaitlistManager.instance().seatsReleased(hold._showId, hold._priceBand);
+    }
+
+    private void releaseLapsedHolds() {
+        Hold lapsed;
+        while ((lapsed = _expiries.poll()) != null) { // Don't wait for the expiry thread to catch up
+            release(lapsed);
+        }
+    }
+
+    private void expireHolds() {
+        try {
+            while (true) {
+                release(_expiries.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ShowSeats seatMapFor(long showId, long concertId, LocalDateTime date) {
+        ShowSeats seatMap = _seatMaps.computeIfAbsent(showId, id -> new ShowSeats(concertId, date));
+        seatMap._lastUsedMillis = System.currentTimeMillis();
+        boolean loaded = false;
+        synchronized (seatMap) {
+            if (!seatMap._loaded) { // Events for the show are only applied once loaded, so load under the lock
+                load(seatMap, showId, concertId, date);
+                loaded = true;
+            }
+        }
+        if (loaded && _seatMaps.size() > Config.SEAT_MAPS_CACHED) {
+            evictSeatMaps();
+        }
+        return seatMap;
+    }
+
+    // Drops the least recently used seat maps until no more than Config.SEAT_MAPS_CACHED are left, skipping any that
+    // aren't loaded yet or have clients waiting on them. Runs only as a seat map is loaded, so scanning them is cheap
+    // by comparison.
+    private void evictSeatMaps() {
+        Map<Long, Long> lastUsed = new HashMap<>(); // Show id -> when its seat map was last used, as of now
+        for (Map.Entry<Long, ShowSeats> entry : _seatMaps.entrySet()) {
+            lastUsed.put(entry.getKey(), entry.getValue()._lastUsedMillis);
+        }
+        List<Long> showIds = new ArrayList<>(lastUsed.keySet());
+        showIds.sort(Comparator.comparing(lastUsed::get));
+
+        int excess = _seatMaps.size() - Config.SEAT_MAPS_CACHED;
+        for (Iterator<Long> ids = showIds.iterator(); ids.hasNext() && excess > 0; ) {
+            long showId = ids.next();
+            ShowSeats seatMap = _seatMaps.get(showId);
+            if (seatMap == null) {
+                continue;
+            }
+            synchronized (seatMap) {
+                if (seatMap._loaded && seatMap._waiting.isEmpty() && _seatMaps.remove(showId, seatMap)) {
+                    seatMap._evicted = true;
+                    excess--;
+                    _logger.debug("Dropped seat map of show id: {}", showId);
+                }
+            }
+        }
+    }
+
+    private void load(ShowSeats seatMap, long showId, long concertId, LocalDateTime date) {
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            List<SeatClaim> claims = em.createNamedQuery("SeatClaim.findByShow", SeatClaim.class)
+                    .setParameter("concertId", concertId)
+                    .setParameter("date", date)
+                    .getResultList();
+
+            LocalDateTime now = LocalDateTime.now();
+            Map<Long, Set<SeatDTO>> heldSeats = new HashMap<>(); // Reservation id -> seats it holds
+            Map<Long, LocalDateTime> holdExpiries = new HashMap<>();
+
+            for (SeatClaim claim : claims) {
+                SeatDTO seat = SeatMapper.toDto(claim);
+                if (claim.getState() == SeatClaimState.BOOKED) {
+                    seatMap._holders[SeatBitmap.ordinalOf(seat)] = BOOKED;
+                } else if (claim.getExpiry().isAfter(now)) { // Hold that hasn't lapsed yet
+                    seatMap._holders[SeatBitmap.ordinalOf(seat)] = claim.getReservationId();
+                    heldSeats.computeIfAbsent(claim.getReservationId(), id -> new HashSet<>()).add(seat);
+                    holdExpiries.put(claim.getReservationId(), claim.getExpiry());
+                }
+            }
+
+            // Holds made before this instance started need releasing when they lapse, like any other
+            for (Map.Entry<Long, Set<SeatDTO>> held : heldSeats.entrySet()) {
+                SeatRow row = held.getValue().iterator().next().getRow();
+                track(new Hold(held.getKey(), showId, priceBandOf(row), SeatBitmap.encode(held.getValue()), holdExpiries.get(held.getKey())));
+            }
+
+            // Versions carry on from the load time, so they keep increasing across restarts of the service
+            seatMap._version = System.currentTimeMillis();
+            seatMap._loaded = true;
+            _logger.info("Loaded seat map of show id: {} from ({}) seat claims", showId, claims.size());
+        } finally {
+            em.close();
+        }
+    }
+
+    private static PriceBand priceBandOf(SeatRow row) {
+        for (PriceBand band : PriceBand.values()) {
+            if (TheatreLayout.getRowsForPriceBand(band).contains(row)) {
+                return band;
+            }
+        }
+        throw new IllegalArgumentException("Row " + row + " isn't in any price band");
+    }
+
+    /**
+     * Seats held by one reservation, queued to become available again at its expiry.
+     */
+    private static class Hold implements Delayed {
+
+        private final long _reservationId;
+        private final long _showId;
+        private final PriceBand _priceBand;
+        private final byte[] _seats;
+        private final long _expiryMillis;
+
+        Hold(long reservationId, long showId, PriceBand priceBand, byte[] seats, LocalDateTime expiry) {
+            _reservationId = reservationId;
+            _showId = showId;
+            _priceBand = priceBand;
+            _seats = seats;
+            _expiryMillis = expiry.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(_expiryMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(_expiryMillis, ((Hold) other)._expiryMillis);
+        }
+    }
+
+    /**
+     * State of every seat of one show. Guarded by its own lock.
+     */
+    private static class ShowSeats {
+
+        private final long _concertId;
+        private final LocalDateTime _date;
+        private final long[] _holders = new long[SeatBitmap.SEATS]; // Per seat ordinal: 0 if available, BOOKED, CLAIMED, or holding reservation id
+        private final LinkedList<Change> _recentChanges = new LinkedList<>(); // Newest first
+        private final List<AsyncResponse> _waiting = new ArrayList<>();
+        private boolean _loaded;
+        private boolean _evicted; // Dropped from the seat maps kept, so no longer told of changes
+        private long _version;
+        private volatile long _lastUsedMillis;
+
+        ShowSeats(long concertId, LocalDateTime date) {
+            _concertId = concertId;
+            _date = date;
+        }
+
+        // Returns the seats that are taken, claiming all of the seats if there are none
+        synchronized byte[] claim(byte[] seats) {
+            int[] ordinals = BitSet.valueOf(seats).stream().toArray();
+
+            BitSet taken = new BitSet();
+            for (int ordinal : ordinals) {
+                if (_holders[ordinal] != 0) {
+                    taken.set(ordinal);
+                }
+            }
+            if (!taken.isEmpty()) {
+                return taken.toByteArray();
+            }
+
+            BitSet changed = new BitSet();
+            for (int ordinal : ordinals) {
+                _holders[ordinal] = CLAIMED;
+                changed.set(ordinal);
+            }
+            record(changed);
+            return taken.toByteArray();
+        }
+
+        synchronized void hold(long reservationId, byte[] seats) {
+            BitSet changed = new BitSet();
+            for (int ordinal : BitSet.valueOf(seats).stream().toArray()) {
+                if (_holders[ordinal] == 0) {
+                    changed.set(ordinal);
+                }
+                _holders[ordinal] = reservationId;
+            }
+            record(changed);
+        }
+
+        // Booked seats are the reservation's in the database, whoever else may have claimed them here since its hold lapsed
+        synchronized void book(byte[] seats) {
+            BitSet changed = new BitSet();
+            for (int ordinal : BitSet.valueOf(seats).stream().toArray()) {
+                if (_holders[ordinal] == 0) { // Released as the hold lapsed
+                    changed.set(ordinal);
+                }
+                _holders[ordinal] = BOOKED;
+            }
+            record(changed);
+        }
+
+        synchronized void release(long reservationId, byte[] seats) {
+            BitSet changed = new BitSet();
+            for (int ordinal : BitSet.valueOf(seats).stream().toArray()) {
+                if (_holders[ordinal] == reservationId) { // Not taken over by a later reservation since
+                    _holders[ordinal] = 0;
+                    changed.set(ordinal);
+                }
+            }
+            record(changed);
+        }
+
+        // Changes since a version, or the complete seat map if they aren't all still buffered
+        SeatMapDTO changesSince(long version) {
+            byte[] available = new byte[SeatBitmap.BYTES];
+            for (int ordinal = 0; ordinal < _holders.length; ordinal++) {
+                if (_holders[ordinal] == 0) {
+                    available[ordinal >>> 3] |= 1 << (ordinal & 7);
+                }
+            }
+
+            long oldest = _recentChanges.isEmpty() ? _version : _recentChanges.getLast()._version - 1;
+            if (version < oldest || version > _version) { // Can't tell what changed, send everything
+                return new SeatMapDTO(_concertId, _date, _version, null, available);
+            }
+
+            byte[] changed = new byte[SeatBitmap.BYTES];
+            for (Change change : _recentChanges) {
+                if (change._version <= version) {
+                    break;
+                }
+                for (int i = 0; i < changed.length; i++) {
+                    changed[i] |= change._seats[i];
+                }
+            }
+            for (int i = 0; i < available.length; i++) {
+                available[i] &= changed[i];
+            }
+            return new SeatMapDTO(_concertId, _date, _version, changed, available);
+        }
+
+        private void record(BitSet changed) {
+            if (!_loaded || changed.isEmpty()) {
+                return;
+            }
+            _version++;
+            _recentChanges.addFirst(new Change(_version, Arrays.copyOf(changed.toByteArray(), SeatBitmap.BYTES)));
+            if (_recentChanges.size() > RECENT_CHANGES) {
+                _recentChanges.removeLast();
+            }
+
+            // Waiting clients all hold the previous version, so they can share one set of changes
+            if (!_waiting.isEmpty()) {
+                SeatMapDTO changes = changesSince(_version - 1);
+                for (AsyncResponse response : _waiting) {
+                    response.resume(changes);
+                }
+                _waiting.clear();
+            }
+        }
+    }
+
+    /**
+     * Seats whose availability changed at one version of a seat map.
+     */
+    private static class Change {
+
+        private final long _version;
+        private final byte[] _seats;
+
+        Change(long version, byte[] seats) {
+            _version = version;
+            _seats = seats;
+        }
+    }
+}
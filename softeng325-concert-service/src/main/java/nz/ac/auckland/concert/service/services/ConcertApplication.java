@@ -1,5 +1,8 @@
 package nz.ac.auckland.concert.service.services;
 
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.service.domain.ShowInventory;
+
 import javax.persistence.EntityManager;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
@@ -13,30 +16,31 @@ public class ConcertApplication extends Application {
     private Set<Class<?>> _classes = new HashSet<>();
 
     public ConcertApplication() {
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            // Clear database of any previous data from testing
-            em.getTransaction().begin();
-
-            // Delete all existing entities in conflict with multiple tests
-            em.createQuery("DELETE FROM Token").executeUpdate();
-            em.createQuery("DELETE FROM Booking").executeUpdate();
-            em.createQuery("DELETE FROM User").executeUpdate();
-            em.createQuery("DELETE FROM CreditCard").executeUpdate();
-            em.createQuery("DELETE FROM SeatReservation").executeUpdate();
-            em.createQuery("DELETE FROM Reservation").executeUpdate();
-            em.getTransaction().commit();
-        } finally {
-            em.close();
+        WarmUpManager.instance().clear(); // Nothing may still be loading from the data about to be cleared
+        if (!PersistenceManager.instance().isProductionProfile()) { // Production data is kept from one start to the next
+            clearDatabase();
         }
+        AuthenticationManager.instance().clearRevocations();
+        AvailabilityManager.instance().clear();
+        WaitlistManager.instance().clear();
+        AdmissionManager.instance().clear();
 
         _singletons.add(PersistenceManager.instance());
         _singletons.add(SubscriptionManager.instance());
+        _singletons.add(new MetricsFilter());
+        _singletons.add(JaxbContextResolver.instance());
+        if (Boolean.getBoolean(Config.REQUEST_DIAGNOSTICS_PROPERTY)) {
+            _singletons.add(new DiagnosticsFilter());
+        }
         _classes.add(ConcertResource.class);
         _classes.add(PerformerResource.class);
         _classes.add(UserResource.class);
         _classes.add(ReserveResource.class);
         _classes.add(ImageResource.class);
+        _classes.add(MetricsResource.class);
+        _classes.add(HealthResource.class);
+
+        WarmUpManager.instance().start();
     }
 
     @Override
@@ -50,4 +54,31 @@ public class ConcertApplication extends Application {
     }
 
 
+    // Private methods
+
+
+    // Clear database of any previous data from testing
+    private static void clearDatabase() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            // Delete all existing entities in conflict with multiple tests
+            em.createQuery("DELETE FROM Token").executeUpdate();
+            em.createQuery("DELETE FROM SeatClaim").executeUpdate();
+            em.createQuery("DELETE FROM Booking").executeUpdate();
+            em.createQuery("DELETE FROM User").executeUpdate();
+            em.createQuery("DELETE FROM CreditCard").executeUpdate();
+            em.createQuery("DELETE FROM SeatReservation").executeUpdate();
+            em.createQuery("DELETE FROM Reservation").executeUpdate();
+            em.createQuery("UPDATE ShowInventory i SET i.remainingA = :a, i.remainingB = :b, i.remainingC = :c, i.version = i.version + 1")
+                    .setParameter("a", ShowInventory.capacityOf(PriceBand.PriceBandA))
+                    .setParameter("b", ShowInventory.capacityOf(PriceBand.PriceBandB))
+                    .setParameter("c", ShowInventory.capacityOf(PriceBand.PriceBandC))
+                    .executeUpdate(); // Nothing is booked any more
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
 }
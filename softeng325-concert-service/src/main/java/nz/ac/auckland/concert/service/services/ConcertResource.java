@@ -1,11 +1,15 @@
 package nz.ac.auckland.concert.service.services;
 
+import nz.ac.auckland.concert.common.dto.AdmissionDTO;
+import nz.ac.auckland.concert.common.dto.AvailabilityDTO;
 import nz.ac.auckland.concert.common.dto.ConcertDTO;
 import nz.ac.auckland.concert.common.message.Messages;
+import nz.ac.auckland.concert.common.types.PriceBand;
 import nz.ac.auckland.concert.service.domain.Concert;
 import nz.ac.auckland.concert.service.domain.Mappers.ConcertMapper;
 import nz.ac.auckland.concert.service.domain.Performer;
-import nz.ac.auckland.concert.service.domain.Token;
+import nz.ac.auckland.concert.service.domain.Show;
+import nz.ac.auckland.concert.service.domain.ShowInventory;
 import nz.ac.auckland.concert.service.domain.Types.SubscriptionType;
 import nz.ac.auckland.concert.service.domain.User;
 import org.slf4j.Logger;
@@ -21,8 +25,11 @@ import javax.ws.rs.core.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -36,11 +43,13 @@ public class ConcertResource {
 
     private final PersistenceManager _pm; // Persistence
     private final SubscriptionManager _sm; // Subscription management
+    private final AvailabilityManager _availability; // Seats held by pending reservations
 
     public ConcertResource() {
 
         _pm = PersistenceManager.instance();
         _sm = SubscriptionManager.instance();
+        _availability = AvailabilityManager.instance();
     }
 
     /**
@@ -71,6 +80,168 @@ public class ConcertResource {
         }
     }
 
+    /**
+     * Retrieves the number of seats still available in each price band for a concert on one of its dates, so that
+     * clients can tell a band is sold out without attempting a reservation. Availability is worked out from the
+     * show's inventory and the seats currently held by pending reservations; no seats are looked at. No
+     * authentication is required here, and responses may be cached for Config.AVAILABILITY_MAX_AGE_SECONDS.
+     * @param userAgent
+     * @param id
+     * @param date ISO-8601 date and time of the concert, e.g. 2017-02-24T17:00
+     * @return AvailabilityDTO
+     */
+    @GET
+    @Path("/{id}/availability")
+    @Produces(MediaType.APPLICATION_XML)
+    public Response getAvailability(
+            @HeaderParam("user-agent") String userAgent,
+            @PathParam("id") long id,
+            @QueryParam("date") String date) {
+
+        LocalDateTime showDate = parseDate(date);
+        if (showDate == null) { // Date is missing or malformed
+            _logger.info("Denied user agent: {}; With missing or malformed availability date: {}", userAgent, date);
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            ShowInventory inventory = findInventory(id, showDate, em);
+            if (inventory == null) { // No concert was found on this date
+                _logger.info("Not concert(s) with id: {} found on date: {}", id, showDate);
+                return Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build();
+            }
+
+            Map<PriceBand, Integer> remainingSeats = new EnumMap<>(PriceBand.class);
+            for (PriceBand band : PriceBand.values()) {
+                int held = _availability.getHeldSeats(inventory.getShow().getId(), band);
+                remainingSeats.put(band, Math.max(0, inventory.getRemaining(band) - held));
+            }
+
+            CacheControl cacheControl = new CacheControl();
+            cacheControl.setMaxAge(Config.AVAILABILITY_MAX_AGE_SECONDS);
+
+            return Response
+                    .status(Response.Status.OK)
+                    .entity(new AvailabilityDTO(id, showDate, remainingSeats))
+                    .cacheControl(cacheControl)
+                    .build();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Retrieves the availability of every seat for a concert on one of its dates, as a compact SeatMapDTO. The
+     * returned version can be passed to getSeatMapChanges to follow the seat map from then on. No authentication is
+     * required here.
+     * @param userAgent
+     * @param id
+     * @param date ISO-8601 date and time of the concert, e.g. 2017-02-24T17:00
+     * @return SeatMapDTO
+     */
+    @GET
+    @Path("/{id}/seats")
+    @Produces(MediaType.APPLICATION_XML)
+    public Response getSeatMap(
+            @HeaderParam("user-agent") String userAgent,
+            @PathParam("id") long id,
+            @QueryParam("date") String date) {
+
+        LocalDateTime showDate = parseDate(date);
+        if (showDate == null) { // Date is missing or malformed
+            _logger.info("Denied user agent: {}; With missing or malformed seat map date: {}", userAgent, date);
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        Long showId = findShowId(id, showDate);
+        if (showId == null) { // No concert was found on this date
+            _logger.info("Not concert(s) with id: {} found on date: {}", id, showDate);
+            return Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build();
+        }
+
+        return Response
+                .status(Response.Status.OK)
+                .entity(_availability.getSeatMap(showId, id, showDate))
+                .build();
+    }
+
+    /**
+     * Long-polls for changes to the seat map of a concert on one of its dates. If any seats have changed since the
+     * given version the response is resumed at once with them; otherwise it is resumed by the next change, or with no
+     * changes after Config.SEAT_MAP_POLL_TIMEOUT_SECONDS. Either way the returned version is the one to poll from
+     * next. A version that is too old to send changes from is answered with the complete seat map.
+     * @param response
+     * @param userAgent
+     * @param id
+     * @param date ISO-8601 date and time of the concert, e.g. 2017-02-24T17:00
+     * @param since version of the seat map the client already has
+     */
+    @GET
+    @Path("/{id}/seats/changes")
+    @Produces(MediaType.APPLICATION_XML)
+    public void getSeatMapChanges(
+            @Suspended AsyncResponse response,
+            @HeaderParam("user-agent") String userAgent,
+            @PathParam("id") long id,
+            @QueryParam("date") String date,
+            @QueryParam("since") long since) {
+
+        LocalDateTime showDate = parseDate(date);
+        if (showDate == null) { // Date is missing or malformed
+            _logger.info("Denied user agent: {}; With missing or malformed seat map date: {}", userAgent, date);
+            response.resume(Response.status(Response.Status.BAD_REQUEST).build());
+            return;
+        }
+
+        Long showId = findShowId(id, showDate);
+        if (showId == null) { // No concert was found on this date
+            _logger.info("Not concert(s) with id: {} found on date: {}", id, showDate);
+            response.resume(Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build());
+            return;
+        }
+
+        _availability.waitForChanges(showId, id, showDate, since, response);
+    }
+
+    /**
+     * Retrieves the state of the waiting room reservation requests for a concert on one of its dates pass through:
+     * how many requests are queued, the rate they are admitted at, and how many have been admitted and refused.
+     * No authentication is required here.
+     * @param userAgent
+     * @param id
+     * @param date ISO-8601 date and time of the concert, e.g. 2017-02-24T17:00
+     * @return AdmissionDTO
+     */
+    @GET
+    @Path("/{id}/admission")
+    @Produces(MediaType.APPLICATION_XML)
+    public Response getAdmission(
+            @HeaderParam("user-agent") String userAgent,
+            @PathParam("id") long id,
+            @QueryParam("date") String date) {
+
+        LocalDateTime showDate = parseDate(date);
+        if (showDate == null) { // Date is missing or malformed
+            _logger.info("Denied user agent: {}; With missing or malformed admission date: {}", userAgent, date);
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        Long showId = findShowId(id, showDate);
+        if (showId == null) { // No concert was found on this date
+            _logger.info("Not concert(s) with id: {} found on date: {}", id, showDate);
+            return Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build();
+        }
+
+        AdmissionDTO admission = AdmissionManager.instance().getStatistics(showId, id, showDate);
+
+        return Response
+                .status(Response.Status.OK)
+                .entity(admission)
+                .build();
+    }
+
     /**
      * This method allows for multiple concerts to be retrieved in batches up to the clients discretion.
      * No authentication is required here.
@@ -90,12 +261,12 @@ public class ConcertResource {
         EntityManager em = _pm.createEntityManager();
 
         try {
-            TypedQuery<Concert> q = em.createQuery("SELECT c FROM Concert c", Concert.class);
+            TypedQuery<Concert> q = em.createNamedQuery("Concert.findAll", Concert.class);
             List<Concert> concerts = q.setFirstResult(start).setMaxResults(size).getResultList();
 
             List<ConcertDTO> concertDTOs = concerts.stream().map(ConcertMapper::toDto).collect(Collectors.toList());
             GenericEntity<List<ConcertDTO>> entity = new GenericEntity<List<ConcertDTO>>(concertDTOs) {};
-            _logger.info("Retrieved (" + concerts.size() + ") concerts; send to user agent: " + userAgent);
+            _logger.debug("Retrieved ({}) concerts; send to user agent: {}", concerts.size(), userAgent);
 
             return Response
                     .status(Response.Status.OK)
@@ -103,7 +274,7 @@ public class ConcertResource {
                     .entity(entity)
                     .build();
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -126,13 +297,13 @@ public class ConcertResource {
             @HeaderParam("Authorization") String authToken) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         if (concertDTO.getTitle() == null || concertDTO.getDates() == null || concertDTO.getDates().isEmpty() ||
                 concertDTO.getPerformerIds() == null || concertDTO.getPerformerIds().isEmpty()) { // Any necessary fields are missing
-            _logger.info("Denied user agent: " + userAgent + "; With missing field(s) in concertDTO.");
+            _logger.info("Denied user agent: {}; With missing field(s) in concertDTO.", userAgent);
             return Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_WITH_MISSING_FIELDS).build(); // Bad request
         }
 
@@ -143,26 +314,31 @@ public class ConcertResource {
             tx.begin();
 
             if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
             Concert newConcert = ConcertMapper.toDomainModel(concertDTO);
             newConcert = em.merge(newConcert);
+            for (LocalDateTime date : newConcert.getDates()) { // Each date is a show, with all its seats still to sell
+                Show show = new Show(newConcert, date);
+                em.persist(show);
+                em.persist(new ShowInventory(show));
+            }
 
             tx.commit();
-            _logger.info("Successfully created new concert with id: " + newConcert.getId() + ", name: " + newConcert.getTitle() +
-                    " and performers: " + Arrays.toString(newConcert.getPerformers().stream().map(Performer::getName).toArray()));
+            _logger.info("Successfully created new concert with id: {}, name: {} and performers: {}",
+                    newConcert.getId(), newConcert.getTitle(), Arrays.toString(newConcert.getPerformers().stream().map(Performer::getName).toArray()));
 
             _sm.notifySubscribers(SubscriptionType.CONCERT, newConcert, _uri.getBaseUri() + "concerts/" + newConcert.getId());
-            _logger.info("Subscribers notified of new concert: " + newConcert.getTitle());
+            _logger.info("Subscribers notified of new concert: {}", newConcert.getTitle());
 
             return Response
                     .status(Response.Status.OK)
                     .location(new URI(_uri.getBaseUri() + "concerts/" + newConcert.getId()))
                     .build();
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -185,7 +361,7 @@ public class ConcertResource {
             @CookieParam("latest-news") String newsCookie) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             response.resume(Messages.UNAUTHENTICATED_REQUEST);
         }
 
@@ -198,14 +374,43 @@ public class ConcertResource {
     // Private methods
 
 
-    private boolean tokenIsValid(String authToken, EntityManager em) {
+    // Returns null if date is missing or isn't an ISO-8601 date and time
+    private LocalDateTime parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 
-        // Retrieve corresponding token form the database
-        TypedQuery<Token> tokenQuery = em.createQuery("SELECT t FROM Token t WHERE t.token = :token", Token.class);
-        tokenQuery.setParameter("token", authToken);
-        Token token = tokenQuery.getSingleResult();
+    private ShowInventory findInventory(long concertId, LocalDateTime date, EntityManager em) {
+        TypedQuery<ShowInventory> inventoryQuery = em.createNamedQuery("ShowInventory.findByShow", ShowInventory.class);
+        inventoryQuery.setParameter("id", concertId);
+        inventoryQuery.setParameter("date", date);
+        List<ShowInventory> inventories = inventoryQuery.getResultList();
+        return inventories.isEmpty() ? null : inventories.get(0);
+    }
+
+    private Long findShowId(long concertId, LocalDateTime date) {
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            TypedQuery<Long> showQuery = em.createNamedQuery("Show.findIdByConcertAndDate", Long.class);
+            showQuery.setParameter("id", concertId);
+            showQuery.setParameter("date", date);
+            List<Long> showIds = showQuery.getResultList();
+            return showIds.isEmpty() ? null : showIds.get(0);
+        } finally {
+            em.close();
+        }
+    }
+
+    private boolean tokenIsValid(String authToken, EntityManager em) {
 
-        // True if token isn't null and its expiry time is after the current time
-        return token != null && !LocalDateTime.now().isAfter(token.getExpiry());
+        // True if the token was issued by this service, hasn't expired and hasn't been revoked
+        return AuthenticationManager.instance().authenticate(authToken, em) != null;
     }
 }
\ No newline at end of file
@@ -9,4 +9,67 @@ public class Config {
     // Name of the S3 bucket that stores images.
     public  static final String AWS_BUCKET = "concert2.aucklanduni.ac.nz";
 
+    // Authorization tokens. Signed tokens are checked in-process; set false to store and look up tokens in the database.
+    public static final boolean SIGNED_AUTHENTICATION_TOKENS = true;
+    public static final long AUTHENTICATION_TIMEOUT_MINUTES = 5;
+
+    // Secret from which token signing keys are derived. Instances sharing a secret accept each other's tokens; when
+    // null, a random secret is generated on start-up.
+    public static final String AUTHENTICATION_SIGNING_SECRET = null;
+    public static final long SIGNING_KEY_ROTATION_MINUTES = 60;
+    public static final int SIGNING_KEYS_RETAINED = 2; // Current key plus the one before it
+
+    // Store a reservation's seats as a bitmap column on RESERVATIONS instead of one SEAT_RESERVATIONS row per seat.
+    // When enabled, reservations already stored as rows are converted on start-up.
+    public static final boolean BITMAP_SEAT_STORAGE = true;
+
+    // How long clients may cache a show's seat availability. Kept short, as availability changes with every reservation.
+    public static final int AVAILABILITY_MAX_AGE_SECONDS = 2;
+
+    // How long a request for seat map changes waits for one before it is answered with no changes.
+    public static final long SEAT_MAP_POLL_TIMEOUT_SECONDS = 30;
+
+    // Most shows whose seat maps are kept in memory. Beyond that, the least recently used are dropped as others load.
+    public static final int SEAT_MAPS_CACHED = 1000;
+
+    // How long a waitlisted reservation request waits for seats before it is answered with 408 (Request Timeout), and
+    // how many requests one user may have waiting at once.
+    public static final long WAITLIST_TIMEOUT_SECONDS = 600;
+    public static final int WAITLIST_ENTRIES_PER_USER = 3;
+
+    // Admission control for reservation requests, per show. Requests are let through at ADMISSION_RATE_PER_SECOND,
+    // with bursts of up to ADMISSION_BURST. Beyond that, requests are given a ticket for a later turn, until
+    // ADMISSION_QUEUE_CAPACITY turns are taken and further requests are refused. A ticket that isn't used within
+    // ADMISSION_TICKET_GRACE_SECONDS of its turn lapses. At most ADMISSION_MAX_IN_FLIGHT admitted requests are in
+    // progress at once. Bursts and requests in flight are kept well below the connection pool size, so that other
+    // requests seldom wait for a connection.
+    public static final int ADMISSION_RATE_PER_SECOND = 50;
+    public static final int ADMISSION_BURST = 10;
+    public static final int ADMISSION_QUEUE_CAPACITY = 5000;
+    public static final long ADMISSION_TICKET_GRACE_SECONDS = 30;
+    public static final int ADMISSION_MAX_IN_FLIGHT = 10;
+
+    // Database connections (see WaitingConnectionProvider). Once all are in use, a request for another waits up to
+    // CONNECTION_WAIT_SECONDS for one to be returned before it fails.
+    public static final int CONNECTION_POOL_SIZE = 20;
+    public static final long CONNECTION_WAIT_SECONDS = 30;
+
+    // Warm-up on start-up, before the service reports ready at /services/health/ready. The first WARM_UP_CATALOGUE_SIZE
+    // concerts and performers are read and marshalled as a request would, and the seat maps of the WARM_UP_HOT_SHOWS shows
+    // with the fewest seats left are loaded.
+    public static final int WARM_UP_CATALOGUE_SIZE = 1000;
+    public static final int WARM_UP_HOT_SHOWS = 50;
+
+    // Persistence profile, chosen with -Dconcert.persistence=production. By default the schema is dropped and re-created,
+    // and seeded from db-init.sql, on start-up, and all users, reservations and bookings are then deleted, so every start
+    // (and every test) sees the same data. The production profile keeps the database as it is: the schema is created and
+    // seeded only if the database has none, and is otherwise migrated and validated against the mapping.
+    public static final String PERSISTENCE_PROFILE_PROPERTY = "concert.persistence";
+    public static final String PRODUCTION_PERSISTENCE_PROFILE = "production";
+
+    // Per-request Hibernate diagnostics (see DiagnosticsFilter), off unless the service is started with
+    // -Dconcert.diagnostics=true. Requests taking longer than SLOW_REQUEST_MILLIS are logged with their slowest statements.
+    public static final String REQUEST_DIAGNOSTICS_PROPERTY = "concert.diagnostics";
+    public static final long SLOW_REQUEST_MILLIS = 500;
+
 }
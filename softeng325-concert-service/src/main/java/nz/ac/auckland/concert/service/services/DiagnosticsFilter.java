@@ -0,0 +1,96 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects RequestDiagnostics for every request, when enabled by the Config.REQUEST_DIAGNOSTICS_PROPERTY system
+ * property, to show up N+1 loads and other surprising database work. Each response gets a Server-Timing header with
+ * the time its request spent running statements and flushing, and how many entities and lazy collections it loaded.
+ * Requests taking longer than Config.SLOW_REQUEST_MILLIS are logged with their slowest statements. The number of
+ * statements, entity loads and collection fetches of each resource method are added up at /services/metrics.
+ *
+ * Only work done on the thread handling a request is counted, so for asynchronous requests only the work done before
+ * the request is suspended shows up.
+ */
+@Provider
+public class DiagnosticsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger _logger = LoggerFactory.getLogger(DiagnosticsFilter.class);
+
+    private static final String DIAGNOSTICS_PROPERTY = DiagnosticsFilter.class.getName() + ".diagnostics";
+    private static final String ENDPOINT_PROPERTY = DiagnosticsFilter.class.getName() + ".endpoint";
+
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    @Context // Resource method the current request was matched to
+    private ResourceInfo _resourceInfo;
+
+    private final Map<Method, Endpoint> _endpoints = new ConcurrentHashMap<>(); // Totals of each resource method
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Method method = _resourceInfo.getResourceMethod();
+        if (method == null) { // Not matched to a resource method
+            return;
+        }
+        requestContext.setProperty(ENDPOINT_PROPERTY,
+                _endpoints.computeIfAbsent(method, key -> new Endpoint(_resourceInfo.getResourceClass().getSimpleName() + "." + key.getName())));
+        requestContext.setProperty(DIAGNOSTICS_PROPERTY, RequestDiagnostics.begin());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        RequestDiagnostics diagnostics = (RequestDiagnostics) requestContext.getProperty(DIAGNOSTICS_PROPERTY);
+        if (diagnostics == null) {
+            return;
+        }
+        diagnostics.detach(); // A resumed request may be answered from another request's thread
+
+        Endpoint endpoint = (Endpoint) requestContext.getProperty(ENDPOINT_PROPERTY);
+        endpoint._statements.add(diagnostics.getStatements());
+        endpoint._entityLoads.add(diagnostics.getEntityLoads());
+        endpoint._collectionFetches.add(diagnostics.getCollectionFetches());
+
+        responseContext.getHeaders().add(SERVER_TIMING_HEADER, diagnostics.toServerTiming());
+
+        long elapsedMillis = diagnostics.getElapsedMillis();
+        if (elapsedMillis > Config.SLOW_REQUEST_MILLIS) {
+            _logger.info("Slow request: {} took ({}) ms; {}; Slowest statements:{}",
+                    endpoint._method, elapsedMillis, diagnostics.toServerTiming(), diagnostics.describeSlowestStatements());
+        }
+    }
+
+    /**
+     * Totals of one resource method, looked up once so that adding to them needs no lookups.
+     */
+    private static class Endpoint {
+
+        private final String _method;
+        private final MetricsManager.Counter _statements;
+        private final MetricsManager.Counter _entityLoads;
+        private final MetricsManager.Counter _collectionFetches;
+
+        Endpoint(String method) {
+            MetricsManager metrics = MetricsManager.instance();
+            _method = method;
+            _statements = metrics.counter("concert_http_request_statements_total",
+                    "SQL statements run while handling requests.", "method", method);
+            _entityLoads = metrics.counter("concert_http_request_entity_loads_total",
+                    "Entities loaded while handling requests.", "method", method);
+            _collectionFetches = metrics.counter("concert_http_request_collection_fetches_total",
+                    "Lazy collections fetched while handling requests.", "method", method);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Adds event listeners that count the entities loaded and lazy collections fetched by the current request, if its
+ * diagnostics are being collected. Hibernate finds the integrator through
+ * META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class DiagnosticsIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+
+        listeners.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> {
+            RequestDiagnostics diagnostics = RequestDiagnostics.current();
+            if (diagnostics != null) {
+                diagnostics.entityLoaded();
+            }
+        });
+        listeners.appendListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) event -> {
+            RequestDiagnostics diagnostics = RequestDiagnostics.current();
+            if (diagnostics != null) {
+                diagnostics.collectionFetched();
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {}
+}
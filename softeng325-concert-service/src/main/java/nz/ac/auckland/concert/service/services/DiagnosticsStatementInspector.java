@@ -0,0 +1,20 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Shown every SQL statement before Hibernate prepares it, as set by hibernate.session_factory.statement_inspector in
+ * persistence.xml. Notes the statement in the current request's diagnostics, if any, so that slow statements can be
+ * reported with their SQL. Statements are passed on unchanged.
+ */
+public class DiagnosticsStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestDiagnostics diagnostics = RequestDiagnostics.current();
+        if (diagnostics != null) {
+            diagnostics.statementPrepared(sql);
+        }
+        return sql;
+    }
+}
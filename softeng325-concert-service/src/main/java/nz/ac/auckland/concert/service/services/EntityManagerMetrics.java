@@ -0,0 +1,101 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Hibernate session listener that keeps count of EntityManagers and times the JDBC work they do. Hibernate attaches a
+ * new instance to every session it opens, as set by hibernate.session.events.auto in persistence.xml, and calls end()
+ * when the session is closed. The PersistenceManager reports how many are open at a time. Statements and flushes are
+ * also added to the current request's diagnostics, if any.
+ *
+ * A session is only used by one thread at a time, so its listener needs no synchronisation of its own.
+ */
+public class EntityManagerMetrics extends BaseSessionEventListener {
+
+    private static final String JDBC = "concert_jdbc_seconds";
+    private static final String JDBC_HELP = "Time spent on JDBC calls, by kind of call.";
+
+    private static final MetricsManager.Counter _opened = MetricsManager.instance().counter(
+            "concert_entity_managers_opened_total", "EntityManagers opened.");
+    private static final MetricsManager.Counter _closed = MetricsManager.instance().counter(
+            "concert_entity_managers_closed_total", "EntityManagers closed.");
+
+    private static final MetricsManager.Timer _connectionTimer = MetricsManager.instance().timer(JDBC, JDBC_HELP, "call", "acquire_connection");
+    private static final MetricsManager.Timer _statementTimer = MetricsManager.instance().timer(JDBC, JDBC_HELP, "call", "execute_statement");
+    private static final MetricsManager.Timer _batchTimer = MetricsManager.instance().timer(JDBC, JDBC_HELP, "call", "execute_batch");
+
+    private long _connectionStart;
+    private long _statementStart;
+    private long _batchStart;
+    private long _flushStart;
+
+    public EntityManagerMetrics() {
+        _opened.increment();
+    }
+
+    /**
+     * Returns the number of EntityManagers that are open right now.
+     */
+    public static long getOpenCount() {
+        return _opened.getCount() - _closed.getCount();
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        _connectionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        _connectionTimer.recordSince(_connectionStart);
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        _statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        long nanos = System.nanoTime() - _statementStart;
+        _statementTimer.record(nanos);
+        executed(nanos);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        _batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        long nanos = System.nanoTime() - _batchStart;
+        _batchTimer.record(nanos);
+        executed(nanos);
+    }
+
+    @Override
+    public void flushStart() {
+        _flushStart = System.nanoTime();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        RequestDiagnostics diagnostics = RequestDiagnostics.current();
+        if (diagnostics != null) {
+            diagnostics.flushed(System.nanoTime() - _flushStart);
+        }
+    }
+
+    @Override
+    public void end() {
+        _closed.increment();
+    }
+
+    private static void executed(long nanos) {
+        RequestDiagnostics diagnostics = RequestDiagnostics.current();
+        if (diagnostics != null) {
+            diagnostics.statementExecuted(nanos);
+        }
+    }
+}
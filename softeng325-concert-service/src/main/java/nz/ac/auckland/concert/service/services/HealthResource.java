@@ -0,0 +1,35 @@
+package nz.ac.auckland.concert.service.services;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Reports the health of the service, for load balancers to poll. No authentication is required.
+ */
+@Path("/health")
+public class HealthResource {
+
+    private final WarmUpManager _warmUp;
+
+    public HealthResource() {
+
+        _warmUp = WarmUpManager.instance();
+    }
+
+    /**
+     * Returns 200 OK once the service has warmed up after starting (see WarmUpManager), and 503 Service Unavailable
+     * until then, so that no traffic is sent its way while its caches are cold.
+     */
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getReadiness() {
+        if (!_warmUp.isReady()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("warming up").build();
+        }
+        return Response.status(Response.Status.OK).entity("ready").build();
+    }
+}
@@ -6,20 +6,19 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.util.IOUtils;
 import nz.ac.auckland.concert.common.dto.PerformerDTO;
 import nz.ac.auckland.concert.common.message.Messages;
 import nz.ac.auckland.concert.service.domain.Mappers.PerformerMapper;
 import nz.ac.auckland.concert.service.domain.Performer;
-import nz.ac.auckland.concert.service.domain.Token;
 import nz.ac.auckland.concert.service.domain.Types.SubscriptionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
-import javax.persistence.TypedQuery;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
@@ -27,7 +26,8 @@ import javax.ws.rs.core.*;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Path("/images")
 public class ImageResource {
@@ -53,11 +53,21 @@ public class ImageResource {
         _sm = SubscriptionManager.instance();
     }
 
+    /**
+     * Retrieves an image by name. Each image is served with its ETag, and a request whose If-None-Match header
+     * still matches that ETag is answered with 304 Not Modified without downloading the image again. The client's
+     * ETags are passed on to S3 as the condition of a single GetObject, so either way S3 is asked only once.
+     * @param userAgent
+     * @param ifNoneMatch ETags of the client's copies, if any
+     * @param imageName
+     * @return image bytes
+     */
     @GET
     @Produces("image/png")
     @Path("/{imageName}")
     public Response getImage(
             @HeaderParam("user-agent") String userAgent,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
             @PathParam("imageName") String imageName) {
 
         try {
@@ -68,13 +78,31 @@ public class ImageResource {
                     .withCredentials(new AWSStaticCredentialsProvider(awsCredentials))
                     .build();
 
-            S3Object object = s3.getObject(AWS_BUCKET, imageName);
-            byte[] byteArray = IOUtils.toByteArray(object.getObjectContent());
+            // S3 only sends the image if it no longer matches the client's copy
+            List<String> clientEtags = etagsOf(ifNoneMatch);
+            GetObjectRequest objectRequest = new GetObjectRequest(AWS_BUCKET, imageName);
+            for (String clientEtag : clientEtags) {
+                objectRequest = objectRequest.withNonmatchingETagConstraint(clientEtag);
+            }
+
+            S3Object object = s3.getObject(objectRequest);
+            if (object == null) { // One of the client's ETags is current
+                _logger.debug("Image {} unchanged; Reply not modified to user agent: {}", imageName, userAgent);
+                return clientEtags.size() == 1
+                        ? Response.notModified(new EntityTag(clientEtags.get(0))).build()
+                        : Response.notModified().build();
+            }
+
+            byte[] byteArray;
+            try (S3Object image = object) {
+                byteArray = IOUtils.toByteArray(image.getObjectContent());
+            }
 
-            _logger.info("Successfully downloaded " + imageName + " from AWS.");
+            _logger.info("Successfully downloaded {} from AWS.", imageName);
 
             return Response
                     .status(Response.Status.OK)
+                    .tag(new EntityTag(object.getObjectMetadata().getETag()))
                     .entity((StreamingOutput) outputStream -> {
                         outputStream.write(byteArray);
                         outputStream.flush();
@@ -102,12 +130,12 @@ public class ImageResource {
             @HeaderParam("user-agent") String userAgent,
             @HeaderParam("Authorization") String authToken) {
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         if (performerDTO.getImageName() == null || performerDTO.getId() == null) { // Any necessary fields are missing
-            _logger.info("Denied user agent: " + userAgent + "; With missing field(s) in performerDTO.");
+            _logger.info("Denied user agent: {}; With missing field(s) in performerDTO.", userAgent);
             return Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_WITH_MISSING_FIELDS).build(); // Bad request
         }
 
@@ -118,7 +146,7 @@ public class ImageResource {
             tx.begin();
 
             if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
@@ -127,12 +155,12 @@ public class ImageResource {
 
             tx.commit();
 
-            _logger.info("Successfully added image " + performer.getImageName() + " to performer " + performer.getName() + " with id (" + performer.getId() + ")");
+            _logger.info("Successfully added image {} to performer {} with id ({})", performer.getImageName(), performer.getName(), performer.getId());
             PerformerDTO returnPerformerDto = PerformerMapper.toDto(performer);
 
             _sm.notifySubscribers(SubscriptionType.PERFORMER_IMAGE, performer, _uri.getBaseUri() + "images/" + performer.getImageName());
             _sm.notifySubscribersWithId(SubscriptionType.PERFORMER_IMAGE, performer, performer.getId(), _uri.getBaseUri() + "images/" + performer.getImageName());
-            _logger.info("Subscribers notified of new image " + performer.getImageName() + " for performer " + performer.getName());
+            _logger.info("Subscribers notified of new image {} for performer {}", performer.getImageName(), performer.getName());
 
             return Response
                     .status(Response.Status.OK)
@@ -140,7 +168,7 @@ public class ImageResource {
                     .entity(returnPerformerDto)
                     .build();
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -163,7 +191,7 @@ public class ImageResource {
             @CookieParam("latest-news") String newsCookie) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             response.resume(Messages.UNAUTHENTICATED_REQUEST);
         }
 
@@ -190,27 +218,43 @@ public class ImageResource {
             @CookieParam("latest-news") String newsCookie) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             response.resume(Messages.UNAUTHENTICATED_REQUEST);
         }
 
         // Add AsyncResponse to subscribers for subscription type
         _sm.addSubscriptionWithId(SubscriptionType.PERFORMER_IMAGE, response, Long.decode(performerId), newsCookie);
-        _logger.info("Subscriber added for new images for performer with id (" + performerId + ")");
+        _logger.info("Subscriber added for new images for performer with id ({})", performerId);
     }
 
 
     // Private Methods
 
 
-    private boolean tokenIsValid(String authToken, EntityManager em) {
+    // Values of the entity tags in an If-None-Match header, without quotes or weak markers
+    private static List<String> etagsOf(String ifNoneMatch) {
+        List<String> etags = new ArrayList<>();
+        if (ifNoneMatch == null) {
+            return etags;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String etag = tag.trim();
+            if (etag.startsWith("W/")) {
+                etag = etag.substring(2);
+            }
+            if (etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"")) {
+                etag = etag.substring(1, etag.length() - 1);
+            }
+            if (!etag.isEmpty()) {
+                etags.add(etag);
+            }
+        }
+        return etags;
+    }
 
-        // Retrieve corresponding token form the database
-        TypedQuery<Token> tokenQuery = em.createQuery("SELECT t FROM Token t WHERE t.token = :token", Token.class);
-        tokenQuery.setParameter("token", authToken);
-        Token token = tokenQuery.getSingleResult();
+    private boolean tokenIsValid(String authToken, EntityManager em) {
 
-        // True if token isn't null and its expiry time is after the current time
-        return token != null && !LocalDateTime.now().isAfter(token.getExpiry());
+        // True if the token was issued by this service, hasn't expired and hasn't been revoked
+        return AuthenticationManager.instance().authenticate(authToken, em) != null;
     }
 }
@@ -0,0 +1,71 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.common.dto.*;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Singleton class that gives RESTEasy one JAXBContext for all of the DTOs, in place of the context it would otherwise
+ * create for each DTO class the first time one is sent or received. The context is created once, when it is first
+ * asked for - normally by WarmUpManager before the service reports ready - so no request pays for it.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_XML)
+public class JaxbContextResolver implements ContextResolver<JAXBContext> {
+
+    private static JaxbContextResolver _instance = null;
+
+    private static final Class<?>[] DTO_CLASSES = {
+            AdmissionDTO.class, AvailabilityDTO.class, BookingDTO.class, ConcertDTO.class, CreditCardDTO.class,
+            NewsItemDTO.class, PerformerDTO.class, ReservationDTO.class, ReservationRequestDTO.class,
+            SeatConflictDTO.class, SeatDTO.class, SeatMapDTO.class, UserDTO.class
+    };
+
+    private final Set<Class<?>> _dtoClasses = new HashSet<>(Arrays.asList(DTO_CLASSES));
+    private volatile JAXBContext _context;
+
+    protected JaxbContextResolver() {}
+
+    public static JaxbContextResolver instance() {
+        if (_instance == null) {
+            _instance = new JaxbContextResolver();
+        }
+        return _instance;
+    }
+
+    /**
+     * Returns the context of all DTOs if type is one of them, or null to leave any other type to RESTEasy.
+     */
+    @Override
+    public JAXBContext getContext(Class<?> type) {
+        return _dtoClasses.contains(type) ? getDtoContext() : null;
+    }
+
+    /**
+     * Returns the context of all DTOs, creating it the first time.
+     */
+    public JAXBContext getDtoContext() {
+        JAXBContext context = _context;
+        if (context == null) {
+            synchronized (this) {
+                if (_context == null) {
+                    try {
+                        _context = JAXBContext.newInstance(DTO_CLASSES);
+                    } catch (JAXBException e) {
+                        throw new IllegalStateException("Could not create JAXBContext for DTOs", e);
+                    }
+                }
+                context = _context;
+            }
+        }
+        return context;
+    }
+}
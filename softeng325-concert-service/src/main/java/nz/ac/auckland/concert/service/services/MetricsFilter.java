@@ -0,0 +1,103 @@
+package nz.ac.auckland.concert.service.services;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records, for every resource method, how long requests take and how they were answered. A request is timed from
+ * once it has been matched to a resource method until its response entity has been written, so the time includes
+ * marshalling the entity (which is also timed on its own) and, for asynchronous requests, the time spent suspended.
+ * Responses are counted by status code. The MetricsManager serves the figures at /services/metrics.
+ *
+ * Requests that fail with an exception no ExceptionMapper handles are answered by the servlet container rather than
+ * through the response filters, so they go unrecorded here; they are logged as errors by RESTEasy.
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String ENDPOINT_PROPERTY = MetricsFilter.class.getName() + ".endpoint";
+    private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+
+    @Context // Resource method the current request was matched to
+    private ResourceInfo _resourceInfo;
+
+    private final Map<Method, Endpoint> _endpoints = new ConcurrentHashMap<>(); // Metrics of each resource method
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Method method = _resourceInfo.getResourceMethod();
+        if (method == null) { // Not matched to a resource method
+            return;
+        }
+        requestContext.setProperty(ENDPOINT_PROPERTY,
+                _endpoints.computeIfAbsent(method, key -> new Endpoint(_resourceInfo.getResourceClass().getSimpleName() + "." + key.getName())));
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Endpoint endpoint = (Endpoint) requestContext.getProperty(ENDPOINT_PROPERTY);
+        if (endpoint == null) {
+            return;
+        }
+        endpoint.responded(responseContext.getStatus());
+        if (!responseContext.hasEntity()) { // Otherwise timed once the entity is written
+            endpoint._duration.recordSince((Long) requestContext.getProperty(START_PROPERTY));
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Endpoint endpoint = (Endpoint) context.getProperty(ENDPOINT_PROPERTY);
+        if (endpoint == null) {
+            context.proceed();
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            context.proceed();
+        } finally {
+            endpoint._serialization.recordSince(start);
+            endpoint._duration.recordSince((Long) context.getProperty(START_PROPERTY));
+        }
+    }
+
+    /**
+     * Metrics of one resource method, looked up once so that recording needs no lookups.
+     */
+    private static class Endpoint {
+
+        private static final String DURATION = "concert_http_request_duration_seconds";
+        private static final String SERIALIZATION = "concert_http_response_serialization_seconds";
+        private static final String RESPONSES = "concert_http_responses_total";
+
+        private final String _method;
+        private final MetricsManager.Timer _duration;
+        private final MetricsManager.Timer _serialization;
+        private final Map<Integer, MetricsManager.Counter> _responses = new ConcurrentHashMap<>(); // Status -> count
+
+        Endpoint(String method) {
+            MetricsManager metrics = MetricsManager.instance();
+            _method = method;
+            _duration = metrics.timer(DURATION, "Time taken to handle requests, including writing the response.", "method", method);
+            _serialization = metrics.timer(SERIALIZATION, "Time taken to marshal response entities.", "method", method);
+        }
+
+        void responded(int status) {
+            _responses.computeIfAbsent(status, key -> MetricsManager.instance().counter(
+                    RESPONSES, "Responses sent, by status code.", "method", _method, "status", Integer.toString(key))).increment();
+        }
+    }
+}
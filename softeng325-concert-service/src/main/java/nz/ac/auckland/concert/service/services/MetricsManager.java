@@ -0,0 +1,258 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Singleton class that keeps the service's metrics - timers, counters and gauges - and renders them in the Prometheus
+ * text exposition format, as served at /services/metrics.
+ *
+ * Metrics are grouped into families by name, each member of a family told apart by its labels. Timers record into an
+ * HdrHistogram Recorder, which writers update without taking locks; a scrape swaps the Recorder's interval histogram
+ * out and adds it to the timer's running total, from which the quantiles are reported. Counters are LongAdders.
+ * Gauges are read when scraped. Metrics are kept for the lifetime of the service, as Prometheus expects, unless
+ * removed along with whatever they report on.
+ *
+ * Looking a metric up builds its label string, so callers on a hot path should look their metrics up once and keep
+ * hold of them.
+ */
+public class MetricsManager {
+
+    private static MetricsManager _instance = null;
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+
+    private final Map<String, Family> _families = new ConcurrentSkipListMap<>(); // Name -> family, in name order
+
+    protected MetricsManager() {}
+
+    public static MetricsManager instance() {
+        if (_instance == null) {
+            _instance = new MetricsManager();
+        }
+        return _instance;
+    }
+
+    /**
+     * Returns the timer with the given name and labels, creating it if need be.
+     * @param name metric name, ending in _seconds
+     * @param help description of the metric family
+     * @param labels label names and values, alternately
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) familyOf(name, help, "summary").series(labels, Timer::new);
+    }
+
+    /**
+     * Returns the counter with the given name and labels, creating it if need be.
+     * @param name metric name, ending in _total
+     * @param help description of the metric family
+     * @param labels label names and values, alternately
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) familyOf(name, help, "counter").series(labels, Counter::new);
+    }
+
+    /**
+     * Registers a gauge, read each time the metrics are scraped. Replaces any gauge already registered under the
+     * same name and labels.
+     * @param name metric name
+     * @param help description of the metric family
+     * @param value supplies the gauge's current value
+     * @param labels label names and values, alternately
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        familyOf(name, help, "gauge")._series.put(labelsOf(labels), new Gauge(value));
+    }
+
+    /**
+     * Removes the metric with the given name and labels, if there is one. Its family is kept, even if left empty.
+     * @param name metric name
+     * @param labels label names and values, alternately
+     */
+    public void remove(String name, String... labels) {
+        Family family = _families.get(name);
+        if (family != null) {
+            family._series.remove(labelsOf(labels));
+        }
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder();
+        for (Family family : _families.values()) {
+            text.append("# HELP ").append(family._name).append(' ').append(family._help).append('\n');
+            text.append("# TYPE ").append(family._name).append(' ').append(family._type).append('\n');
+            for (Map.Entry<String, Metric> series : family._series.entrySet()) {
+                series.getValue().write(family._name, series.getKey(), text);
+            }
+        }
+        return text.toString();
+    }
+
+
+    // Private methods
+
+
+    private Family familyOf(String name, String help, String type) {
+        Family family = _families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (!family._type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family._type + ", not a " + type);
+        }
+        return family;
+    }
+
+    // Label names and values as they appear between the braces, e.g. method="getConcerts",status="200"
+    private static String labelsOf(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                if (c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append('"');
+        }
+        return text.toString();
+    }
+
+    // A sample line, e.g. name{labels} value
+    private static void writeSample(StringBuilder text, String name, String labels, String value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        return (labels.isEmpty() ? "" : labels + ",") + name + "=\"" + value + "\"";
+    }
+
+    /**
+     * Times an operation. Durations are recorded to the microsecond, to 3 significant digits.
+     */
+    public static class Timer implements Metric {
+
+        private final Recorder _recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram _total = new Histogram(SIGNIFICANT_DIGITS); // Everything recorded up to the last scrape
+        private final LongAdder _sumNanos = new LongAdder();
+        private Histogram _interval; // Recycled by the Recorder on each scrape
+
+        private Timer() {}
+
+        /**
+         * Records the time since startNanos, as returned by System.nanoTime().
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long nanos) {
+            _recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+            _sumNanos.add(nanos);
+        }
+
+        @Override
+        public synchronized void write(String name, String labels, StringBuilder text) {
+            _interval = _recorder.getIntervalHistogram(_interval);
+            _total.add(_interval);
+
+            for (double quantile : QUANTILES) {
+                double seconds = _total.getValueAtPercentile(quantile * 100) / MICROS_PER_SECOND;
+                writeSample(text, name, withLabel(labels, "quantile", Double.toString(quantile)), Double.toString(seconds));
+            }
+            writeSample(text, name + "_sum", labels, Double.toString(_sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1)));
+            writeSample(text, name + "_count", labels, Long.toString(_total.getTotalCount()));
+        }
+    }
+
+    /**
+     * Counts events.
+     */
+    public static class Counter implements Metric {
+
+        private final LongAdder _count = new LongAdder();
+
+        private Counter() {}
+
+        public void increment() {
+            _count.increment();
+        }
+
+        public void add(long amount) {
+            _count.add(amount);
+        }
+
+        public long getCount() {
+            return _count.sum();
+        }
+
+        @Override
+        public void write(String name, String labels, StringBuilder text) {
+            writeSample(text, name, labels, Long.toString(_count.sum()));
+        }
+    }
+
+    private static class Gauge implements Metric {
+
+        private final LongSupplier _value;
+
+        Gauge(LongSupplier value) {
+            _value = value;
+        }
+
+        @Override
+        public void write(String name, String labels, StringBuilder text) {
+            writeSample(text, name, labels, Long.toString(_value.getAsLong()));
+        }
+    }
+
+    private interface Metric {
+
+        void write(String name, String labels, StringBuilder text);
+    }
+
+    /**
+     * Metrics sharing a name, told apart by their labels.
+     */
+    private static class Family {
+
+        private final String _name;
+        private final String _help;
+        private final String _type;
+        private final Map<String, Metric> _series = new ConcurrentSkipListMap<>(); // Labels -> metric, in label order
+
+        Family(String name, String help, String type) {
+            _name = name;
+            _help = help;
+            _type = type;
+        }
+
+        Metric series(String[] labels, Supplier<Metric> create) {
+            return _series.computeIfAbsent(labelsOf(labels), key -> create.get());
+        }
+    }
+}
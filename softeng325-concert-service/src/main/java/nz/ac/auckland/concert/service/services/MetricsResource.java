@@ -0,0 +1,30 @@
+package nz.ac.auckland.concert.service.services;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * Serves the service's metrics to a Prometheus server, or anyone else who asks. See MetricsManager for what is kept.
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsManager _metrics; // Metrics kept by the service
+
+    public MetricsResource() {
+
+        _metrics = MetricsManager.instance();
+    }
+
+    /**
+     * Returns every metric in the Prometheus text exposition format.
+     */
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public String getMetrics() {
+        return _metrics.scrape();
+    }
+}
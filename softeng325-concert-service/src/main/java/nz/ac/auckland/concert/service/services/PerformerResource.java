@@ -4,7 +4,6 @@ import nz.ac.auckland.concert.common.dto.PerformerDTO;
 import nz.ac.auckland.concert.common.message.Messages;
 import nz.ac.auckland.concert.service.domain.Mappers.PerformerMapper;
 import nz.ac.auckland.concert.service.domain.Performer;
-import nz.ac.auckland.concert.service.domain.Token;
 import nz.ac.auckland.concert.service.domain.Types.SubscriptionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +17,6 @@ import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -86,12 +84,12 @@ public class PerformerResource {
         EntityManager em = _pm.createEntityManager();
 
         try {
-            TypedQuery<Performer> q = em.createQuery("SELECT p FROM Performer p", Performer.class);
+            TypedQuery<Performer> q = em.createNamedQuery("Performer.findAll", Performer.class);
             List<Performer> performers = q.setFirstResult(start).setMaxResults(size).getResultList();
 
             List<PerformerDTO> performerDTOs = performers.stream().map(PerformerMapper::toDto).collect(Collectors.toList());
             GenericEntity<List<PerformerDTO>> entity = new GenericEntity<List<PerformerDTO>>(performerDTOs) {};
-            _logger.info("Retrieved (" + performers.size() + ") performers; send to user agent: " + userAgent);
+            _logger.debug("Retrieved ({}) performers; send to user agent: {}", performers.size(), userAgent);
 
             return Response
                     .status(Response.Status.OK)
@@ -99,7 +97,7 @@ public class PerformerResource {
                     .entity(entity)
                     .build();
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -122,12 +120,12 @@ public class PerformerResource {
             @HeaderParam("Authorization") String authToken) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         if (performerDTO.getName() == null) { // Any necessary fields are missing
-            _logger.info("Denied user agent: " + userAgent + "; With missing field(s) in performerDTO.");
+            _logger.info("Denied user agent: {}; With missing field(s) in performerDTO.", userAgent);
             return Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_WITH_MISSING_FIELDS).build(); // Bad request
         }
 
@@ -138,7 +136,7 @@ public class PerformerResource {
             tx.begin();
 
             if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
@@ -146,17 +144,17 @@ public class PerformerResource {
             em.persist(newPerformer);
 
             tx.commit();
-            _logger.info("Successfully created new performer with id: " + newPerformer.getId() + " and name: " + newPerformer.getName());
+            _logger.info("Successfully created new performer with id: {} and name: {}", newPerformer.getId(), newPerformer.getName());
 
             _sm.notifySubscribers(SubscriptionType.PERFORMER, newPerformer, _uri.getBaseUri() + "performers/" + newPerformer.getId());
-            _logger.info("Subscribers notified of new performer: " + newPerformer.getName());
+            _logger.info("Subscribers notified of new performer: {}", newPerformer.getName());
 
             return Response
                     .status(Response.Status.OK)
                     .location(new URI(_uri.getBaseUri() + "performers/" + newPerformer.getId()))
                     .build();
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -179,7 +177,7 @@ public class PerformerResource {
             @CookieParam("latest-news") String newsCookie) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             response.resume(Messages.UNAUTHENTICATED_REQUEST);
         }
 
@@ -193,12 +191,7 @@ public class PerformerResource {
 
     private boolean tokenIsValid(String authToken, EntityManager em) {
 
-        // Retrieve corresponding token form the database
-        TypedQuery<Token> tokenQuery = em.createQuery("SELECT t FROM Token t WHERE t.token = :token", Token.class);
-        tokenQuery.setParameter("token", authToken);
-        Token token = tokenQuery.getSingleResult();
-
-        // True if token isn't null and its expiry time is after the current time
-        return token != null && !LocalDateTime.now().isAfter(token.getExpiry());
+        // True if the token was issued by this service, hasn't expired and hasn't been revoked
+        return AuthenticationManager.instance().authenticate(authToken, em) != null;
     }
 }
@@ -1,8 +1,13 @@
 package nz.ac.auckland.concert.service.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Singleton class that manages an EntityManagerFactory. When a
@@ -14,20 +19,70 @@ import javax.persistence.Persistence;
  * persistence context, it should call the PersistentManager's 
  * createEntityManager() method to acquire one.
  * 
+ * The database is set up according to the persistence profile (see
+ * Config.PERSISTENCE_PROFILE_PROPERTY): by default it is re-created as
+ * persistence.xml says, while the production profile keeps an existing
+ * database and only migrates and validates its schema.
  */
 public class PersistenceManager {
+	private static final Logger _logger = LoggerFactory.getLogger(PersistenceManager.class);
+
+	private static final String PERSISTENCE_UNIT = "nz.ac.auckland.concert";
+	private static final String SCHEMA_GENERATION_ACTION = "javax.persistence.schema-generation.database.action";
+
 	private static PersistenceManager _instance = null;
 	
 	private EntityManagerFactory _entityManagerFactory;
+	private boolean _production;
 	
 	protected PersistenceManager() {
-		_entityManagerFactory = Persistence.createEntityManagerFactory("nz.ac.auckland.concert");
+		long start = System.nanoTime();
+		_production = Config.PRODUCTION_PERSISTENCE_PROFILE.equals(System.getProperty(Config.PERSISTENCE_PROFILE_PROPERTY));
+
+		boolean existingSchema = false;
+		if (_production) {
+			_entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT,
+					Collections.singletonMap(SCHEMA_GENERATION_ACTION, "none"));
+			existingSchema = hasSchema(_entityManagerFactory);
+			if (!existingSchema) { // New database, so create the schema and seed it as in the default profile
+				_entityManagerFactory.close();
+				_entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT,
+						Collections.singletonMap(SCHEMA_GENERATION_ACTION, "create"));
+			}
+		} else {
+			_entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT);
+		}
+
+		int migrations = SchemaMigrator.migrate(_entityManagerFactory);
+		if (existingSchema) {
+			SchemaValidationIntegrator.validate(_entityManagerFactory);
+		}
+		if (!existingSchema || migrations > 0) { // Shows are otherwise created along with their concerts
+			ShowMigrator.createShows(_entityManagerFactory);
+		}
+		if (Config.BITMAP_SEAT_STORAGE) {
+			SeatStorageMigrator.convertToBitmaps(_entityManagerFactory);
+		}
+
+		// EntityManagers are counted as Hibernate opens and closes their sessions
+		MetricsManager.instance().gauge("concert_entity_managers_open", "EntityManagers currently open.", EntityManagerMetrics::getOpenCount);
+
+		_logger.info("Opened database in ({}) ms; Profile: {}; Schema {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+				_production ? Config.PRODUCTION_PERSISTENCE_PROFILE : "default", existingSchema ? "validated" : "created");
 	}
 	
 	public EntityManager createEntityManager() {
 		return _entityManagerFactory.createEntityManager();
 	}
-	
+
+	/**
+	 * Returns whether the production persistence profile is in use, in which case data is kept from one start to the
+	 * next.
+	 */
+	public boolean isProductionProfile() {
+		return _production;
+	}
+
 	public static PersistenceManager instance() {
 		if(_instance == null) {
 			_instance = new PersistenceManager();
@@ -35,4 +90,19 @@ public class PersistenceManager {
 		return _instance;
 	}
 
+
+	// Private methods
+
+
+	private static boolean hasSchema(EntityManagerFactory entityManagerFactory) {
+		EntityManager em = entityManagerFactory.createEntityManager();
+		try {
+			Number tables = (Number) em.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+					"WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_TYPE = 'TABLE'").getSingleResult();
+			return tables.intValue() > 0;
+		} finally {
+			em.close();
+		}
+	}
+
 }
@@ -0,0 +1,149 @@
+package nz.ac.auckland.concert.service.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What one request asked of Hibernate: the statements it ran and how long they took, the entities it loaded, the
+ * lazy collections it fetched and its flushes. Used by the DiagnosticsFilter when request diagnostics are enabled.
+ *
+ * A request's diagnostics are attached to the thread handling it, where EntityManagerMetrics, the
+ * DiagnosticsStatementInspector and the DiagnosticsIntegrator's listeners find them. Work done on other threads, e.g.
+ * by the waitlist's allocating thread, isn't attributed to any request.
+ */
+public class RequestDiagnostics {
+
+    private static final ThreadLocal<RequestDiagnostics> _current = new ThreadLocal<>();
+
+    private static final int SLOWEST_STATEMENTS_KEPT = 5;
+
+    private final long _start = System.nanoTime();
+
+    private int _statements;
+    private long _statementNanos;
+    private int _entityLoads;
+    private int _collectionFetches;
+    private int _flushes;
+    private long _flushNanos;
+
+    private String _lastPrepared; // SQL of the statement most recently prepared, which is the next to run
+    private final List<Statement> _slowestStatements = new ArrayList<>(); // Slowest first
+
+    private RequestDiagnostics() {}
+
+    /**
+     * Starts collecting diagnostics for the request handled by the current thread.
+     */
+    static RequestDiagnostics begin() {
+        RequestDiagnostics diagnostics = new RequestDiagnostics();
+        _current.set(diagnostics);
+        return diagnostics;
+    }
+
+    /**
+     * Returns the diagnostics of the request handled by the current thread, or null if none are being collected.
+     */
+    static RequestDiagnostics current() {
+        return _current.get();
+    }
+
+    /**
+     * Stops collecting diagnostics on the current thread, unless it has since moved on to another request.
+     */
+    void detach() {
+        if (_current.get() == this) {
+            _current.remove();
+        }
+    }
+
+    void statementPrepared(String sql) {
+        _lastPrepared = sql;
+    }
+
+    void statementExecuted(long nanos) {
+        _statements++;
+        _statementNanos += nanos;
+
+        int position = _slowestStatements.size();
+        while (position > 0 && _slowestStatements.get(position - 1)._nanos < nanos) {
+            position--;
+        }
+        if (position < SLOWEST_STATEMENTS_KEPT) {
+            _slowestStatements.add(position, new Statement(_lastPrepared, nanos));
+            if (_slowestStatements.size() > SLOWEST_STATEMENTS_KEPT) {
+                _slowestStatements.remove(SLOWEST_STATEMENTS_KEPT);
+            }
+        }
+    }
+
+    void entityLoaded() {
+        _entityLoads++;
+    }
+
+    void collectionFetched() {
+        _collectionFetches++;
+    }
+
+    void flushed(long nanos) {
+        _flushes++;
+        _flushNanos += nanos;
+    }
+
+    int getStatements() {
+        return _statements;
+    }
+
+    int getEntityLoads() {
+        return _entityLoads;
+    }
+
+    int getCollectionFetches() {
+        return _collectionFetches;
+    }
+
+    long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _start);
+    }
+
+    /**
+     * Returns the diagnostics as the value of a Server-Timing header, with durations in milliseconds.
+     */
+    String toServerTiming() {
+        return "db;dur=" + millis(_statementNanos) + ";desc=\"" + _statements + " statements\", " +
+                "flush;dur=" + millis(_flushNanos) + ";desc=\"" + _flushes + " flushes\", " +
+                "hibernate;desc=\"" + _entityLoads + " entities loaded, " + _collectionFetches + " collections fetched\", " +
+                "total;dur=" + millis(System.nanoTime() - _start);
+    }
+
+    /**
+     * Returns the slowest statements the request ran, slowest first, each with its time in milliseconds.
+     */
+    String describeSlowestStatements() {
+        StringBuilder text = new StringBuilder();
+        for (Statement statement : _slowestStatements) {
+            text.append("\n    (").append(millis(statement._nanos)).append(" ms) ").append(statement._sql);
+        }
+        return text.toString();
+    }
+
+
+    // Private methods
+
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static class Statement {
+
+        private final String _sql;
+        private final long _nanos;
+
+        Statement(String sql, long nanos) {
+            _sql = sql;
+            _nanos = nanos;
+        }
+    }
+}
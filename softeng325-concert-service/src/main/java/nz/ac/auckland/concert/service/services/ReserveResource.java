@@ -2,23 +2,40 @@ package nz.ac.auckland.concert.service.services;
 
 import nz.ac.auckland.concert.common.dto.ReservationDTO;
 import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.dto.SeatConflictDTO;
 import nz.ac.auckland.concert.common.dto.SeatDTO;
 import nz.ac.auckland.concert.common.message.Messages;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import nz.ac.auckland.concert.common.types.SeatRow;
 import nz.ac.auckland.concert.service.domain.*;
 import nz.ac.auckland.concert.service.domain.Mappers.SeatMapper;
+import nz.ac.auckland.concert.service.domain.Types.SeatClaimState;
+import nz.ac.auckland.concert.service.jfr.BookingEvent;
+import nz.ac.auckland.concert.service.jfr.ReservationEvent;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import nz.ac.auckland.concert.utility.TheatreLayout;
 import nz.ac.auckland.concert.service.util.TheatreUtility;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.*;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -29,24 +46,59 @@ public class ReserveResource {
 
     private static final long RESERVATION_TIMEOUT_MILLIS = 1000; // 1 second
 
+    private static final int SEAT_CLAIM_ATTEMPTS = 3; // Attempts at claiming seats before giving up under contention
+    private static final String SEAT_CLAIM_CONSTRAINT = "UQ_SEAT_CLAIMS_SEAT"; // One claim per seat, see SeatClaim
+    private static final String UNIQUE_VIOLATION = "23505"; // SQLState of a unique constraint violation
+
+    static final String ADMISSION_TICKET_HEADER = "Admission-Ticket";
+    static final String ADMISSION_POSITION_HEADER = "Admission-Position";
+
+    // Time spent on the database, by operation, and choosing seats
+    private static final String PERSISTENCE = "concert_reserve_persistence_seconds";
+    private static final String PERSISTENCE_HELP = "Time spent on the database while reserving and booking seats, by operation.";
+    private static final MetricsManager.Timer _findInventoryTimer = MetricsManager.instance().timer(PERSISTENCE, PERSISTENCE_HELP, "operation", "find_inventory");
+    private static final MetricsManager.Timer _claimSeatsTimer = MetricsManager.instance().timer(PERSISTENCE, PERSISTENCE_HELP, "operation", "claim_seats");
+    private static final MetricsManager.Timer _findClaimsTimer = MetricsManager.instance().timer(PERSISTENCE, PERSISTENCE_HELP, "operation", "find_claims");
+    private static final MetricsManager.Timer _bookSeatsTimer = MetricsManager.instance().timer(PERSISTENCE, PERSISTENCE_HELP, "operation", "book_seats");
+    private static final MetricsManager.Timer _seatSearchTimer = MetricsManager.instance().timer(
+            "concert_seat_search_seconds", "Time taken to choose seats for a reservation request.");
+
     @Context // Information about the service hosted URI
     private static UriInfo _uri;
 
     private final PersistenceManager _pm; // Persistence
+    private final AuthenticationManager _auth; // Token verification
+    private final AvailabilityManager _availability; // Seats held by pending reservations
+    private final WaitlistManager _waitlist; // Requests waiting for seats to come back
+    private final AdmissionManager _admission; // Rate at which reservation requests are let through
 
     public ReserveResource() {
 
         _pm = PersistenceManager.instance();
+        _auth = AuthenticationManager.instance();
+        _availability = AvailabilityManager.instance();
+        _waitlist = WaitlistManager.instance();
+        _admission = AdmissionManager.instance();
     }
 
     /**
      * This method creates a temporary reservation for a user for a set of seats on a particular concert. When called,
      * the service searches for available seats and (if enough are available) it will return the reservation object and
      * keep the reservation active to a short period of time. it id up to the client to confirm the reservation
-     * within the allocated time else the booking will fail.
+     * within the allocated time else the booking will fail. Seats are held by claims in SEAT_CLAIMS, whose unique
+     * constraint guarantees no seat is ever held or booked by two reservations at once.
+     *
+     * If the request names particular seats, exactly those seats are reserved, or none of them: when any is already
+     * taken the response is a SeatConflictDTO listing the taken seats.
+     *
+     * Once authenticated, requests for each show pass through the AdmissionManager's waiting room. When
+     * requests arrive faster than they are admitted, the response is 503 (Service Unavailable) with a Retry-After header
+     * and, while the waiting room has space, an Admission-Ticket header holding the request's turn. Retrying with the
+     * ticket once the Retry-After has passed admits the request.
      * @param requestDto
      * @param userAgent
      * @param authToken
+     * @param ticket ticket from an earlier response, if any
      * @return The reservation object made by the user.
      */
     @POST
@@ -56,100 +108,88 @@ public class ReserveResource {
     public Response reserveSeats(
             ReservationRequestDTO requestDto,
             @HeaderParam("user-agent") String userAgent,
+            @HeaderParam("Authorization") String authToken,
+            @HeaderParam(ADMISSION_TICKET_HEADER) String ticket) {
+
+        ReservationEvent event = new ReservationEvent(); // Written only while a flight recording is taking it
+        event.begin();
+        Response response = reserve(requestDto, userAgent, authToken, ticket);
+        event.commit(requestDto, response);
+        return response;
+    }
+
+    /**
+     * Queues a reservation request until enough seats of its price band are free, instead of the client retrying
+     * reserveSeats against a sold out show. Requests are met in the order they join a show's waitlist for the price
+     * band: when seats come back, because a reservation expired or was released or a booking was cancelled, the
+     * service reserves them on behalf of the user at the head of the queue and resumes the response with the new
+     * ReservationDTO. The reservation must then be booked before it expires, as usual. Requests that can be met
+     * straight away are answered at once. Only requests for any seats of a price band can wait, and only for as many
+     * seats as the band has. A request still waiting after Config.WAITLIST_TIMEOUT_SECONDS is answered with 408
+     * (Request Timeout), and a user may have at most Config.WAITLIST_ENTRIES_PER_USER requests waiting.
+     * @param requestDto
+     * @param response
+     * @param userAgent
+     * @param authToken
+     */
+    @POST
+    @Path("/waitlist")
+    @Consumes(MediaType.APPLICATION_XML)
+    @Produces(MediaType.APPLICATION_XML)
+    public void joinWaitlist(
+            ReservationRequestDTO requestDto,
+            @Suspended AsyncResponse response,
+            @HeaderParam("user-agent") String userAgent,
             @HeaderParam("Authorization") String authToken) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
-            return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
+            response.resume(Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build());
+            return;
         }
 
-        if (requestDto.getConcertId() == null || requestDto.getDate() == null ||
-                requestDto.getNumberOfSeats() == 0 || requestDto.getSeatType() == null) { // Any necessary fields are missing
-            _logger.info("Denied user agent: " + userAgent + "; With missing field(s) in reservationRequestDTO.");
-            return Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_WITH_MISSING_FIELDS).build(); // Bad request
+        if (requestDto.getConcertId() == null || requestDto.getDate() == null || requestDto.getNumberOfSeats() == 0 ||
+                requestDto.getSeatType() == null || requestDto.getSeats() != null) { // Any necessary fields are missing, or particular seats are asked for
+            _logger.info("Denied user agent: {}; With missing field(s) in waitlisted reservationRequestDTO.", userAgent);
+            response.resume(Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_WITH_MISSING_FIELDS).build());
+            return;
+        }
+
+        if (requestDto.getNumberOfSeats() > ShowInventory.capacityOf(requestDto.getSeatType())) { // Could never be met, and would hold up the waitlist
+            _logger.info("Denied user agent: {}; Requested ({}) seats; More than price band: {} has", userAgent, requestDto.getNumberOfSeats(), requestDto.getSeatType());
+            response.resume(Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_EXCEEDS_CAPACITY).build());
+            return;
         }
 
         EntityManager em = _pm.createEntityManager();
 
         try {
-            if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
-                return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
+                response.resume(Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build());
+                return;
             }
 
-            // Check that the concert in question has a corresponding date in the db.
-            TypedQuery<LocalDateTime> concertDateQuery = em.createQuery("SELECT d FROM Concert c JOIN c.dates d WHERE c.id = :id", LocalDateTime.class);
-            concertDateQuery.setParameter("id", requestDto.getConcertId());
-            List<LocalDateTime> dates = concertDateQuery.getResultList();
-            if (!dates.contains(requestDto.getDate())) { // No concert was found on this date
-                _logger.info("Not concert(s) with id: " + requestDto.getConcertId() + " found on date: " + requestDto.getDate());
-                return Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build();
+            ShowInventory inventory = findInventory(requestDto, em);
+            if (inventory == null) { // No concert was found on this date
+                _logger.info("Not concert(s) with id: {} found on date: {}", requestDto.getConcertId(), requestDto.getDate());
+                response.resume(Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build());
+                return;
             }
 
-            EntityTransaction tx = em.getTransaction();
-            tx.begin(); // Ensure entire reading of seats unavailable AND reservation stages are atomic - ensures no conflicting requests from differing clients
-
-            Set<SeatDTO> unavailableSeats;
-
-            // Get all existing bookings and current reservations for this concert on this date
-            TypedQuery<SeatReservation> unavailableSeatsBookingQuery = em.createQuery(
-                    "SELECT s FROM Booking b JOIN b.reservation r JOIN r.concert c JOIN r.seats s WHERE c.id = :concertId AND r.date = :date", SeatReservation.class);
-            unavailableSeatsBookingQuery.setParameter("concertId", requestDto.getConcertId());
-            unavailableSeatsBookingQuery.setParameter("date",  requestDto.getDate());
-            // Check for a change in version upon commit, fine to have only optimistic as not writing to it
-            unavailableSeatsBookingQuery.setLockMode(LockModeType.OPTIMISTIC);
-            List<SeatReservation> seatsBooked = unavailableSeatsBookingQuery.getResultList();
-
-            // Add all seats found in returned bookings to current unavailable seats
-            unavailableSeats = seatsBooked.stream().map(SeatMapper::toDto).collect(Collectors.toSet());
-
-            // Find all seats currently reserved by another reservation process - check that timeout has not been reached using current time
-            TypedQuery<SeatReservation> unavailableSeatsReservationQuery = em.createQuery( // Note: this query checks for expiry time so only ACTIVE reservations are returned
-                    "SELECT s FROM Reservation r JOIN r.concert c JOIN r.seats s WHERE c.id = :concertId AND r.date = :date AND r.expiry > :currentTime", SeatReservation.class);
-            unavailableSeatsReservationQuery.setParameter("concertId", requestDto.getConcertId());
-            unavailableSeatsReservationQuery.setParameter("date", requestDto.getDate());
-            unavailableSeatsReservationQuery.setParameter("currentTime", LocalDateTime.now());
-            // Ensure version is incremented after this read, need this level because this table is written to at the end of this tx.
-            unavailableSeatsReservationQuery.setLockMode(LockModeType.OPTIMISTIC_FORCE_INCREMENT);
-            List<SeatReservation> seatsCurrentlyReserved = unavailableSeatsReservationQuery.getResultList();
-
-            // Add all seats found in returned active reservations to current unavailable seats
-            // If a seat is both booked AND still under valid reservation it is only added to unavailableSeats ONCE as it is a Set<> which does not allow duplicates
-            seatsCurrentlyReserved.stream().map(SeatMapper::toDto).forEach(unavailableSeats::add);
-            _logger.info("There are currently (" + unavailableSeats.size() + ") unavailable seats for concert id: " + requestDto.getConcertId() + " on date: " + requestDto.getDate());
-
-            // Acquire reserved seats w.r.t. unavailable seats
-            Set<SeatDTO> reservedSeats = TheatreUtility.findAvailableSeats(requestDto.getNumberOfSeats(), requestDto.getSeatType(), unavailableSeats);
-            if (reservedSeats.isEmpty()) { // Not enough seats left to reserve
-                _logger.info("Denied user agent: " + userAgent + "; Requested (" + requestDto.getNumberOfSeats() + ") seats; Not enough available seats for concert id: " + requestDto.getConcertId() + " on date: " + requestDto.getDate());
-                return Response.status(Response.Status.CONFLICT).entity(Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION).build();
+            Response reserved = reserveAnySeats(requestDto, inventory, userAgent, tokenUsername, em);
+            if (reserved.getStatus() == Response.Status.OK.getStatusCode()) { // No need to wait
+                response.resume(reserved);
+                return;
             }
 
-            // Create new reservation and persist to database
-            Reservation newReservation = new Reservation(
-                    reservedSeats.stream().map(SeatMapper::toReservation).collect(Collectors.toSet()), // Client's reserved seats
-                    em.find(Concert.class, requestDto.getConcertId()), // Corresponding concert from db
-                    requestDto.getDate(), // Given date
-                    LocalDateTime.now().plus(Duration.ofMillis(RESERVATION_TIMEOUT_MILLIS)), // now plus given reservation timeout
-                    requestDto.getSeatType()
-            );
-            User user = findUser(authToken, em);
-            user.setReservation(newReservation);
-            User mergedUser = em.merge(user);
-            tx.commit();
-
-            ReservationDTO returnReservation = new ReservationDTO(
-                    mergedUser.getReservation().getId(),
-                    requestDto,
-                    reservedSeats
-            );
-            _logger.info("Created new reservation for (" + newReservation.getSeats().size() + ") seats for concert id: " + newReservation.getConcert().getId() + " on date: " + newReservation.getDate() + "; For user: " + user.getUsername());
-            _logger.info("Reply to user agent :" + userAgent);
-
-            return Response
-                    .status(Response.Status.OK)
-                    .entity(returnReservation)
-                    .build();
+            if (!_waitlist.join(inventory.getShow().getId(), requestDto, tokenUsername, response)) { // User already has enough requests waiting
+                _logger.info("Denied user agent: {}; Waitlist limit reached for user: {}", userAgent, tokenUsername);
+                response.resume(Response.status(Response.Status.CONFLICT).entity(Messages.WAITLIST_LIMIT_REACHED).build());
+                return;
+            }
+            _logger.info("Waitlisted request for ({}) seats for concert id: {} on date: {}; For user: {}", requestDto.getNumberOfSeats(), requestDto.getConcertId(), requestDto.getDate(), tokenUsername);
         } finally {
             em.close();
         }
@@ -173,78 +213,610 @@ public class ReserveResource {
             @HeaderParam("user-agent") String userAgent,
             @HeaderParam("Authorization") String authToken) {
 
+        BookingEvent event = new BookingEvent(); // Written only while a flight recording is taking it
+        event.begin();
+        Response response = book(reservationDto, userAgent, authToken);
+        event.commit(reservationDto, response);
+        return response;
+    }
+
+    /**
+     * Releases the user's pending reservation before it expires, making its seats available to other users at once.
+     * Seats the reservation has already lost on expiry are left alone, and a reservation that has been booked can't
+     * be released; its booking can be cancelled instead.
+     * @param userAgent
+     * @param authToken
+     * @return Status code
+     */
+    @DELETE
+    @Path("/")
+    @Produces(MediaType.APPLICATION_XML)
+    public Response releaseReservation(
+            @HeaderParam("user-agent") String userAgent,
+            @HeaderParam("Authorization") String authToken) {
+
+        if (authToken == null) { // User has no access token
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
+            return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
+        }
+
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
+                return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
+            }
+
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+
+            User user = em.find(User.class, tokenUsername);
+            Reservation reservation = user.getReservation();
+            if (reservation == null || isBooked(reservation, em)) { // Nothing left to release
+                tx.rollback();
+                _logger.info("Denied user agent: {}; No pending reservation for user: {}", userAgent, tokenUsername);
+                return Response.status(Response.Status.NOT_FOUND).entity(Messages.NO_RESERVATION_TO_RELEASE).build();
+            }
+            em.lock(reservation, LockModeType.PESSIMISTIC_WRITE); // Reservations first, as when seats are claimed
+
+            // Drop the reservation's holds. Only holds it still owns go, so seats taken over after a lapse are kept.
+            int releasedSeats = em.createNamedQuery("SeatClaim.deleteByReservation")
+                    .setParameter("reservationId", reservation.getId())
+                    .setParameter("state", SeatClaimState.HELD)
+                    .executeUpdate();
+            user.setReservation(null);
+            em.remove(reservation);
+
+            tx.commit();
+            _availability.releaseHold(reservation.getId());
+            _logger.debug("Released reservation id: {} with ({}) seats still held; For user: {}", reservation.getId(), releasedSeats, tokenUsername);
+
+            return Response
+                    .status(Response.Status.NO_CONTENT)
+                    .build();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Cancels one of the user's bookings. Its seats are returned to the show's inventory and become available to
+     * other users at once.
+     * @param userAgent
+     * @param authToken
+     * @param id id of the booking, as given by its BookingDTO
+     * @return Status code
+     */
+    @DELETE
+    @Path("/book/{id}")
+    @Produces(MediaType.APPLICATION_XML)
+    public Response cancelBooking(
+            @HeaderParam("user-agent") String userAgent,
+            @HeaderParam("Authorization") String authToken,
+            @PathParam("id") long id) {
+
+        if (authToken == null) { // User has no access token
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
+            return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
+        }
+
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
+                return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
+            }
+
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+
+            Booking booking = em.find(Booking.class, id);
+            if (booking == null || !booking.getUser().getUsername().equals(tokenUsername)) { // Other users' bookings are just as unknown
+                tx.rollback();
+                _logger.info("Denied user agent: {}; No booking id: {} for user: {}", userAgent, id, tokenUsername);
+                return Response.status(Response.Status.NOT_FOUND).entity(Messages.BOOKING_NOT_FOUND).build();
+            }
+            Reservation reservation = booking.getReservation();
+            em.lock(reservation, LockModeType.PESSIMISTIC_WRITE); // Reservations first, as when seats are claimed
+            byte[] seats = SeatBitmap.encode(SeatMapper.toDtos(reservation));
+
+            int releasedSeats = em.createNamedQuery("SeatClaim.deleteByReservation")
+                    .setParameter("reservationId", reservation.getId())
+                    .setParameter("state", SeatClaimState.BOOKED)
+                    .executeUpdate();
+
+            ShowInventory inventory = em.find(ShowInventory.class, booking.getShow().getId(), LockModeType.PESSIMISTIC_WRITE);
+            inventory.putBack(reservation.getPriceBand(), releasedSeats);
+
+            User user = booking.getUser();
+            if (reservation.equals(user.getReservation())) { // Still the user's latest reservation
+                user.setReservation(null);
+            }
+            user.getBookings().remove(booking); // Removes the booking, and with it the reservation
+
+            tx.commit();
+            _availability.releaseBooking(inventory.getShow().getId(), reservation.getPriceBand(), seats);
+            _logger.debug("Cancelled booking id: {} releasing ({}) seats for concert id: {} on date: {}; For user: {}",
+                    id, releasedSeats, reservation.getConcert().getId(), reservation.getDate(), tokenUsername);
+
+            return Response
+                    .status(Response.Status.NO_CONTENT)
+                    .build();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Reserves seats for a waitlisted request on behalf of its user. Used by the WaitlistManager. The response is 200
+     * (OK) with the ReservationDTO, 409 (Conflict) if the request can't be met yet, or 404 (Not Found) if the concert
+     * is no longer scheduled on the date.
+     */
+    Response reserveFor(ReservationRequestDTO requestDto, String username) {
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            ShowInventory inventory = findInventory(requestDto, em);
+            if (inventory == null) { // Concert is no longer scheduled on this date
+                return Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build();
+            }
+
+            return reserveAnySeats(requestDto, inventory, "waitlist", username, em);
+        } finally {
+            em.close();
+        }
+    }
+
+
+    // Private methods
+
+
+    private Response reserve(ReservationRequestDTO requestDto, String userAgent, String authToken, String ticket) {
+
+        if (authToken == null) { // User has no access token
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
+            return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
+        }
+
+        if (requestDto.getConcertId() == null || requestDto.getDate() == null ||
+                requestDto.getNumberOfSeats() == 0 || requestDto.getSeatType() == null) { // Any necessary fields are missing
+            _logger.info("Denied user agent: {}; With missing field(s) in reservationRequestDTO.", userAgent);
+            return Response.status(Response.Status.BAD_REQUEST).entity(Messages.RESERVATION_REQUEST_WITH_MISSING_FIELDS).build(); // Bad request
+        }
+
+        if (requestDto.getSeats() != null && !areSeatsInBand(requestDto.getSeats(), requestDto.getSeatType())) { // Seats that aren't in the price band, or don't exist
+            _logger.info("Denied user agent: {}; With invalid seat(s) in reservationRequestDTO.", userAgent);
+            return Response.status(Response.Status.BAD_REQUEST).entity(Messages.INVALID_SEATS_FOR_RESERVATION).build();
+        }
+
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            String tokenUsername = _auth.authenticate(authToken, em); // Before admission, so bad tokens don't use up turns
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
+                return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
+            }
+
+            ShowInventory inventory = findInventory(requestDto, em); // Before admission, so only real shows get a waiting room
+            if (inventory == null) { // No concert was found on this date
+                _logger.info("Not concert(s) with id: {} found on date: {}", requestDto.getConcertId(), requestDto.getDate());
+                return Response.status(Response.Status.NOT_FOUND).entity(Messages.CONCERT_NOT_SCHEDULED_ON_RESERVATION_DATE).build();
+            }
+
+            AdmissionManager.Admission admission = _admission.admit(inventory.getShow().getId(), requestDto.getConcertId(), requestDto.getDate(), ticket);
+            if (!admission.isAdmitted()) { // Too many requests for this show right now
+                return notAdmitted(admission, userAgent);
+            }
+
+            try {
+                if (requestDto.getSeats() != null) {
+                    return reserveRequestedSeats(requestDto, inventory.getShow().getId(), userAgent, tokenUsername);
+                }
+
+                return reserveAnySeats(requestDto, inventory, userAgent, tokenUsername, em);
+            } finally {
+                _admission.leave(admission); // Let the next request in
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private Response book(ReservationDTO reservationDto, String userAgent, String authToken) {
+
         if (authToken == null) { // no authorization token present
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         EntityManager em = _pm.createEntityManager();
 
         try {
-            if (!tokenIsValid(authToken, em)) { // Authentication token has expired
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // Authentication token has expired
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
-            TypedQuery<CreditCard> creditCardQuery = em.createQuery("SELECT c FROM Token t JOIN t.user u JOIN u.creditCard c WHERE t.token = :token", CreditCard.class);
-            creditCardQuery.setParameter("token", authToken);
+            TypedQuery<CreditCard> creditCardQuery = em.createNamedQuery("User.findCreditCard", CreditCard.class);
+            creditCardQuery.setParameter("username", tokenUsername);
             try {
                 CreditCard creditCard = creditCardQuery.getSingleResult();
             } catch (NoResultException e) { // User doesn't have any credit card associated with their account
-                _logger.info("Denied user agent: " + userAgent + "; No credit card found under account.");
+                _logger.info("Denied user agent: {}; No credit card found under account.", userAgent);
                 return Response.status(Response.Status.PAYMENT_REQUIRED).entity(Messages.CREDIT_CARD_NOT_REGISTERED).build();
             }
 
+            long bookStart = System.nanoTime();
             EntityTransaction tx = em.getTransaction();
             tx.begin(); // make the operation of checking reservation expiry to making booking atomic
 
-            TypedQuery<Reservation> reservationQuery = em.createQuery("SELECT r FROM Token t JOIN t.user u JOIN u.reservation r WHERE t.token = :token", Reservation.class);
-            reservationQuery.setParameter("token", authToken);
-            // Optimistic force increment to ensure no other user reserves these seats after they time out and before this book is committed.
-            reservationQuery.setLockMode(LockModeType.OPTIMISTIC_FORCE_INCREMENT);
-            Reservation foundReservation = reservationQuery.getSingleResult(); // Get reservation for that user (obviously only one allowed at any one time)
+            TypedQuery<Reservation> reservationQuery = em.createNamedQuery("User.findReservation", Reservation.class);
+            reservationQuery.setParameter("username", tokenUsername);
+            List<Reservation> reservations = reservationQuery.getResultList();
+            if (reservations.isEmpty()) { // Reservation was released
+                _logger.info("Denied user agent: {}; No reservation found for user: {}", userAgent, tokenUsername);
+                return Response.status(Response.Status.REQUEST_TIMEOUT).entity(Messages.EXPIRED_RESERVATION).build();
+            }
+            Reservation foundReservation = reservations.get(0); // Get reservation for that user (obviously only one allowed at any one time)
+            em.lock(foundReservation, LockModeType.PESSIMISTIC_WRITE); // Reservations first, as when seats are claimed
 
             // Check if reservation has expired
             if (!LocalDateTime.now().isBefore(foundReservation.getExpiry())) {
-                _logger.info("Denied user agent: " + userAgent + "; reservation for concert id: " +
-                        reservationDto.getReservationRequest().getConcertId() + " on date: " + reservationDto.getReservationRequest().getDate() +
-                        " timed out at: " + foundReservation.getExpiry());
+                _logger.info("Denied user agent: {}; reservation for concert id: {} on date: {} timed out at: {}",
+                        userAgent, reservationDto.getReservationRequest().getConcertId(), reservationDto.getReservationRequest().getDate(), foundReservation.getExpiry());
                 return Response.status(Response.Status.REQUEST_TIMEOUT).entity(Messages.EXPIRED_RESERVATION).build();
             }
 
-            Booking newBooking = new Booking(foundReservation, findUser(authToken, em));
+            // Turn the reservation's holds into bookings. Only holds this reservation still owns count, so a seat taken
+            // over by another reservation after the hold lapsed can never be booked twice.
+            int bookedSeats = em.createNamedQuery("SeatClaim.book")
+                    .setParameter("booked", SeatClaimState.BOOKED)
+                    .setParameter("held", SeatClaimState.HELD)
+                    .setParameter("reservationId", foundReservation.getId())
+                    .setParameter("currentTime", LocalDateTime.now())
+                    .executeUpdate();
+            if (bookedSeats != foundReservation.getSeatCount()) { // Hold lapsed between the expiry check and the update
+                tx.rollback();
+                _logger.info("Denied user agent: {}; reservation id: {} lost its seats on expiry", userAgent, foundReservation.getId());
+                return Response.status(Response.Status.REQUEST_TIMEOUT).entity(Messages.EXPIRED_RESERVATION).build();
+            }
+
+            // Take the seats off the show's inventory. Only this show's row is locked, so bookings for other shows
+            // carry on regardless.
+            ShowInventory inventory = em.find(ShowInventory.class, foundReservation.getShow().getId(), LockModeType.PESSIMISTIC_WRITE);
+            if (!inventory.take(foundReservation.getPriceBand(), bookedSeats)) { // Can't happen while every seat has a single claim
+                tx.rollback();
+                _logger.info("Denied user agent: {}; reservation id: {} exceeds the seats left for its show", userAgent, foundReservation.getId());
+                return Response.status(Response.Status.CONFLICT).entity(Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION).build();
+            }
+
+            Booking newBooking = new Booking(foundReservation, em.find(User.class, tokenUsername));
             em.persist(newBooking); // This ensures increment of version number for booking table
             tx.commit(); // End of atomic operation
-            _logger.info("Created booking for concert id: " +
-                    reservationDto.getReservationRequest().getConcertId() + " on date: " + reservationDto.getReservationRequest().getDate() +
-                    "; Reply to user agent: " + userAgent);
+            _bookSeatsTimer.recordSince(bookStart);
+            _availability.book(foundReservation.getId(), foundReservation.getShow().getId(),
+                    SeatBitmap.encode(SeatMapper.toDtos(foundReservation))); // Now counted as booked by the show's inventory
+            _logger.debug("Created booking for concert id: {} on date: {}; Reply to user agent: {}",
+                    reservationDto.getReservationRequest().getConcertId(), reservationDto.getReservationRequest().getDate(), userAgent);
 
             return Response
                     .status(Response.Status.NO_CONTENT)
                     .build();
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
     }
 
-    // Private methods
+    // Looks up the show, i.e. the concert on the requested date, together with the seats it has left
+    private ShowInventory findInventory(ReservationRequestDTO requestDto, EntityManager em) {
+        long start = System.nanoTime();
+        TypedQuery<ShowInventory> inventoryQuery = em.createNamedQuery("ShowInventory.findByShow", ShowInventory.class);
+        inventoryQuery.setParameter("id", requestDto.getConcertId());
+        inventoryQuery.setParameter("date", requestDto.getDate());
+        List<ShowInventory> inventories = inventoryQuery.getResultList();
+        _findInventoryTimer.recordSince(start);
+        return inventories.isEmpty() ? null : inventories.get(0);
+    }
+
+    private static boolean isBooked(Reservation reservation, EntityManager em) {
+        return em.createNamedQuery("Booking.countByReservation", Long.class)
+                .setParameter("reservation", reservation)
+                .getSingleResult() > 0;
+    }
+
+    /**
+     * Reserves any seats of the requested price band, as picked by TheatreUtility.
+     */
+    private Response reserveAnySeats(ReservationRequestDTO requestDto, ShowInventory inventory, String userAgent, String tokenUsername, EntityManager em) {
+        long showId = inventory.getShow().getId();
+        int availableSeats = inventory.getRemaining(requestDto.getSeatType()) - _availability.getHeldSeats(showId, requestDto.getSeatType());
+        if (availableSeats < requestDto.getNumberOfSeats()) { // Sold out, no need to look at seats
+            _logger.info("Denied user agent: {}; Requested ({}) seats; Only ({}) available for concert id: {} on date: {}", userAgent, requestDto.getNumberOfSeats(), availableSeats, requestDto.getConcertId(), requestDto.getDate());
+            return Response.status(Response.Status.CONFLICT).entity(Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION).build();
+        }
+
+        // Seats are taken by inserting a claim for each into SEAT_CLAIMS, whose unique constraint rejects any seat
+        // that is already claimed. Nothing is read up front: the show's claims are only read after an attempt
+        // collides with another reservation, to choose seats that are actually free for the next attempt.
+        Set<SeatDTO> unavailableSeats = new HashSet<>();
+        Map<SeatDTO, Long> expiredHolds = new HashMap<>(); // Seat -> id of a lapsed hold on it
+
+        for (int attempt = 1; attempt <= SEAT_CLAIM_ATTEMPTS; attempt++) {
+
+            // Acquire reserved seats w.r.t. unavailable seats
+            long searchStart = System.nanoTime();
+            Set<SeatDTO> reservedSeats = TheatreUtility.findAvailableSeats(requestDto.getNumberOfSeats(), requestDto.getSeatType(), unavailableSeats);
+            _seatSearchTimer.recordSince(searchStart);
+            if (reservedSeats.isEmpty()) { // Not enough seats left to reserve
+                _logger.info("Denied user agent: {}; Requested ({}) seats; Not enough available seats for concert id: {} on date: {}", userAgent, requestDto.getNumberOfSeats(), requestDto.getConcertId(), requestDto.getDate());
+                return Response.status(Response.Status.CONFLICT).entity(Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION).build();
+            }
+
+            Reservation newReservation = claimSeats(requestDto, showId, reservedSeats, expiredHolds, tokenUsername);
+            if (newReservation != null) {
+                _availability.hold(newReservation.getId(), showId, requestDto.getSeatType(), SeatBitmap.encode(reservedSeats), newReservation.getExpiry());
+                ReservationDTO returnReservation = new ReservationDTO(
+                        newReservation.getId(),
+                        requestDto,
+                        reservedSeats
+                );
+                _logger.debug("Created new reservation for ({}) seats for concert id: {} on date: {}; For user: {}; Reply to user agent: {}",
+                        reservedSeats.size(), requestDto.getConcertId(), requestDto.getDate(), tokenUsername, userAgent);
+
+                return Response
+                        .status(Response.Status.OK)
+                        .entity(returnReservation)
+                        .build();
+            }
+
+            // Another reservation claimed at least one of these seats first - find out which seats are taken
+            long findStart = System.nanoTime();
+            em.clear(); // Don't serve claims read by an earlier attempt from the persistence context
+            TypedQuery<SeatClaim> claimQuery = em.createNamedQuery("SeatClaim.findByShow", SeatClaim.class);
+            claimQuery.setParameter("concertId", requestDto.getConcertId());
+            claimQuery.setParameter("date", requestDto.getDate());
+
+            unavailableSeats.clear();
+            expiredHolds.clear();
+            LocalDateTime now = LocalDateTime.now();
+            for (SeatClaim claim : claimQuery.getResultList()) {
+                if (claim.getState() == SeatClaimState.HELD && !claim.getExpiry().isAfter(now)) { // Lapsed hold, can be taken over
+                    expiredHolds.put(SeatMapper.toDto(claim), claim.getId());
+                } else {
+                    unavailableSeats.add(SeatMapper.toDto(claim));
+                }
+            }
+            _findClaimsTimer.recordSince(findStart);
+            _logger.debug("Reservation attempt ({}) collided; There are currently ({}) unavailable seats for concert id: {} on date: {}", attempt, unavailableSeats.size(), requestDto.getConcertId(), requestDto.getDate());
+        }
+
+        // Lost every attempt to concurrent reservations for the same seats
+        _logger.info("Denied user agent: {}; Requested ({}) seats; Seats kept being claimed concurrently for concert id: {} on date: {}", userAgent, requestDto.getNumberOfSeats(), requestDto.getConcertId(), requestDto.getDate());
+        return Response.status(Response.Status.CONFLICT).entity(Messages.INSUFFICIENT_SEATS_AVAILABLE_FOR_RESERVATION).build();
+    }
+
+    /**
+     * Reserves the particular seats named by a request, or none of them. Requests for the same seats are settled by
+     * claiming the seats in the AvailabilityManager first, so a request for seats that are taken fails straight away
+     * without touching the database. The seats are then claimed in the database as for any reservation; should that
+     * find a claim the AvailabilityManager didn't know of, only the requested seats' claims are read to tell which.
+     */
+    private Response reserveRequestedSeats(ReservationRequestDTO requestDto, long showId, String userAgent, String username) {
+        Set<SeatDTO> requestedSeats = requestDto.getSeats();
+        byte[] seats = SeatBitmap.encode(requestedSeats);
+
+        Set<SeatDTO> takenSeats = _availability.claim(showId, requestDto.getConcertId(), requestDto.getDate(), seats);
+        if (!takenSeats.isEmpty()) { // Another reservation holds or booked some of the seats
+            return seatConflict(requestDto, takenSeats, userAgent);
+        }
+
+        boolean held = false;
+        try {
+            Map<SeatDTO, Long> expiredHolds = new HashMap<>(); // Seat -> id of a lapsed hold on it
+
+            for (int attempt = 1; attempt <= SEAT_CLAIM_ATTEMPTS; attempt++) {
+                Reservation newReservation = claimSeats(requestDto, showId, requestedSeats, expiredHolds, username);
+                if (newReservation != null) {
+                    _availability.hold(newReservation.getId(), showId, requestDto.getSeatType(), seats, newReservation.getExpiry());
+                    held = true;
+                    _logger.debug("Created new reservation for requested ({}) seats for concert id: {} on date: {}; For user: {}; Reply to user agent: {}",
+                            requestedSeats.size(), requestDto.getConcertId(), requestDto.getDate(), username, userAgent);
+
+                    return Response
+                            .status(Response.Status.OK)
+                            .entity(new ReservationDTO(newReservation.getId(), requestDto, requestedSeats))
+                            .build();
+                }
+
+                // The database has a claim on one of the seats - either a lapsed hold that can be taken over, or a
+                // claim made elsewhere
+                takenSeats.clear();
+                expiredHolds.clear();
+                LocalDateTime now = LocalDateTime.now();
+                for (SeatClaim claim : findClaims(requestDto, requestedSeats)) {
+                    if (claim.getState() == SeatClaimState.HELD && !claim.getExpiry().isAfter(now)) { // Lapsed hold, can be taken over
+                        expiredHolds.put(SeatMapper.toDto(claim), claim.getId());
+                    } else {
+                        takenSeats.add(SeatMapper.toDto(claim));
+                    }
+                }
+                if (!takenSeats.isEmpty()) {
+                    return seatConflict(requestDto, takenSeats, userAgent);
+                }
+                _logger.debug("Reservation attempt ({}) for requested seats found ({}) lapsed holds for concert id: {} on date: {}", attempt, expiredHolds.size(), requestDto.getConcertId(), requestDto.getDate());
+            }
 
+            // Lost every attempt at taking over lapsed holds to concurrent reservations
+            return seatConflict(requestDto, requestedSeats, userAgent);
+        } finally {
+            if (!held) {
+                _availability.abandonClaim(showId, seats);
+            }
+        }
+    }
+
+    // Claims on the given seats of the requested concert date
+    private List<SeatClaim> findClaims(ReservationRequestDTO requestDto, Set<SeatDTO> seats) {
+        long start = System.nanoTime();
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            Set<SeatRow> rows = seats.stream().map(SeatDTO::getRow).collect(Collectors.toSet());
+            return em.createNamedQuery("SeatClaim.findByShowAndRows", SeatClaim.class)
+                    .setParameter("concertId", requestDto.getConcertId())
+                    .setParameter("date", requestDto.getDate())
+                    .setParameter("rows", rows)
+                    .getResultList()
+                    .stream()
+                    .filter(claim -> seats.contains(SeatMapper.toDto(claim)))
+                    .collect(Collectors.toList());
+        } finally {
+            em.close();
+            _findClaimsTimer.recordSince(start);
+        }
+    }
 
-    private boolean tokenIsValid(String authToken, EntityManager em) {
+    private Response seatConflict(ReservationRequestDTO requestDto, Set<SeatDTO> takenSeats, String userAgent) {
+        _logger.info("Denied user agent: {}; Requested seats {} are taken for concert id: {} on date: {}", userAgent, takenSeats, requestDto.getConcertId(), requestDto.getDate());
+        return Response
+                .status(Response.Status.CONFLICT)
+                .entity(new SeatConflictDTO(Messages.REQUESTED_SEATS_UNAVAILABLE_FOR_RESERVATION, takenSeats))
+                .build();
+    }
 
-        // Retrieve corresponding token form the database
-        TypedQuery<Token> tokenQuery = em.createQuery("SELECT t FROM Token t WHERE t.token = :token", Token.class);
-        tokenQuery.setParameter("token", authToken);
-        Token token = tokenQuery.getSingleResult();
+    private Response notAdmitted(AdmissionManager.Admission admission, String userAgent) {
+        if (admission.getTicket() == null) { // Waiting room is full
+            _logger.info("Denied user agent: {}; Waiting room full, retry after ({}) seconds", userAgent, admission.getRetryAfterSeconds());
+            return Response
+                    .status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(Messages.RESERVATION_ADMISSION_REFUSED)
+                    .header(HttpHeaders.RETRY_AFTER, admission.getRetryAfterSeconds())
+                    .build();
+        }
+        _logger.debug("Queued user agent: {}; At position ({}), retry after ({}) seconds", userAgent, admission.getPosition(), admission.getRetryAfterSeconds());
+        return Response
+                .status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(Messages.RESERVATION_QUEUED)
+                .header(HttpHeaders.RETRY_AFTER, admission.getRetryAfterSeconds())
+                .header(ADMISSION_TICKET_HEADER, admission.getTicket())
+                .header(ADMISSION_POSITION_HEADER, admission.getPosition())
+                .build();
+    }
 
-        // True if token isn't null and its expiry time is after the current time
-        return token != null && !LocalDateTime.now().isAfter(token.getExpiry());
+    // True if every seat exists and is in the requested price band
+    private static boolean areSeatsInBand(Set<SeatDTO> seats, PriceBand priceBand) {
+        if (seats.isEmpty()) {
+            return false;
+        }
+        Set<SeatRow> rows = TheatreLayout.getRowsForPriceBand(priceBand);
+        for (SeatDTO seat : seats) {
+            if (seat.getRow() == null || seat.getNumber() == null || !rows.contains(seat.getRow()) ||
+                    seat.getNumber().intValue() < 1 || seat.getNumber().intValue() > TheatreLayout.getNumberOfSeatsForRow(seat.getRow())) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private User findUser(String authToken, EntityManager em) {
+    /**
+     * Makes one attempt at reserving seats for a user: the reservation is stored and a HELD claim is inserted for
+     * each seat, all in one transaction. Seats with a lapsed hold (listed in expiredHolds) are taken over with a
+     * conditional update instead. Returns null, having stored nothing, if any of the seats turns out to be claimed.
+     */
+    private Reservation claimSeats(ReservationRequestDTO requestDto, long showId, Set<SeatDTO> seats, Map<SeatDTO, Long> expiredHolds, String username) {
+        long start = System.nanoTime();
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiry = now.plus(Duration.ofMillis(RESERVATION_TIMEOUT_MILLIS)); // now plus given reservation timeout
+            Show show = em.find(Show.class, showId);
+            Concert concert = show.getConcert();
+
+            // Create new reservation and persist to database
+            Reservation newReservation = Config.BITMAP_SEAT_STORAGE
+                    ? new Reservation(SeatBitmap.encode(seats), show, expiry, requestDto.getSeatType())
+                    : new Reservation(
+                            seats.stream().map(SeatMapper::toReservation).collect(Collectors.toSet()), // Client's reserved seats
+                            show, // Concert on the given date
+                            expiry,
+                            requestDto.getSeatType()
+                    );
+            em.persist(newReservation);
+            em.flush(); // Write the reservation before any claim. Booking, releasing and cancelling also lock reservations
+                        // first, so that concurrent writers all lock tables in the same order and can't deadlock
+
+            for (SeatDTO seat : seats) {
+                Long expiredHold = expiredHolds.get(seat);
+                if (expiredHold == null) {
+                    em.persist(new SeatClaim(concert, requestDto.getDate(), seat.getRow(), seat.getNumber(), newReservation.getId(), expiry));
+                    continue;
+                }
+
+                int taken = em.createNamedQuery("SeatClaim.takeOverLapsedHold")
+                        .setParameter("reservationId", newReservation.getId())
+                        .setParameter("expiry", expiry)
+                        .setParameter("id", expiredHold)
+                        .setParameter("held", SeatClaimState.HELD)
+                        .setParameter("currentTime", now)
+                        .executeUpdate();
+                if (taken == 0) { // Someone else took the lapsed hold over first
+                    tx.rollback();
+                    return null;
+                }
+            }
 
-        TypedQuery<User> userQuery = em.createQuery("SELECT u FROM Token t JOIN t.user u WHERE t.token = :token", User.class);
-        userQuery.setParameter("token", authToken);
-        return userQuery.getSingleResult();
+            // Only point the user at the reservation once all of its seats are claimed
+            em.find(User.class, username).setReservation(newReservation);
+            tx.commit();
+            return newReservation;
+        } catch (PersistenceException e) {
+            if (!isClaimConflict(e)) {
+                throw e;
+            }
+            _logger.debug("Seat claims for concert id: {} on date: {} collided with another reservation's: {}",
+                    requestDto.getConcertId(), requestDto.getDate(), e.getMessage());
+            return null; // A seat was claimed by another reservation in the meantime, or it is being claimed right now
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+            _claimSeatsTimer.recordSince(start);
+        }
+    }
+
+    // Whether seats couldn't be claimed because another reservation claimed one of them, rather than through an error
+    private static boolean isClaimConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LockAcquisitionException || cause instanceof PessimisticLockException) {
+                return true;
+            }
+            if (cause instanceof ConstraintViolationException) { // Only the seat's single claim counts, not NOT NULL or FK violations
+                ConstraintViolationException violation = (ConstraintViolationException) cause;
+                String constraint = violation.getConstraintName(); // As H2 reports it, e.g. "UQ_SEAT_CLAIMS_SEAT_INDEX_5 ON ...
+                return UNIQUE_VIOLATION.equals(violation.getSQLState()) && constraint != null &&
+                        constraint.replace("\"", "").toUpperCase().startsWith(SEAT_CLAIM_CONSTRAINT);
+            }
+        }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies versioned schema migrations to the database behind an EntityManagerFactory. Migrations are SQL scripts
+ * on the classpath under db/migration, named V<version>__<description>.sql, and are listed in MIGRATIONS in the
+ * order they must run. The versions already applied are recorded in the SCHEMA_VERSION table, so each script runs
+ * exactly once against a given database.
+ *
+ * When the persistence unit regenerates the schema on start-up (drop-and-create), the recorded history no longer
+ * describes the database, so it is discarded and every migration is applied again.
+ */
+public class SchemaMigrator {
+
+    private static final Logger _logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String MIGRATION_LOCATION = "db/migration/";
+
+    // All migrations, oldest first. Append new scripts here; never edit or reorder an applied one.
+    private static final String[] MIGRATIONS = {
+            "V1__hot_path_indexes.sql",
+            "V2__seat_claims.sql",
+            "V3__id_sequences.sql",
+            "V4__reservation_seat_bitmap.sql",
+            "V5__shows.sql"
+    };
+
+    private static final String SCHEMA_GENERATION_ACTION = "javax.persistence.schema-generation.database.action";
+
+    // This is utility class, so hide the constructor to prevent instantiation.
+    private SchemaMigrator() {}
+
+    /**
+     * Applies the migrations not yet applied to the database, returning how many there were.
+     */
+    public static int migrate(EntityManagerFactory entityManagerFactory) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        int applied = 0;
+
+        try {
+            em.getTransaction().begin();
+
+            Object action = entityManagerFactory.getProperties().get(SCHEMA_GENERATION_ACTION);
+            if ("drop-and-create".equals(action) || "create".equals(action)) { // Fresh schema, history is stale
+                em.createNativeQuery("DROP TABLE IF EXISTS SCHEMA_VERSION").executeUpdate();
+            }
+            em.createNativeQuery("CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (" +
+                    "VERSION INT PRIMARY KEY, DESCRIPTION VARCHAR(255), APPLIED_ON TIMESTAMP)").executeUpdate();
+
+            Number current = (Number) em.createNativeQuery("SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_VERSION").getSingleResult();
+
+            for (String migration : MIGRATIONS) {
+                int version = versionOf(migration);
+                if (version <= current.intValue()) { // Already applied
+                    continue;
+                }
+
+                for (String statement : readStatements(MIGRATION_LOCATION + migration)) {
+                    em.createNativeQuery(statement).executeUpdate();
+                }
+                em.createNativeQuery("INSERT INTO SCHEMA_VERSION VALUES (?, ?, CURRENT_TIMESTAMP)")
+                        .setParameter(1, version)
+                        .setParameter(2, descriptionOf(migration))
+                        .executeUpdate();
+                _logger.info("Applied schema migration {}", migration);
+                applied++;
+            }
+
+            em.getTransaction().commit();
+            return applied;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+
+    // Private methods
+
+
+    private static int versionOf(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static String descriptionOf(String migration) {
+        return migration.substring(migration.indexOf("__") + 2, migration.lastIndexOf('.')).replace('_', ' ');
+    }
+
+    // Splits a script into statements on ';', dropping blank lines and // or -- comment lines
+    private static List<String> readStatements(String resource) {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new PersistenceException("Missing schema migration " + resource);
+        }
+
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder statement = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("//") || trimmed.startsWith("--")) {
+                    continue;
+                }
+                statement.append(trimmed).append(' ');
+                if (trimmed.endsWith(";")) {
+                    statements.add(statement.substring(0, statement.lastIndexOf(";")));
+                    statement.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Could not read schema migration " + resource, e);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,41 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the mapping each session factory was built from, so that an existing database's schema can be validated
+ * against it once SchemaMigrator has brought the schema up to date. Hibernate's own validation, when the
+ * EntityManagerFactory is built, would come before the migrations. Hibernate finds the integrator through
+ * META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class SchemaValidationIntegrator implements Integrator {
+
+    private static final Map<SessionFactoryImplementor, Metadata> _metadata = new ConcurrentHashMap<>();
+
+    /**
+     * Checks that every table, column and sequence the entities are mapped to exists with a suitable type, throwing
+     * a SchemaManagementException if not.
+     */
+    public static void validate(EntityManagerFactory entityManagerFactory) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        new SchemaValidator().validate(_metadata.get(sessionFactory), sessionFactory.getServiceRegistry());
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        _metadata.put(sessionFactory, metadata);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        _metadata.remove(sessionFactory);
+    }
+}
@@ -0,0 +1,86 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.service.domain.Mappers.SeatMapper;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.service.domain.SeatReservation;
+import nz.ac.auckland.concert.utility.SeatBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Converts reservations whose seats are stored as SEAT_RESERVATIONS rows to the bitmap storage used when
+ * Config.BITMAP_SEAT_STORAGE is enabled. Reservations are converted in batches, each in its own transaction, so a
+ * conversion that is interrupted simply carries on from where it stopped the next time it runs.
+ */
+public class SeatStorageMigrator {
+
+    private static final Logger _logger = LoggerFactory.getLogger(SeatStorageMigrator.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    // This is utility class, so hide the constructor to prevent instantiation.
+    private SeatStorageMigrator() {}
+
+    public static void convertToBitmaps(EntityManagerFactory entityManagerFactory) {
+        if (!hasSeatRows(entityManagerFactory)) { // Nothing to convert, so don't search every reservation for some
+            return;
+        }
+
+        int converted = 0;
+        int batch;
+
+        do {
+            EntityManager em = entityManagerFactory.createEntityManager();
+
+            try {
+                em.getTransaction().begin();
+
+                List<Reservation> reservations = em.createQuery(
+                        "SELECT r FROM Reservation r WHERE r.seatsBitmap IS NULL AND r.seats IS NOT EMPTY", Reservation.class)
+                        .setMaxResults(BATCH_SIZE)
+                        .getResultList();
+
+                for (Reservation reservation : reservations) {
+                    reservation.setSeatsBitmap(SeatBitmap.encode(
+                            reservation.getSeats().stream().map(SeatMapper::toDto).collect(Collectors.toSet())));
+
+                    for (SeatReservation seat : reservation.getSeats()) {
+                        em.remove(seat);
+                    }
+                    reservation.getSeats().clear();
+                }
+
+                em.getTransaction().commit();
+                batch = reservations.size();
+                converted += batch;
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                em.close();
+            }
+        } while (batch == BATCH_SIZE);
+
+        if (converted > 0) {
+            _logger.info("Converted ({}) reservations to bitmap seat storage", converted);
+        }
+    }
+
+
+    // Private methods
+
+
+    private static boolean hasSeatRows(EntityManagerFactory entityManagerFactory) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return !em.createQuery("SELECT s.id FROM SeatReservation s", Long.class).setMaxResults(1).getResultList().isEmpty();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.service.domain.Concert;
+import nz.ac.auckland.concert.service.domain.Reservation;
+import nz.ac.auckland.concert.service.domain.Show;
+import nz.ac.auckland.concert.service.domain.ShowInventory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Creates a Show, with its ShowInventory, for every concert date that doesn't have one yet - concerts loaded by
+ * db-init.sql, or stored before shows existed. A new show's inventory starts at the venue's capacity less the seats
+ * already booked for it. Reservations and bookings made before shows existed are then pointed at their show.
+ */
+public class ShowMigrator {
+
+    private static final Logger _logger = LoggerFactory.getLogger(ShowMigrator.class);
+
+    // This is utility class, so hide the constructor to prevent instantiation.
+    private ShowMigrator() {}
+
+    public static void createShows(EntityManagerFactory entityManagerFactory) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+
+            List<Object[]> missingShows = em.createQuery("SELECT c, d FROM Concert c JOIN c.dates d " +
+                    "WHERE NOT EXISTS (SELECT s FROM Show s WHERE s.concert = c AND s.date = d)", Object[].class)
+                    .getResultList();
+
+            for (Object[] missingShow : missingShows) {
+                Show show = new Show((Concert) missingShow[0], (LocalDateTime) missingShow[1]);
+                ShowInventory inventory = new ShowInventory(show);
+
+                List<Reservation> booked = em.createQuery("SELECT r FROM Booking b JOIN b.reservation r " +
+                        "WHERE r.concert = :concert AND r.date = :date", Reservation.class)
+                        .setParameter("concert", show.getConcert())
+                        .setParameter("date", show.getDate())
+                        .getResultList();
+                for (Reservation reservation : booked) {
+                    inventory.take(reservation.getPriceBand(), reservation.getSeatCount());
+                }
+
+                em.persist(show);
+                em.persist(inventory);
+            }
+            em.flush();
+
+            int reservations = em.createNativeQuery("UPDATE RESERVATIONS r SET SHOW_ID = (SELECT s.ID FROM SHOWS s " +
+                    "WHERE s.CONCERT_ID = r.CONCERT_ID AND s.CONCERT_DATE = r.CONCERT_DATE) WHERE SHOW_ID IS NULL")
+                    .executeUpdate();
+            em.createNativeQuery("UPDATE BOOKINGS b SET SHOW_ID = (SELECT r.SHOW_ID FROM RESERVATIONS r " +
+                    "WHERE r.ID = b.RESERVATION_ID) WHERE SHOW_ID IS NULL")
+                    .executeUpdate();
+
+            em.getTransaction().commit();
+
+            if (!missingShows.isEmpty() || reservations > 0) {
+                _logger.info("Created ({}) shows; Linked ({}) existing reservations to their show", missingShows.size(), reservations);
+            }
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+}
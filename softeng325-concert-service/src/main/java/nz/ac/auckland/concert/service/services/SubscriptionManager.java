@@ -5,6 +5,7 @@ import nz.ac.auckland.concert.common.dto.NewsItemDTO;
 import nz.ac.auckland.concert.service.domain.Concert;
 import nz.ac.auckland.concert.service.domain.Performer;
 import nz.ac.auckland.concert.service.domain.Types.SubscriptionType;
+import nz.ac.auckland.concert.service.jfr.NotificationEvent;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
@@ -24,6 +25,11 @@ public class SubscriptionManager {
 
     private static SubscriptionManager _instance = null;
 
+    private static final MetricsManager.Timer _fanOutTimer = MetricsManager.instance().timer(
+            "concert_notification_fan_out_seconds", "Time taken to send a notification to every parked subscriber.");
+    private static final MetricsManager.Counter _notificationsSent = MetricsManager.instance().counter(
+            "concert_notifications_sent_total", "Notifications sent to parked subscribers.");
+
     private final ReentrantLock _performerLock = new ReentrantLock();
     private final ReentrantLock _concertLock = new ReentrantLock();
     private final ReentrantLock _imageLock = new ReentrantLock();
@@ -52,6 +58,7 @@ public class SubscriptionManager {
         _recentImageNotifications = new ArrayList<>();
         _recentImageWithIdRecentNotifications = new HashMap<>();
 
+        MetricsManager.instance().gauge("concert_subscribers_parked", "Subscribers waiting for a notification.", this::getParkedSubscriberCount);
     }
 
     public static SubscriptionManager instance() {
@@ -146,8 +153,32 @@ public class SubscriptionManager {
 
     }
 
+    /**
+     * Returns the number of subscribers waiting for a notification.
+     */
+    public int getParkedSubscriberCount() {
+        int parked = 0;
+        synchronized (_performerLock) {
+            parked += _performerResponses.size();
+        }
+        synchronized (_concertLock) {
+            parked += _concertResponses.size();
+        }
+        synchronized (_imageLock) {
+            parked += _imageResponses.size();
+            for (List<AsyncResponse> responses : _imageResponsesWithIds.values()) {
+                parked += responses.size();
+            }
+        }
+        return parked;
+    }
+
     // Helper method for both storing recent notification in buffer and responding to all necessary respondents.
     private void storeAndRespond(String notification, List<ImmutablePair<Integer, String>> notificationList, List<AsyncResponse> responseList) {
+        long start = System.nanoTime();
+        NotificationEvent event = new NotificationEvent(); // Written only while a flight recording is taking it
+        event.begin();
+
         // Create hashcode of new notification
         int hashed = new HashCodeBuilder(37,39).append(notification).toHashCode();
 
@@ -160,7 +191,11 @@ public class SubscriptionManager {
         for (AsyncResponse response : responseList) {
             response.resume(new NewsItemDTO(Integer.toString(hashed), notification));
         }
+        _notificationsSent.add(responseList.size());
+        event.commit(responseList.size(), notificationList.size());
         responseList.clear();
+
+        _fanOutTimer.recordSince(start);
     }
 
     private boolean updateIfUnseenNotifications(String newsCookie, List<ImmutablePair<Integer, String>> notificationList, AsyncResponse asyncResponse) {
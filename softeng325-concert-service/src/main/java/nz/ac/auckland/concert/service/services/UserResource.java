@@ -8,7 +8,6 @@ import nz.ac.auckland.concert.service.domain.Booking;
 import nz.ac.auckland.concert.service.domain.Mappers.BookingMapper;
 import nz.ac.auckland.concert.service.domain.Mappers.CreditCardMapper;
 import nz.ac.auckland.concert.service.domain.Mappers.UserMapper;
-import nz.ac.auckland.concert.service.domain.Token;
 import nz.ac.auckland.concert.service.domain.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,11 +20,8 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Path("/users")
@@ -33,16 +29,16 @@ public class UserResource {
 
     private static final Logger _logger = LoggerFactory.getLogger(UserResource.class);
 
-    private static final long AUTHENTICATION_TIMEOUT_MINUTES = 5; // 5 minutes
-
     @Context // Information about the service hosted URI
     private static UriInfo _uri;
 
     private final PersistenceManager _pm; // Persistence
+    private final AuthenticationManager _auth; // Token issue and verification
 
     public UserResource() {
 
         _pm = PersistenceManager.instance();
+        _auth = AuthenticationManager.instance();
     }
 
     /**
@@ -60,15 +56,16 @@ public class UserResource {
             @PathParam("username") String username) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         EntityManager em = _pm.createEntityManager();
 
         try {
-            if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
@@ -104,25 +101,26 @@ public class UserResource {
             @DefaultValue("10") @QueryParam("size") int size) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         EntityManager em = _pm.createEntityManager();
 
         try {
-            if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
-            TypedQuery<Booking> bookingQuery = em.createQuery("SELECT b FROM Token t JOIN t.user u JOIN u.bookings b WHERE t.token = :token", Booking.class);
-            bookingQuery.setParameter("token", authToken);
+            TypedQuery<Booking> bookingQuery = em.createNamedQuery("User.findBookings", Booking.class);
+            bookingQuery.setParameter("username", tokenUsername);
             List<Booking> bookings = bookingQuery.setFirstResult(start).setMaxResults(size).getResultList();
 
             Set<BookingDTO> bookingDTOS = bookings.stream().map(BookingMapper::toDto).collect(Collectors.toSet());
             GenericEntity<Set<BookingDTO>> entity = new GenericEntity<Set<BookingDTO>>(bookingDTOS) {};
-            _logger.info("Retrieved (" + bookings.size() + ") bookings; Sent to user agent: " + userAgent);
+            _logger.debug("Retrieved ({}) bookings; Sent to user agent: {}", bookings.size(), userAgent);
 
             return Response
                     .status(Response.Status.OK)
@@ -131,7 +129,7 @@ public class UserResource {
                     .build();
 
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -156,7 +154,7 @@ public class UserResource {
 
         if (userDto.getLastname() == null || userDto.getFirstname() == null || // If any necessary fields are not given
                 userDto.getUsername() == null || userDto.getPassword() == null) {
-            _logger.info("Denied user agent: " + userAgent + "; With missing field(s) in userDTO.");
+            _logger.info("Denied user agent: {}; With missing field(s) in userDTO.", userAgent);
             return Response.status(Response.Status.BAD_REQUEST).entity(Messages.CREATE_USER_WITH_MISSING_FIELDS).build(); // Bad request
         }
 
@@ -169,15 +167,14 @@ public class UserResource {
             User newUser = UserMapper.toDomain(userDto);
             em.persist(newUser);
 
-            String token = generateUserToken();
-            em.persist(new Token(newUser, token, LocalDateTime.now().plus(Duration.ofMinutes(AUTHENTICATION_TIMEOUT_MINUTES)))); // Tokens expiry id .now() plus timeout duration
+            String token = _auth.issueToken(newUser, em); // Tokens expire at .now() plus timeout duration
 
             tx.commit();
-            tx.begin();
 
             User storedUser = em.find(User.class, userDto.getUsername());
             UserDTO returnDTO = UserMapper.toDTO(storedUser);
-            _logger.info("Successfully created new user: [" + storedUser.getUsername() + ", " + storedUser.getFirstName() + ", " + storedUser.getLastName() + "]; Reply to user agent :" + userAgent);
+            _logger.debug("Successfully created new user: [{}, {}, {}]; Reply to user agent: {}",
+                    storedUser.getUsername(), storedUser.getFirstName(), storedUser.getLastName(), userAgent);
 
             return Response
                     .status(Response.Status.OK)
@@ -185,10 +182,10 @@ public class UserResource {
                     .location(new URI(_uri.getBaseUri() + "users/" + returnDTO.getUsername())) // Return location of new user
                     .build();
         } catch (RollbackException e) {
-            _logger.info("Denied user agent: " + userAgent + "; Username [" + userDto.getUsername() + "] is already taken.");
+            _logger.info("Denied user agent: {}; Username [{}] is already taken.", userAgent, userDto.getUsername());
             return Response.status(Response.Status.CONFLICT).entity(Messages.CREATE_USER_WITH_NON_UNIQUE_NAME).build();
         } catch (URISyntaxException e) {
-            _logger.info("Denied user agent: " + userAgent + "; could not convert return URI");
+            _logger.info("Denied user agent: {}; could not convert return URI", userAgent);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         } finally {
             em.close();
@@ -214,27 +211,28 @@ public class UserResource {
             @HeaderParam("Authorization") String authToken) {
 
         if (authToken == null) { // User has no access token
-            _logger.info("Denied user agent: " + userAgent + "; No authentication token identified.");
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
             return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
         }
 
         EntityManager em = _pm.createEntityManager();
 
         try {
-            if (!tokenIsValid(authToken, em)) { // If token wasn't found or is expired return unauthorized
-                _logger.info("Denied user agent : " + userAgent + "; With expired/invalid authentication token: " + authToken);
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
             }
 
             EntityTransaction tx = em.getTransaction();
             tx.begin();
 
-            User foundUser = findUser(authToken, em);
+            User foundUser = em.find(User.class, tokenUsername);
 
             foundUser.setCreditCard(CreditCardMapper.toDomain(creditCard));
             em.merge(foundUser);
             tx.commit();
-            _logger.info("Created new credit card for user: [" + foundUser.getUsername() + "]; Reply to user agent: " + userAgent);
+            _logger.debug("Created new credit card for user: [{}]; Reply to user agent: {}", foundUser.getUsername(), userAgent);
 
             return Response
                     .status(Response.Status.NO_CONTENT)
@@ -261,7 +259,7 @@ public class UserResource {
             @HeaderParam("user-agent") String userAgent) {
 
         if (userDTO.getUsername() == null || userDTO.getPassword() == null) { // If either username or password is empty
-            _logger.info("Denied user agent: " + userAgent + "; With missing field(s) in userDTO.");
+            _logger.info("Denied user agent: {}; With missing field(s) in userDTO.", userAgent);
             return Response.status(Response.Status.BAD_REQUEST).entity(Messages.AUTHENTICATE_USER_WITH_MISSING_FIELDS).build(); // Bad request
         }
 
@@ -271,41 +269,21 @@ public class UserResource {
             // Check login details are correct
             User foundUser = em.find(User.class, userDTO.getUsername());
             if (foundUser == null) {// No user found
-                _logger.info("Denied user agent: " + userAgent + "; No user was found with username: " + userDTO.getUsername());
+                _logger.info("Denied user agent: {}; No user was found with username: {}", userAgent, userDTO.getUsername());
                 return Response.status(Response.Status.NOT_FOUND).entity(Messages.AUTHENTICATE_NON_EXISTENT_USER).build();
             } else if (!foundUser.getPassword().equals(userDTO.getPassword())) { // Login credentials incorrect
-                _logger.info("Denied user agent: " + userAgent + "; Login credentials for [" + foundUser.getUsername() + "] incorrect.");
+                _logger.info("Denied user agent: {}; Login credentials for [{}] incorrect.", userAgent, foundUser.getUsername());
                 return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.AUTHENTICATE_USER_WITH_ILLEGAL_PASSWORD).build();
             }
 
             EntityTransaction tx = em.getTransaction();
             tx.begin(); // Ensure the act of reading token status then rewriting (if needed) is atomic - ensures no conflicting token generation
 
-            // Login is correct, so we return token either newly generated or already one stored if still active.
-            Token token = em.find(Token.class, foundUser.getUsername()); // One token for one user
-
-            // either token does not exist for this user or has timed out - if has timed out service should provide a new one
-            String tokenString;
-            if (token == null || (token.getExpiry().isBefore(LocalDateTime.now()))) { // Token is null OR Token has timed out
-
-                if (token != null) // Remove the current token if one exists
-                {
-                    em.remove(token);
-                }
-
-                tokenString = generateUserToken(); // Overwrite / rewrite token
+            // Login is correct, so we return a token - for database tokens, the one already stored if still active
+            String tokenString = _auth.issueToken(foundUser, em);
 
-                // Place new token into db
-                Token tokenToPlace = new Token(foundUser, tokenString, LocalDateTime.now().plus(Duration.ofMinutes(AUTHENTICATION_TIMEOUT_MINUTES)));
-                em.persist(tokenToPlace);
-
-                tx.commit();
-                _logger.info("Created new token [" + tokenToPlace + "]; For user: " + foundUser.getUsername());
-            } else { // Token stored in db both exists and is still valid
-                tokenString = token.getToken(); // Add existing token to response
-                _logger.info("Retrieved existing valid token [" + tokenString + "]; For user: " + foundUser.getUsername());
-            }
-            _logger.info("Send token [" + tokenString + "] to user agent: " + userAgent);
+            tx.commit();
+            _logger.debug("Send token [{}] to user agent: {}", tokenString, userAgent);
 
             return Response
                     .status(Response.Status.OK)
@@ -317,29 +295,47 @@ public class UserResource {
         }
     }
 
+    /**
+     * Logs a user out by revoking their authorization token. The token is rejected by every later request, even
+     * if it hasn't yet timed out.
+     * @param userAgent
+     * @param authToken
+     * @return Status code
+     */
+    @POST
+    @Path("/logout")
+    public Response logout(
+            @HeaderParam("user-agent") String userAgent,
+            @HeaderParam("Authorization") String authToken) {
 
-    // Private methods
-
-
-    private boolean tokenIsValid(String authToken, EntityManager em) {
-
-        // Retrieve corresponding token form the database
-        TypedQuery<Token> tokenQuery = em.createQuery("SELECT t FROM Token t WHERE t.token = :token", Token.class);
-        tokenQuery.setParameter("token", authToken);
-        Token token = tokenQuery.getSingleResult();
+        if (authToken == null) { // User has no access token
+            _logger.info("Denied user agent: {}; No authentication token identified.", userAgent);
+            return Response.status(Response.Status.FORBIDDEN).entity(Messages.UNAUTHENTICATED_REQUEST).build();
+        }
 
-        // True if token isn't null and its expiry time is after the current time
-        return token != null && !LocalDateTime.now().isAfter(token.getExpiry());
-    }
+        EntityManager em = _pm.createEntityManager();
 
-    private User findUser(String authToken, EntityManager em) {
+        try {
+            String tokenUsername = _auth.authenticate(authToken, em);
+            if (tokenUsername == null) { // If token wasn't found or is expired return unauthorized
+                _logger.info("Denied user agent : {}; With expired/invalid authentication token: {}", userAgent, authToken);
+                return Response.status(Response.Status.UNAUTHORIZED).entity(Messages.BAD_AUTHENTICATON_TOKEN).build();
+            }
 
-        TypedQuery<User> userQuery = em.createQuery("SELECT u FROM Token t JOIN t.user u WHERE t.token = :token", User.class);
-        userQuery.setParameter("token", authToken);
-        return userQuery.getSingleResult();
-    }
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            _auth.revoke(authToken, em);
+            tx.commit();
+            _logger.debug("Logged out user: {}; Reply to user agent: {}", tokenUsername, userAgent);
 
-    private String generateUserToken() {
-        return UUID.randomUUID().toString();
+            return Response
+                    .status(Response.Status.NO_CONTENT)
+                    .build();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
     }
 }
@@ -0,0 +1,94 @@
+package nz.ac.auckland.concert.service.services;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Hibernate ConnectionProvider backed by H2's JdbcConnectionPool, set by hibernate.connection.provider_class in
+ * persistence.xml. Once all Config.CONNECTION_POOL_SIZE connections are in use, a request for another waits up to
+ * Config.CONNECTION_WAIT_SECONDS for one to be returned, where Hibernate's built-in pool fails it at once.
+ *
+ * Connections are handed out with auto-commit off, as Hibernate's built-in pool does, and are rolled back by H2 when
+ * they are returned.
+ */
+public class WaitingConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+
+    private JdbcConnectionPool _pool;
+
+    @Override
+    public void configure(Map configurationValues) {
+        _pool = JdbcConnectionPool.create(
+                setting(configurationValues, AvailableSettings.URL, AvailableSettings.JPA_JDBC_URL),
+                setting(configurationValues, AvailableSettings.USER, AvailableSettings.JPA_JDBC_USER),
+                setting(configurationValues, AvailableSettings.PASS, AvailableSettings.JPA_JDBC_PASSWORD));
+        _pool.setMaxConnections(Config.CONNECTION_POOL_SIZE);
+        _pool.setLoginTimeout((int) Config.CONNECTION_WAIT_SECONDS);
+
+        MetricsManager.instance().gauge("concert_jdbc_connections_active", "JDBC connections currently in use.",
+                () -> _pool.getActiveConnections());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = _pool.getConnection();
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public void stop() {
+        _pool.dispose();
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType) || WaitingConnectionProvider.class.isAssignableFrom(unwrapType) ||
+                DataSource.class.isAssignableFrom(unwrapType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (ConnectionProvider.class.equals(unwrapType) || WaitingConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return (T) this;
+        } else if (DataSource.class.isAssignableFrom(unwrapType)) {
+            return (T) _pool;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+
+    // Private methods
+
+
+    private static String setting(Map configurationValues, String name, String jpaName) {
+        Object value = configurationValues.get(name);
+        if (value == null) {
+            value = configurationValues.get(jpaName);
+        }
+        if (value == null) {
+            throw new HibernateException("No " + jpaName + " configured");
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.common.dto.ReservationRequestDTO;
+import nz.ac.auckland.concert.common.message.Messages;
+import nz.ac.auckland.concert.common.types.PriceBand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Singleton class that keeps a waitlist of reservation requests for each show and price band, and reserves seats for
+ * them as seats come back. The AvailabilityManager reports seats coming back - a hold expiring or being released, or a
+ * booking being cancelled - and the waitlist for their show and price band is then worked through in order on a
+ * single allocating thread, so requests are met first come, first served. A request that can't be met yet stays at
+ * the head of its waitlist; later (smaller) requests don't overtake it.
+ *
+ * Each request is answered through the AsyncResponse it was made with, once seats have been reserved for it. So that
+ * no request holds up its waitlist for good, requests are answered with 408 (Request Timeout) and dropped after
+ * Config.WAITLIST_TIMEOUT_SECONDS, and with 404 (Not Found) once their concert is no longer scheduled on the date.
+ * Requests whose client has gone are dropped when they reach the head of their waitlist. Should a client go after its
+ * seats were reserved, the reservation simply expires and the seats come back again. A user may have at most
+ * Config.WAITLIST_ENTRIES_PER_USER requests waiting.
+ */
+public class WaitlistManager {
+
+    private static final Logger _logger = LoggerFactory.getLogger(WaitlistManager.class);
+
+    private static WaitlistManager _instance = null;
+
+    private final Map<Long, Map<PriceBand, Queue<Waiting>>> _waitlists = new ConcurrentHashMap<>(); // Show id -> waiting requests per band, oldest first
+    private final Map<String, Integer> _entries = new ConcurrentHashMap<>(); // Username -> requests waiting
+    private final ExecutorService _allocator;
+
+    protected WaitlistManager() {
+
+        _allocator = Executors.newSingleThreadExecutor(task -> {
+            Thread allocator = new Thread(task, "waitlist");
+            allocator.setDaemon(true);
+            return allocator;
+        });
+    }
+
+    public static WaitlistManager instance() {
+        if (_instance == null) {
+            _instance = new WaitlistManager();
+        }
+        return _instance;
+    }
+
+    /**
+     * Adds a request to the end of the waitlist for its show and price band, unless its user already has
+     * Config.WAITLIST_ENTRIES_PER_USER requests waiting.
+     * @param showId
+     * @param requestDto
+     * @param username user to reserve seats for
+     * @param response resumed with the ReservationDTO once seats are reserved
+     * @return whether the request joined the waitlist
+     */
+    public boolean join(long showId, ReservationRequestDTO requestDto, String username, AsyncResponse response) {
+        AtomicBoolean joined = new AtomicBoolean();
+        _entries.compute(username, (user, entries) -> {
+            int waiting = entries == null ? 0 : entries;
+            joined.set(waiting < Config.WAITLIST_ENTRIES_PER_USER);
+            return joined.get() ? waiting + 1 : entries;
+        });
+        if (!joined.get()) {
+            return false;
+        }
+
+        Queue<Waiting> waitlist = waitlistFor(showId, requestDto.getSeatType());
+        Waiting waiting = new Waiting(requestDto, username, response);
+        response.setTimeoutHandler(timedOut -> {
+            waitlist.remove(waiting);
+            leave(waiting);
+            timedOut.resume(Response.status(Response.Status.REQUEST_TIMEOUT).entity(Messages.WAITLIST_TIMED_OUT).build());
+        });
+        response.setTimeout(Config.WAITLIST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        waitlist.add(waiting);
+        seatsReleased(showId, requestDto.getSeatType()); // Seats may have come back since the request was turned down
+        return true;
+    }
+
+    /**
+     * Reserves seats for requests waiting on a show and price band, now that some of its seats have come back.
+     * Returns at once; seats are reserved on the allocating thread.
+     */
+    public void seatsReleased(long showId, PriceBand priceBand) {
+        Map<PriceBand, Queue<Waiting>> waitlists = _waitlists.get(showId);
+        Queue<Waiting> waitlist = waitlists == null ? null : waitlists.get(priceBand);
+        if (waitlist == null || waitlist.isEmpty()) { // Nobody waiting, which is usually the case
+            return;
+        }
+        _allocator.execute(() -> allocate(waitlist));
+    }
+
+    /**
+     * Forgets all waiting requests. Used when the service is reinitialised along with its database.
+     */
+    public void clear() {
+        _waitlists.clear();
+        _entries.clear();
+    }
+
+
+    // Private methods
+
+
+    private Queue<Waiting> waitlistFor(long showId, PriceBand priceBand) {
+        return _waitlists
+                .computeIfAbsent(showId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(priceBand, band -> new ConcurrentLinkedQueue<>());
+    }
+
+    // Runs on the allocating thread only, so a waitlist is never worked through twice at once. Requests are removed
+    // by identity rather than polled, as a timed out request may leave the head of the queue at any time.
+    private void allocate(Queue<Waiting> waitlist) {
+        Waiting waiting;
+        while ((waiting = waitlist.peek()) != null) {
+            if (!waiting._response.isSuspended()) { // Client has gone, or the request timed out
+                waitlist.remove(waiting);
+                leave(waiting);
+                continue;
+            }
+
+            Response reserved;
+            try {
+                reserved = new ReserveResource().reserveFor(waiting._request, waiting._username);
+            } catch (RuntimeException e) {
+                _logger.info("Could not reserve seats for waitlisted user: {}; {}", waiting._username, e);
+                return; // Try again when more seats come back
+            }
+            if (reserved.getStatus() == Response.Status.CONFLICT.getStatusCode()) { // Not enough seats for the head of the queue yet
+                return;
+            }
+
+            waitlist.remove(waiting);
+            leave(waiting);
+            waiting._response.resume(reserved);
+            if (reserved.getStatus() == Response.Status.OK.getStatusCode()) {
+                _logger.info("Reserved ({}) seats for waitlisted user: {} for concert id: {} on date: {}",
+                        waiting._request.getNumberOfSeats(), waiting._username, waiting._request.getConcertId(), waiting._request.getDate());
+            } else { // Concert is no longer scheduled on the date
+                _logger.info("Dropped waitlisted request for user: {}; Concert id: {} isn't scheduled on date: {}",
+                        waiting._username, waiting._request.getConcertId(), waiting._request.getDate());
+            }
+        }
+    }
+
+    // Stops counting a request against its user's limit, once it has left its waitlist
+    private void leave(Waiting waiting) {
+        if (waiting._left.compareAndSet(false, true)) {
+            _entries.computeIfPresent(waiting._username, (user, entries) -> entries > 1 ? entries - 1 : null);
+        }
+    }
+
+    /**
+     * A request on a waitlist, with the user it is for and the response to answer it through.
+     */
+    private static class Waiting {
+
+        private final ReservationRequestDTO _request;
+        private final String _username;
+        private final AsyncResponse _response;
+        private final AtomicBoolean _left = new AtomicBoolean(); // Whether it has been taken off its user's count
+
+        Waiting(ReservationRequestDTO request, String username, AsyncResponse response) {
+            _request = request;
+            _username = username;
+            _response = response;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package nz.ac.auckland.concert.service.services;
+
+import nz.ac.auckland.concert.service.domain.Concert;
+import nz.ac.auckland.concert.service.domain.Mappers.ConcertMapper;
+import nz.ac.auckland.concert.service.domain.Mappers.PerformerMapper;
+import nz.ac.auckland.concert.service.domain.Performer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton class that warms the service up after it starts, so that the first requests after a deploy don't pay for
+ * cold caches. Warming up runs in the background and:
+ *  - creates the JAXBContext of all DTOs (see JaxbContextResolver),
+ *  - reads the first Config.WARM_UP_CATALOGUE_SIZE concerts and performers, and maps and marshals them as a request
+ *    would, which also brings their rows into the database's cache,
+ *  - loads the seat maps, and so the availability, of the Config.WARM_UP_HOT_SHOWS shows with the fewest seats left.
+ * JPQL needs no warming up: the service's queries are named queries, which Hibernate compiles as the
+ * EntityManagerFactory is created.
+ *
+ * The service reports ready at /services/health/ready once warming up has finished (see HealthResource).
+ */
+public class WarmUpManager {
+
+    private static final Logger _logger = LoggerFactory.getLogger(WarmUpManager.class);
+
+    private static WarmUpManager _instance = null;
+
+    private final PersistenceManager _pm;
+
+    private Thread _warmUp;
+    private volatile boolean _ready;
+
+    protected WarmUpManager() {
+
+        _pm = PersistenceManager.instance();
+    }
+
+    public static WarmUpManager instance() {
+        if (_instance == null) {
+            _instance = new WarmUpManager();
+        }
+        return _instance;
+    }
+
+    /**
+     * Starts warming up in the background. The service is ready once it has finished.
+     */
+    public synchronized void start() {
+        clear();
+
+        _warmUp = new Thread(this::warmUp, "warm-up");
+        _warmUp.setDaemon(true);
+        _warmUp.start();
+    }
+
+    /**
+     * Returns whether warming up has finished, so that the service is ready for traffic.
+     */
+    public boolean isReady() {
+        return _ready;
+    }
+
+    /**
+     * Waits for any warming up under way to finish, and marks the service as not ready. Used when the service is
+     * reinitialised along with its database, so that nothing is loaded from the data being replaced.
+     */
+    public synchronized void clear() {
+        if (_warmUp != null) {
+            try {
+                _warmUp.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _warmUp = null;
+        }
+        _ready = false;
+    }
+
+
+    // Private methods
+
+
+    private void warmUp() {
+        long start = System.nanoTime();
+
+        try {
+            int catalogue = warmUpCatalogue(JaxbContextResolver.instance().getDtoContext());
+            int seatMaps = preloadHotShows();
+            _logger.info("Warmed up in ({}) ms; Concerts and performers: {}; Seat maps: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), catalogue, seatMaps);
+        } catch (JAXBException | RuntimeException e) {
+            _logger.warn("Warm-up failed after ({}) ms; Serving without it", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), e);
+        }
+        _ready = true; // Warming up only saves time, so a failure doesn't keep the service from serving
+    }
+
+    private int warmUpCatalogue(JAXBContext context) throws JAXBException {
+        EntityManager em = _pm.createEntityManager();
+
+        try {
+            List<Object> dtos = new ArrayList<>();
+            em.createNamedQuery("Concert.findAll", Concert.class).setMaxResults(Config.WARM_UP_CATALOGUE_SIZE)
+                    .getResultList().forEach(concert -> dtos.add(ConcertMapper.toDto(concert)));
+            em.createNamedQuery("Performer.findAll", Performer.class).setMaxResults(Config.WARM_UP_CATALOGUE_SIZE)
+                    .getResultList().forEach(performer -> dtos.add(PerformerMapper.toDto(performer)));
+
+            Marshaller marshaller = context.createMarshaller();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (Object dto : dtos) {
+                out.reset();
+                marshaller.marshal(dto, out);
+            }
+            return dtos.size();
+        } finally {
+            em.close();
+        }
+    }
+
+    private int preloadHotShows() {
+        EntityManager em = _pm.createEntityManager();
+        List<Object[]> shows;
+
+        try {
+            shows = em.createNamedQuery("ShowInventory.findBusiestShows", Object[].class)
+                    .setMaxResults(Config.WARM_UP_HOT_SHOWS)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+
+        for (Object[] show : shows) {
+            AvailabilityManager.instance().preload((Long) show[0], (Long) show[1], (LocalDateTime) show[2]);
+        }
+        return shows.size();
+    }
+}
@@ -10,6 +10,7 @@ import nz.ac.auckland.concert.common.dto.SeatDTO;
 import nz.ac.auckland.concert.common.types.PriceBand;
 import nz.ac.auckland.concert.common.types.SeatNumber;
 import nz.ac.auckland.concert.common.types.SeatRow;
+import nz.ac.auckland.concert.service.jfr.SeatSearchEvent;
 import nz.ac.auckland.concert.utility.TheatreLayout;
 
 /**
@@ -39,16 +40,20 @@ public class TheatreUtility {
 	 */
 	public static Set<SeatDTO> findAvailableSeats(int numberOfSeats,
 			PriceBand price, Set<SeatDTO> bookedSeats) {
+		SeatSearchEvent event = new SeatSearchEvent(); // Written only while a flight recording is taking it
+		event.begin();
+
 		List<SeatDTO> openSeats = getAllAvailableSeatsByPrice(price,
 				bookedSeats);
 
-		if (openSeats.size() < numberOfSeats) {
-			return new HashSet<SeatDTO>();
-		}
+		Set<SeatDTO> availableSeats = openSeats.size() < numberOfSeats
+				? new HashSet<SeatDTO>()
+				: getSpecificAvailableSeats(
+						new Random().nextInt(openSeats.size()), numberOfSeats,
+						openSeats);
 
-		return getSpecificAvailableSeats(
-				new Random().nextInt(openSeats.size()), numberOfSeats,
-				openSeats);
+		event.commit(price, numberOfSeats, openSeats.size(), availableSeats.size());
+		return availableSeats;
 	}
 
 
@@ -0,0 +1,8 @@
+// Indexes for the predicates on the authenticated request and reservation paths.
+// Index names match the @Index declarations on the Token and Reservation entities.
+
+// Token lookups by value on every authenticated request.
+CREATE UNIQUE INDEX IF NOT EXISTS IDX_AUTHORIZATION_TOKENS_TOKEN ON AUTHORIZATION_TOKENS(TOKEN);
+
+// Active reservations for a concert on a given date.
+CREATE INDEX IF NOT EXISTS IDX_RESERVATIONS_CONCERT_DATE_EXPIRY ON RESERVATIONS(CONCERT_ID, CONCERT_DATE, EXPIRY);
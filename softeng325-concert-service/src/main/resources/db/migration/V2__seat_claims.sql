@@ -0,0 +1,26 @@
+// Seat occupancy table enforcing one claim per seat per performance, as mapped by the SeatClaim entity.
+// Schemas generated by Hibernate already have the table; the statements below only create what is missing.
+
+CREATE TABLE IF NOT EXISTS SEAT_CLAIMS (
+    ID BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    CONCERT_ID BIGINT NOT NULL,
+    CONCERT_DATE TIMESTAMP NOT NULL,
+    SEAT_ROW INTEGER NOT NULL,
+    SEAT_NUMBER INTEGER NOT NULL,
+    STATE VARCHAR(255) NOT NULL,
+    EXPIRY TIMESTAMP,
+    RESERVATION_ID BIGINT NOT NULL,
+    CONSTRAINT UQ_SEAT_CLAIMS_SEAT UNIQUE (CONCERT_ID, CONCERT_DATE, SEAT_ROW, SEAT_NUMBER),
+    FOREIGN KEY (CONCERT_ID) REFERENCES CONCERTS(ID)
+);
+CREATE INDEX IF NOT EXISTS IDX_SEAT_CLAIMS_RESERVATION ON SEAT_CLAIMS(RESERVATION_ID);
+
+// Seats of existing bookings become BOOKED claims, so they stay unavailable to new reservations.
+INSERT INTO SEAT_CLAIMS (CONCERT_ID, CONCERT_DATE, SEAT_ROW, SEAT_NUMBER, STATE, EXPIRY, RESERVATION_ID)
+    SELECT r.CONCERT_ID, r.CONCERT_DATE, s.SEAT_ROW, s.SEAT_NUMBER, 'BOOKED', MAX(r.EXPIRY), MAX(r.ID)
+    FROM BOOKINGS b
+    JOIN RESERVATIONS r ON b.RESERVATION_ID = r.ID
+    JOIN SEAT_RESERVATIONS s ON s.SEAT_RESERVATION_ID = r.ID
+    WHERE NOT EXISTS (SELECT 1 FROM SEAT_CLAIMS c WHERE c.CONCERT_ID = r.CONCERT_ID AND c.CONCERT_DATE = r.CONCERT_DATE
+            AND c.SEAT_ROW = s.SEAT_ROW AND c.SEAT_NUMBER = s.SEAT_NUMBER)
+    GROUP BY r.CONCERT_ID, r.CONCERT_DATE, s.SEAT_ROW, s.SEAT_NUMBER;
@@ -0,0 +1,15 @@
+// Sequences for the entities whose ids are allocated in blocks of 50 (see @SequenceGenerator on Reservation,
+// SeatReservation, Booking and SeatClaim). Each sequence restarts above the ids already in its table, which were
+// generated by IDENTITY columns before the switch.
+
+CREATE SEQUENCE IF NOT EXISTS RESERVATIONS_ID_SEQUENCE START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE RESERVATIONS_ID_SEQUENCE RESTART WITH (SELECT COALESCE(MAX(ID), 0) + 1 FROM RESERVATIONS);
+
+CREATE SEQUENCE IF NOT EXISTS SEAT_RESERVATIONS_ID_SEQUENCE START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE SEAT_RESERVATIONS_ID_SEQUENCE RESTART WITH (SELECT COALESCE(MAX(ID), 0) + 1 FROM SEAT_RESERVATIONS);
+
+CREATE SEQUENCE IF NOT EXISTS BOOKINGS_ID_SEQUENCE START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE BOOKINGS_ID_SEQUENCE RESTART WITH (SELECT COALESCE(MAX(ID), 0) + 1 FROM BOOKINGS);
+
+CREATE SEQUENCE IF NOT EXISTS SEAT_CLAIMS_ID_SEQUENCE START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE SEAT_CLAIMS_ID_SEQUENCE RESTART WITH (SELECT COALESCE(MAX(ID), 0) + 1 FROM SEAT_CLAIMS);
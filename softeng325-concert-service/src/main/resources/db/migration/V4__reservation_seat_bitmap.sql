@@ -0,0 +1,5 @@
+// Bitmap of a reservation's seats over the venue's seat ordinals, used when Config.BITMAP_SEAT_STORAGE is enabled.
+// Reservations stored as SEAT_RESERVATIONS rows are converted by SeatStorageMigrator, not here, as the seat
+// ordinals come from TheatreLayout.
+
+ALTER TABLE RESERVATIONS ADD COLUMN IF NOT EXISTS SEATS_BITMAP VARBINARY(64);
@@ -0,0 +1,25 @@
+// Shows (one performance of a concert on one of its dates) and their seat inventories, as mapped by the Show and
+// ShowInventory entities. Schemas generated by Hibernate already have these; the statements below only create what
+// is missing. Rows are filled in by ShowMigrator, since inventories start from the venue capacity in TheatreLayout.
+
+CREATE SEQUENCE IF NOT EXISTS SHOWS_ID_SEQUENCE START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS SHOWS (
+    ID BIGINT PRIMARY KEY,
+    CONCERT_ID BIGINT NOT NULL,
+    CONCERT_DATE TIMESTAMP NOT NULL,
+    CONSTRAINT UQ_SHOWS_CONCERT_DATE UNIQUE (CONCERT_ID, CONCERT_DATE),
+    FOREIGN KEY (CONCERT_ID) REFERENCES CONCERTS(ID)
+);
+
+CREATE TABLE IF NOT EXISTS SHOW_INVENTORIES (
+    SHOW_ID BIGINT PRIMARY KEY,
+    REMAINING_A INTEGER NOT NULL,
+    REMAINING_B INTEGER NOT NULL,
+    REMAINING_C INTEGER NOT NULL,
+    VERSION BIGINT NOT NULL,
+    FOREIGN KEY (SHOW_ID) REFERENCES SHOWS(ID)
+);
+
+ALTER TABLE RESERVATIONS ADD COLUMN IF NOT EXISTS SHOW_ID BIGINT;
+ALTER TABLE BOOKINGS ADD COLUMN IF NOT EXISTS SHOW_ID BIGINT;